@@ -0,0 +1,154 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmMap;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.marchand.maven.gaulois.compiler.utils.BuildReport;
+import top.marchand.maven.gaulois.compiler.utils.GauloisBatchCompiler;
+import top.marchand.maven.gaulois.compiler.utils.GauloisConfigCompiler;
+import top.marchand.maven.gaulois.compiler.utils.GauloisSet;
+import top.marchand.maven.gaulois.compiler.utils.PrecompiledStylesheets;
+
+/**
+ * Single XSL compilation, and gaulois config compilation, one transformation per config 
+ * (<tt>compileGaulois</tt>) or all configs in one transformation (<tt>batchCompile</tt>).
+ * Corpus has no schema, as <tt>xsl:import-schema</tt> requires a schema-aware processor.
+ * @author cmarchand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompileBenchmark {
+    private static final String GAULOIS_COMPILER_XSL = "/top/marchand/maven/gaulois/compiler/gaulois-compiler.xsl";
+    
+    @Param({"10", "100"})
+    public int configs;
+    
+    @Param({"10"})
+    public int stylesheets;
+    
+    @Param({"1", "5"})
+    public int includeDepth;
+    
+    private SyntheticCorpus corpus;
+    private File classes;
+    private Processor processor;
+    private XsltExecutable gauloisCompiler;
+    private XdmMap xslMap;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SaxonApiException {
+        corpus = new SyntheticCorpus(configs, stylesheets, includeDepth, 0);
+        classes = new File(corpus.getRoot(), "classes");
+        processor = new Processor(false);
+        // as the plugin does : precompiled SEF when the plugin has been built with it
+        gauloisCompiler = PrecompiledStylesheets.load(processor.newXsltCompiler(), GAULOIS_COMPILER_XSL, new QuietLog());
+        if(gauloisCompiler==null) {
+            URL url = getClass().getResource(GAULOIS_COMPILER_XSL);
+            gauloisCompiler = processor.newXsltCompiler().compile(new StreamSource(url.toExternalForm()));
+        }
+        Map<String,String> map = new HashMap<>();
+        for(int i=0; i<stylesheets; i++) {
+            map.put("cp:/s"+i+".xsl", new File(classes, "s"+i+".sef").getAbsolutePath());
+        }
+        xslMap = XdmMap.makeMap(map);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        corpus.delete();
+    }
+    
+    /**
+     * Compiles the first stylesheet and its include chain
+     */
+    @Benchmark
+    public XsltExecutable compileXsl() throws SaxonApiException {
+        XsltCompiler compiler = processor.newXsltCompiler();
+        return compiler.compile(new StreamSource(corpus.getStylesheets().get(0)));
+    }
+    
+    /**
+     * Compiles each config in its own transformation, as <tt>compileGaulois</tt> does
+     */
+    @Benchmark
+    public BuildReport compileGaulois() throws SaxonApiException {
+        BuildReport report = new BuildReport();
+        GauloisConfigCompiler compiler = new GauloisConfigCompiler(gauloisCompiler, Collections.<XsltExecutable>emptyList(), null, report, new QuietLog());
+        for(GauloisSet gs: getSets()) {
+            compiler.compile(gs, xslMap, classes.getAbsolutePath());
+        }
+        return report;
+    }
+    
+    @Benchmark
+    public BuildReport batchCompile() throws SaxonApiException {
+        List<GauloisSet> sets = getSets();
+        BuildReport report = new BuildReport();
+        new GauloisBatchCompiler(gauloisCompiler, Collections.<XsltExecutable>emptyList(), null, report, new QuietLog())
+                .compile(sets, xslMap, classes.getAbsolutePath());
+        return report;
+    }
+    
+    private List<GauloisSet> getSets() {
+        List<GauloisSet> sets = new ArrayList<>(configs);
+        for(File config: corpus.getConfigs()) {
+            sets.add(new GauloisSet(config.toURI().toString(), new File(classes, "configs/"+config.getName())));
+        }
+        return sets;
+    }
+}
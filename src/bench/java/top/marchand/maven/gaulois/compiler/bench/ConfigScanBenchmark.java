@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import net.sf.saxon.s9api.DocumentBuilder;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.marchand.maven.gaulois.compiler.utils.ClasspathIndex;
+import top.marchand.maven.gaulois.compiler.utils.GauloisConfigScanner;
+import top.marchand.maven.gaulois.compiler.utils.XslLocator;
+
+/**
+ * Scans all configs of a corpus for <tt>gc:xslt</tt>, as <tt>scanGauloisConfigs</tt> does.
+ * XSL locations are not cached between operations.
+ * @author cmarchand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConfigScanBenchmark {
+    private static final Log LOG = new QuietLog();
+    
+    @Param({"10", "100"})
+    public int configs;
+    
+    @Param({"10", "50"})
+    public int stylesheets;
+    
+    private SyntheticCorpus corpus;
+    private File classes;
+    private Processor processor;
+    private URIResolver noCatalog;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = new SyntheticCorpus(configs, stylesheets, 0, 0);
+        classes = new File(corpus.getRoot(), "classes");
+        processor = new Processor(false);
+        noCatalog = new URIResolver() {
+            @Override
+            public Source resolve(String href, String base) throws TransformerException {
+                return null;
+            }
+        };
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        corpus.delete();
+    }
+    
+    /**
+     * StAX scan, <tt>leanScan</tt> mode
+     */
+    @Benchmark
+    public GauloisConfigScanner leanScan() throws IOException, XMLStreamException {
+        GauloisConfigScanner scanner = newScanner();
+        for(File config: corpus.getConfigs()) {
+            scanner.scan(config.toURI().toString());
+        }
+        return scanner;
+    }
+    
+    /**
+     * Parses each config to a tree, then scans the tree, <tt>singleParse</tt> mode
+     */
+    @Benchmark
+    public GauloisConfigScanner treeScan() throws SaxonApiException {
+        GauloisConfigScanner scanner = newScanner();
+        DocumentBuilder builder = processor.newDocumentBuilder();
+        for(File config: corpus.getConfigs()) {
+            scanner.scan(builder.build(config));
+        }
+        return scanner;
+    }
+    
+    private GauloisConfigScanner newScanner() {
+        XslLocator locator = new XslLocator(
+                Arrays.asList(corpus.getXslDirectory()), 
+                classes, 
+                noCatalog, 
+                new ClasspathIndex(Collections.<String>emptyList(), LOG), 
+                LOG);
+        return new GauloisConfigScanner(locator, LOG);
+    }
+}
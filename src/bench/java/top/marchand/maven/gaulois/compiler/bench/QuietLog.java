@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.bench;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * A log that only prints warnings and errors, so that console output does not 
+ * get measured. {@link SystemStreamLog} prints debug messages whatever 
+ * <tt>isDebugEnabled()</tt> returns.
+ * @author cmarchand
+ */
+public class QuietLog extends SystemStreamLog {
+    
+    @Override
+    public void debug(CharSequence content) { }
+    @Override
+    public void debug(CharSequence content, Throwable error) { }
+    @Override
+    public void debug(Throwable error) { }
+    @Override
+    public void info(CharSequence content) { }
+    @Override
+    public void info(CharSequence content, Throwable error) { }
+    @Override
+    public void info(Throwable error) { }
+    @Override
+    public boolean isInfoEnabled() { return false; }
+}
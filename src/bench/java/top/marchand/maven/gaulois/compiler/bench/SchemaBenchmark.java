@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.marchand.maven.gaulois.compiler.utils.BuildManifest;
+import top.marchand.maven.gaulois.compiler.utils.DependencyScanner;
+import top.marchand.maven.gaulois.compiler.utils.SchemaDependency;
+import top.marchand.maven.gaulois.compiler.utils.SchemaRegistry;
+
+/**
+ * Schema discovery (<tt>scanForSchemas</tt> / <tt>exploreFile</tt>) and schema copy.
+ * @author cmarchand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchemaBenchmark {
+    private static final Log LOG = new QuietLog();
+    
+    @Param({"10", "50"})
+    public int stylesheets;
+    
+    @Param({"1", "5"})
+    public int includeDepth;
+    
+    @Param({"1", "8"})
+    public int schemaFanOut;
+    
+    @Param({"4"})
+    public int copyThreads;
+    
+    private SyntheticCorpus corpus;
+    private List<String> schemas;
+    private File copyDirectory;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = new SyntheticCorpus(1, stylesheets, includeDepth, schemaFanOut);
+        copyDirectory = new File(corpus.getRoot(), "classes");
+        schemas = new ArrayList<>();
+        DependencyScanner scanner = new DependencyScanner(null, LOG);
+        for(File xsl: corpus.getStylesheets()) {
+            collect(scanner.getImportedSchemas(xsl.toURI().toString()), schemas);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        corpus.delete();
+    }
+    
+    /**
+     * Copy always writes to an empty directory
+     */
+    @Setup(Level.Invocation)
+    public void cleanCopyDirectory() throws IOException {
+        FileUtils.deleteDirectory(copyDirectory);
+    }
+    
+    /**
+     * Walks includes of all stylesheets, and the schemas they import, with a cold scanner
+     */
+    @Benchmark
+    public List<String> schemaScan() {
+        List<String> ret = new ArrayList<>();
+        DependencyScanner scanner = new DependencyScanner(null, LOG);
+        for(File xsl: corpus.getStylesheets()) {
+            collect(scanner.getImportedSchemas(xsl.toURI().toString()), ret);
+        }
+        return ret;
+    }
+    
+    @Benchmark
+    public SchemaRegistry schemaCopy() throws InterruptedException {
+        SchemaRegistry registry = new SchemaRegistry(new BuildManifest("bench", BuildManifest.empty()), LOG);
+        for(String schema: schemas) {
+            registry.register(schema, new File(copyDirectory, SchemaDependency.getFileName(schema)));
+        }
+        registry.materialize(copyThreads);
+        return registry;
+    }
+    
+    private static void collect(List<SchemaDependency> dependencies, List<String> schemas) {
+        for(SchemaDependency dependency: dependencies) {
+            if(dependency.getAbsUri()!=null) schemas.add(dependency.getAbsUri());
+            collect(dependency.getChildren(), schemas);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * A generated project layout, used by benchmarks :
+ * <ul>
+ * <li><tt>xsl/s<i>i</i>.xsl</tt> : <tt>stylesheets</tt> stylesheets, each one including 
+ * a chain of <tt>includeDepth</tt> modules under <tt>xsl/inc/</tt></li>
+ * <li><tt>xsd/s<i>i</i>.xsd</tt> : if <tt>schemaFanOut</tt> is not 0, each stylesheet 
+ * imports its own schema, which includes <tt>schemaFanOut</tt> sub-schemas</li>
+ * <li><tt>configs/c<i>i</i>.xml</tt> : <tt>configs</tt> gaulois configs, each one 
+ * referencing two stylesheets with <tt>cp:/</tt> hrefs</li>
+ * </ul>
+ * @author cmarchand
+ */
+public class SyntheticCorpus {
+    private static final String GC_NS = "http://efl.fr/chaine/saxon-pipe/config";
+    private static final String XSL = "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"3.0\"";
+    private static final String XSD = "xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"";
+    // templates per module, for stylesheets to have some weight
+    private static final int TEMPLATES = 10;
+    
+    private final File root;
+    private final File xslDirectory;
+    private final List<File> stylesheets;
+    private final List<File> configs;
+    
+    /**
+     * Generates a corpus in a new temporary directory
+     * @param configs Number of gaulois configs
+     * @param stylesheets Number of top-level stylesheets
+     * @param includeDepth Length of the include chain of each stylesheet
+     * @param schemaFanOut Number of sub-schemas of each stylesheet schema. 0 means no schema
+     * @throws IOException If corpus can not be written
+     */
+    public SyntheticCorpus(int configs, int stylesheets, int includeDepth, int schemaFanOut) throws IOException {
+        super();
+        this.root = Files.createTempDirectory("gaulois-bench").toFile();
+        this.xslDirectory = new File(root, "xsl");
+        this.stylesheets = new ArrayList<>(stylesheets);
+        this.configs = new ArrayList<>(configs);
+        for(int i=0; i<stylesheets; i++) {
+            this.stylesheets.add(writeStylesheet(i, includeDepth, schemaFanOut));
+        }
+        for(int i=0; i<configs; i++) {
+            File config = new File(root, "configs/c"+i+".xml");
+            write(config, 
+                    "<config xmlns=\""+GC_NS+"\"><pipe>"
+                    + "<xslt href=\"cp:/s"+(i%stylesheets)+".xsl\"/>"
+                    + "<xslt href=\"cp:/s"+((i+1)%stylesheets)+".xsl\"><param name=\"p\" value=\""+i+"\"/></xslt>"
+                    + "</pipe><output><file href=\"out"+i+".xml\"/></output></config>");
+            this.configs.add(config);
+        }
+    }
+    
+    private File writeStylesheet(int index, int includeDepth, int schemaFanOut) throws IOException {
+        String name = "s"+index;
+        for(int depth=includeDepth; depth>0; depth--) {
+            String include = depth<includeDepth ? "<xsl:include href=\""+name+"-"+(depth+1)+".xsl\"/>" : "";
+            write(new File(xslDirectory, "inc/"+name+"-"+depth+".xsl"), 
+                    "<xsl:stylesheet "+XSL+">"+include+templates(name+"-"+depth)+"</xsl:stylesheet>");
+        }
+        StringBuilder sb = new StringBuilder("<xsl:stylesheet ").append(XSL).append(">");
+        if(includeDepth>0) sb.append("<xsl:include href=\"inc/").append(name).append("-1.xsl\"/>");
+        if(schemaFanOut>0) {
+            sb.append("<xsl:import-schema schema-location=\"../xsd/").append(name).append(".xsd\"/>");
+            StringBuilder xsd = new StringBuilder("<xs:schema ").append(XSD).append(">");
+            for(int i=0; i<schemaFanOut; i++) {
+                xsd.append("<xs:include schemaLocation=\"sub/").append(name).append("-").append(i).append(".xsd\"/>");
+                write(new File(root, "xsd/sub/"+name+"-"+i+".xsd"), 
+                        "<xs:schema "+XSD+"><xs:element name=\""+name+"-e"+i+"\" type=\"xs:string\"/></xs:schema>");
+            }
+            xsd.append("</xs:schema>");
+            write(new File(root, "xsd/"+name+".xsd"), xsd.toString());
+        }
+        sb.append("<xsl:template match=\"/\"><xsl:apply-templates/></xsl:template>");
+        sb.append(templates(name)).append("</xsl:stylesheet>");
+        File xsl = new File(xslDirectory, name+".xsl");
+        write(xsl, sb.toString());
+        return xsl;
+    }
+    
+    private static String templates(String prefix) {
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<TEMPLATES; i++) {
+            String mode = prefix.replace('-', '_')+"_m"+i;
+            sb.append("<xsl:template match=\"*[@type='").append(mode).append("']\" mode=\"").append(mode).append("\">")
+                    .append("<xsl:copy><xsl:sequence select=\"@* except @type\"/>")
+                    .append("<xsl:value-of select=\"upper-case(string(.))\"/></xsl:copy>")
+                    .append("</xsl:template>");
+        }
+        return sb.toString();
+    }
+    
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public File getRoot() {
+        return root;
+    }
+    
+    /**
+     * The directory <tt>cp:/</tt> hrefs are resolved against
+     * @return The directory
+     */
+    public File getXslDirectory() {
+        return xslDirectory;
+    }
+    
+    public List<File> getStylesheets() {
+        return stylesheets;
+    }
+    
+    public List<File> getConfigs() {
+        return configs;
+    }
+    
+    /**
+     * Deletes the corpus
+     * @throws IOException If corpus can not be deleted
+     */
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+}
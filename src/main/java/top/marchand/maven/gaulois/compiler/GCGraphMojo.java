@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import top.marchand.maven.gaulois.compiler.utils.DependencyGraph;
+
+/**
+ * Writes the dependency graph of gaulois configs, XSL and schemas, as <tt>graph.json</tt> 
+ * and <tt>graph.dot</tt>. Nothing is compiled.
+ * <p>If <tt>changedFiles</tt> is set, the configs and XSL impacted by these files are 
+ * logged, and written to <tt>impacted.txt</tt>, one <tt>kind uri</tt> per line :</p>
+ * <pre>mvn gaulois-compiler:graph -Dgaulois.graph.changed=src/main/xsl/common.xsl,src/main/xsd/a.xsd</pre>
+ * @author cmarchand
+ */
+@Mojo(name="graph", requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class GCGraphMojo extends GCMojo {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    
+    /**
+     * The directory where <tt>graph.json</tt>, <tt>graph.dot</tt> and <tt>impacted.txt</tt> are written
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gaulois-compiler", property = "gaulois.graph.directory")
+    private File graphDirectory;
+    
+    /**
+     * Changed files, separated by commas or new lines. Relative paths are resolved against 
+     * project base directory.
+     */
+    @Parameter(property = "gaulois.graph.changed")
+    private String changedFiles;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if(scanSources()) {
+            getLog().warn(LOG_PREFIX+" Errors occured, graph may be incomplete");
+        }
+        DependencyGraph graph = DependencyGraph.build(getGauloisSets(), getDependencyScanner());
+        try {
+            graph.writeJson(new File(graphDirectory, "graph.json"));
+            graph.writeDot(new File(graphDirectory, "graph.dot"));
+            getLog().info(LOG_PREFIX+" dependency graph written to "+graphDirectory.getAbsolutePath());
+            if(changedFiles!=null && !changedFiles.trim().isEmpty()) {
+                writeImpacted(graph);
+            }
+        } catch(IOException ex) {
+            throw new MojoExecutionException("while writing dependency graph", ex);
+        }
+    }
+    
+    private void writeImpacted(DependencyGraph graph) throws IOException {
+        List<String> uris = new ArrayList<>();
+        for(String path: changedFiles.split("[,\\n\\r]+")) {
+            if(path.trim().isEmpty()) continue;
+            File file = new File(path.trim());
+            if(!file.isAbsolute()) file = new File(getProject().getBasedir(), path.trim());
+            uris.add(file.toURI().toString());
+        }
+        Set<String> impacted = graph.getImpacted(uris);
+        File impactedFile = new File(graphDirectory, "impacted.txt");
+        try (Writer w = new OutputStreamWriter(Files.newOutputStream(impactedFile.toPath()), StandardCharsets.UTF_8)) {
+            for(String uri: impacted) {
+                String kind = graph.getKind(uri);
+                if(DependencyGraph.CONFIG.equals(kind) || DependencyGraph.XSL.equals(kind)) {
+                    getLog().info(LOG_PREFIX+" impacted "+kind+": "+uri);
+                    w.write(kind+" "+uri+"\n");
+                }
+            }
+        }
+    }
+}
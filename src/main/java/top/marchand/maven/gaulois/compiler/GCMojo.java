@@ -27,44 +27,54 @@
 package top.marchand.maven.gaulois.compiler;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Source;
 import javax.xml.transform.SourceLocator;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.Version;
 import net.sf.saxon.ma.map.MapItem;
 import net.sf.saxon.s9api.Axis;
 import net.sf.saxon.s9api.MessageListener;
+import net.sf.saxon.s9api.Processor;
 import net.sf.saxon.s9api.QName;
 import net.sf.saxon.s9api.SaxonApiException;
-import net.sf.saxon.s9api.Serializer;
 import net.sf.saxon.s9api.XdmAtomicValue;
 import net.sf.saxon.s9api.XdmDestination;
 import net.sf.saxon.s9api.XdmMap;
 import net.sf.saxon.s9api.XdmNode;
 import net.sf.saxon.s9api.XdmSequenceIterator;
-import net.sf.saxon.s9api.XdmValue;
+import net.sf.saxon.s9api.XsltCompiler;
 import net.sf.saxon.s9api.XsltExecutable;
 import net.sf.saxon.s9api.XsltTransformer;
 import net.sf.saxon.trans.XPathException;
@@ -84,16 +94,36 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLFilter;
 import org.xml.sax.XMLReader;
-import org.xml.sax.ext.EntityResolver2;
-import org.xml.sax.helpers.ParserAdapter;
 import org.xml.sax.helpers.XMLFilterImpl;
+import top.marchand.maven.gaulois.compiler.utils.BuildManifest;
+import top.marchand.maven.gaulois.compiler.utils.BuildReport;
+import top.marchand.maven.gaulois.compiler.utils.ClasspathIndex;
+import top.marchand.maven.gaulois.compiler.utils.CompileScheduler;
+import top.marchand.maven.gaulois.compiler.utils.CompileWorkerPool;
+import top.marchand.maven.gaulois.compiler.utils.DependencyScanner;
+import top.marchand.maven.gaulois.compiler.utils.DocumentPool;
+import top.marchand.maven.gaulois.compiler.utils.Fingerprint;
+import top.marchand.maven.gaulois.compiler.utils.GauloisBatchCompiler;
+import top.marchand.maven.gaulois.compiler.utils.GauloisConfigCompiler;
 import top.marchand.maven.gaulois.compiler.utils.GauloisConfigScanner;
 import top.marchand.maven.gaulois.compiler.utils.GauloisSet;
 import top.marchand.maven.gaulois.compiler.utils.GauloisXsl;
+import top.marchand.maven.gaulois.compiler.utils.PrecompiledStylesheets;
+import top.marchand.maven.gaulois.compiler.utils.SaxParsers;
+import top.marchand.maven.gaulois.compiler.utils.SchemaDependency;
+import top.marchand.maven.gaulois.compiler.utils.SchemaRegistry;
+import top.marchand.maven.gaulois.compiler.utils.SefCache;
+import top.marchand.maven.gaulois.compiler.utils.SefManifest;
+import top.marchand.maven.gaulois.compiler.utils.SourceStore;
+import top.marchand.maven.gaulois.compiler.utils.StylesheetCache;
+import top.marchand.maven.gaulois.compiler.utils.UriTable;
+import top.marchand.maven.gaulois.compiler.utils.WorkerThreadFactory;
+import top.marchand.maven.gaulois.compiler.utils.XslCompilerPool;
+import top.marchand.maven.gaulois.compiler.utils.XslLocator;
 import top.marchand.maven.saxon.utils.SaxonOptions;
 import top.marchand.xml.maven.plugin.xsl.AbstractCompiler;
 
-@Mojo(name="gaulois-compiler", defaultPhase = LifecyclePhase.COMPILE, requiresDependencyResolution = ResolutionScope.COMPILE)
+@Mojo(name="gaulois-compiler", defaultPhase = LifecyclePhase.COMPILE, requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
 public class GCMojo extends AbstractCompiler {
     @Parameter( defaultValue = "${project}", readonly = true, required = true )
     private MavenProject project;
@@ -139,6 +169,14 @@ public class GCMojo extends AbstractCompiler {
     @Parameter
     private File postCompiler;
     
+    /**
+     * Post-compilers applied after <tt>postCompiler</tt>, in order. Each stage is the path of 
+     * a XSL or of a compiled <tt>.sef</tt>, relative to project base directory, or a 
+     * <tt>cp:/</tt> URI. Stages are chained, without intermediate tree.
+     */
+    @Parameter
+    private List<String> postCompilers;
+    
     /**
      * Saxon options, to configure Saxon. 
      * See {@linkplain https://github.com/cmarchand/saxonOptions-mvn-plug-utils/wiki}
@@ -146,11 +184,183 @@ public class GCMojo extends AbstractCompiler {
     @Parameter
     SaxonOptions saxonOptions;
     
-    private XsltExecutable postCompilerXsl;
+    /**
+     * The number of threads used to compile XSL. Each thread has its own XSL compiler. 
+     * <tt>0</tt> means as many threads as available processors.
+     */
+    @Parameter(defaultValue = "1", property = "gaulois.compiler.threads")
+    private int compileThreads;
+    
+    /**
+     * The number of threads used to scan gaulois config files. 
+     * <tt>0</tt> means as many threads as available processors.
+     */
+    @Parameter(defaultValue = "1", property = "gaulois.compiler.scanThreads")
+    private int scanThreads;
+    
+    /**
+     * The number of threads used to copy imported schemas to <tt>schemasDestination</tt>. 
+     * <tt>0</tt> means as many threads as available processors.
+     */
+    @Parameter(defaultValue = "4", property = "gaulois.compiler.copyThreads")
+    private int copyThreads;
+    
+    /**
+     * If <tt>true</tt>, only XSL and gaulois config files whose sources have changed since 
+     * previous build are compiled. When nothing has changed, Saxon is not even initialized.
+     */
+    @Parameter(defaultValue = "true", property = "gaulois.compiler.incremental")
+    private boolean incremental;
+    
+    /**
+     * The file where fingerprints of compiled files are stored, for incremental compilation
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gaulois-compiler/fingerprints.properties")
+    private File fingerprintsFile;
+    
+    /**
+     * Used to detect a new Maven session, to clear the stylesheet cache
+     */
+    @Parameter(defaultValue = "${session.startTime}", readonly = true)
+    private Date sessionStartTime;
+    
+    private List<XsltExecutable> postCompilerXsls;
+    private StylesheetCache stylesheetCache;
+    private String saxonKey;
 
     private XsltExecutable gauloisCompilerXsl;
     private XsltExecutable xutScanner;
     private XsltExecutable xutFilter;
+    private DependencyScanner dependencyScanner;
+    private UriTable uriTable;
+    private boolean saxonInitialized;
+    private SefCache sefCache;
+    private DocumentPool documentPool;
+    private SourceStore sourceStore;
+    private CompileWorkerPool compileWorkerPool;
+    // Saxon key without catalog location, to compare with SEF published in jars
+    private String publishedSaxonKey;
+    
+    /**
+     * If <tt>true</tt>, imported schemas are searched with xut dependency tree, as in 
+     * previous versions. Else, a streaming scanner is used, that parses each XSL or 
+     * schema module only once.
+     */
+    @Parameter(defaultValue = "false", property = "gaulois.compiler.useXutScanner")
+    private boolean useXutScanner;
+    
+    /**
+     * If <tt>true</tt>, gaulois config files are scanned with a StAX reader that only 
+     * looks at <tt>gc:xslt</tt> elements. Else, a SAX parser is used, as in previous 
+     * versions.
+     */
+    @Parameter(defaultValue = "true", property = "gaulois.compiler.leanScan")
+    private boolean leanScan;
+    
+    /**
+     * If <tt>true</tt>, each gaulois config file is parsed once, into a tree that is used 
+     * to find XSL and then to compile the config. Tree is released as soon as config 
+     * is compiled. <tt>leanScan</tt> is then ignored.
+     */
+    @Parameter(defaultValue = "true", property = "gaulois.compiler.singleParse")
+    private boolean singleParse;
+    
+    /**
+     * If <tt>true</tt>, all gaulois config files to compile are compiled in a single 
+     * transformation, each one being written with a <tt>xsl:result-document</tt>.
+     */
+    @Parameter(defaultValue = "true", property = "gaulois.compiler.batch")
+    private boolean batchCompile;
+    
+    /**
+     * The build report : durations of each phase, and of each compiled file, in JSON.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gaulois-compiler/report.json", property = "gaulois.compiler.reportFile")
+    private File reportFile;
+    
+    /**
+     * The number of slowest stylesheets and configs to list in build summary. 
+     * <tt>0</tt> to only log phases durations.
+     */
+    @Parameter(defaultValue = "5", property = "gaulois.compiler.reportSlowest")
+    private int reportSlowest;
+    
+    /**
+     * If <tt>true</tt>, peak memory does not depend on project size : config trees are not 
+     * kept after scan, XSL and configs are compiled by batches of <tt>boundedBatchSize</tt>, 
+     * and the dependency model is released once fingerprints are computed. 
+     * <tt>singleParse</tt> and <tt>useXutScanner</tt> are ignored.
+     */
+    @Parameter(defaultValue = "false", property = "gaulois.compiler.boundedMemory")
+    private boolean boundedMemory;
+    
+    /**
+     * The number of XSL, or of gaulois configs, compiled in a batch when <tt>boundedMemory</tt> 
+     * is <tt>true</tt>.
+     */
+    @Parameter(defaultValue = "500", property = "gaulois.compiler.boundedBatchSize")
+    private int boundedBatchSize;
+    
+    /**
+     * A directory where compiled XSL are cached, and shared between projects, branches and 
+     * builds, for example <tt>${user.home}/.m2/gaulois-sef-cache</tt>. A XSL whose sources, 
+     * Saxon version and Saxon options are unchanged is copied from cache instead of being 
+     * compiled. No cache if not set.
+     */
+    @Parameter(property = "gaulois.compiler.sefCache")
+    private File sefCacheDirectory;
+    
+    /**
+     * The maximum size of <tt>sefCacheDirectory</tt>, in megabytes. Least recently used 
+     * entries are evicted above this size.
+     */
+    @Parameter(defaultValue = "1024", property = "gaulois.compiler.sefCacheMaxSize")
+    private long sefCacheMaxSize;
+    
+    /**
+     * The size of the pool of parsed XSL modules, in megabytes of sources. Modules are 
+     * parsed once, for dependency scanning and for all compilations they are part of. 
+     * <tt>0</tt> disables the pool. Ignored if <tt>boundedMemory</tt> is set.
+     */
+    @Parameter(defaultValue = "64", property = "gaulois.compiler.documentPoolSize")
+    private long documentPoolSize;
+    
+    /**
+     * The size of the store of XSL contents, in megabytes. Each XSL is read once from disk, 
+     * and then hashed, parsed and compiled from memory. <tt>0</tt> disables the store. 
+     * Ignored if <tt>boundedMemory</tt> is set.
+     */
+    @Parameter(defaultValue = "32", property = "gaulois.compiler.sourceStoreSize")
+    private long sourceStoreSize;
+    
+    /**
+     * The number of forked JVMs XSL are compiled in. <tt>0</tt> compiles XSL in Maven JVM. 
+     * Workers are started once per execution, and reused for all XSL. XSL that import 
+     * schemas are always compiled in Maven JVM.
+     */
+    @Parameter(defaultValue = "0", property = "gaulois.compiler.workers")
+    private int compileWorkers;
+    
+    /**
+     * The JVM arguments of compile workers, separated by spaces, i.e. <tt>-Xmx2g -XX:+UseParallelGC</tt>
+     */
+    @Parameter(property = "gaulois.compiler.workerJvmArgs")
+    private String workerJvmArgs;
+    
+    /**
+     * If <tt>true</tt>, compiled XSL of <tt>xslSourceDirs</tt> are listed in 
+     * <tt>META-INF/gaulois-compiler/sef-manifest.properties</tt>, so that projects that depend 
+     * on this one reuse them. XSL sources must be packaged too, at the same path.
+     */
+    @Parameter(defaultValue = "false", property = "gaulois.compiler.publishSefs")
+    private boolean publishSefs;
+    
+    /**
+     * If <tt>true</tt>, a XSL that comes from a dependency jar is not compiled if this jar 
+     * publishes it, compiled with the same Saxon version and options, from the same sources.
+     */
+    @Parameter(defaultValue = "true", property = "gaulois.compiler.reuseDependencySefs")
+    private boolean reuseDependencySefs;
     
     /**
      * The list of directories where XSL sources are located in
@@ -159,22 +369,176 @@ public class GCMojo extends AbstractCompiler {
     List<File> xslSourceDirs;
     
     // inner working variables
-    private Set<GauloisSet> gauloisSets;
-    private Map<String, GauloisXsl> foundXsls;
+    private ConcurrentSkipListSet<GauloisSet> gauloisSets;
+    private ConcurrentMap<String, GauloisXsl> foundXsls;
+    private SchemaRegistry schemaRegistry;
+    private BuildManifest previousManifest;
+    private BuildManifest manifest;
     
-    public static final SAXParserFactory PARSER_FACTORY = SAXParserFactory.newInstance();
     private ArrayList<String> classpaths;
+    private ClasspathIndex classpathIndex;
+    private XslLocator xslLocator;
+    private BuildReport report;
     private static final String XUT_NS = "https://github.com/mricaud/xml-utilities";
     private static final QName QN_DEP_TYPE = new QName("dependency-type");
     private static final QName QN_URI = new QName("uri");
     private static final QName QN_ABS_URI = new QName("abs-uri");
     private static final QName QN_NAME = new QName("name");
-    private static final QName QN_PARAM_SCHEMAS = new QName("schemas");
-    private static final QName QN_PARAM_XSLMAP = new QName("xslMap");
-    private static final QName QN_TARGET_PATH = new QName("targetPath");
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
+        List<GauloisConfigEntry> configEntries = prepare();
+        Log log = getLog();
+        String buildKey = computeBuildKey();
+        previousManifest = incremental ? BuildManifest.load(fingerprintsFile) : BuildManifest.empty();
+        if(incremental && previousManifest.isUpToDate(buildKey, getConfigKeys(configEntries), log)) {
+            log.info(LOG_PREFIX+" Nothing to compile - all files are up to date");
+            writeReport();
+            return;
+        }
+        manifest = new BuildManifest(buildKey, previousManifest);
+        boolean hasError = scan(configEntries);
+        long start;
+        if(!hasError) {
+            start = System.nanoTime();
+            try {
+                hasError = !schemaRegistry.materialize(copyThreads<1 ? Runtime.getRuntime().availableProcessors() : copyThreads);
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Schemas copy has been interrupted", ex);
+            }
+            report.addPhase(BuildReport.SCHEMA_COPY, System.nanoTime()-start);
+        }
+        if(getLog().isDebugEnabled()) {
+            StringBuilder sb = new StringBuilder();
+            for(GauloisXsl gx: foundXsls.values()) sb.append(gx.getXslSystemId()).append("->").append(gx.getTargetFile().getAbsolutePath()).append("\n");
+            getLog().debug("Found XSL: "+sb.toString());
+        }
+        boolean complete = !hasError;
+        if(!hasError) {
+            List<GauloisXsl> staleXsls = new ArrayList<>();
+            for(GauloisXsl gx: foundXsls.values()) {
+                computeFingerprint(gx);
+                if(previousManifest.isFresh(gx.getTargetFile(), gx.getFingerprint())) {
+                    if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" "+gx.getXslSystemId()+" is up to date");
+                    manifest.putOutput(gx.getTargetFile(), gx.getFingerprint());
+                } else {
+                    staleXsls.add(gx);
+                }
+            }
+            SefManifest publishedSefs = publishSefs ? buildSefManifest() : null;
+            start = System.nanoTime();
+            if(reuseDependencySefs) {
+                staleXsls = fetchFromDependencies(staleXsls);
+            }
+            if(sefCacheDirectory!=null) {
+                sefCache = new SefCache(sefCacheDirectory, sefCacheMaxSize*1024L*1024L, getLog());
+                staleXsls = fetchFromCache(staleXsls);
+            }
+            if(boundedMemory && compileWorkers<1) {
+                // fingerprints are computed, dependency model is not needed anymore
+                dependencyScanner = null;
+            }
+            // config fingerprints only depend on XSL fingerprints, they can be compiled as soon as their XSL are
+            Map<GauloisSet,String> toCompile = new LinkedHashMap<>();
+            String postCompilersKey = gauloisSets.isEmpty() ? null : computePostCompilersKey();
+            for(GauloisSet gs: gauloisSets) {
+                String fingerprint = computeFingerprint(gs, postCompilersKey);
+                if(previousManifest.isFresh(gs.getTargetFile(), fingerprint)) {
+                    if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" "+gs.getGauloisConfigSystemId()+" is up to date");
+                    manifest.putOutput(gs.getTargetFile(), fingerprint);
+                    gs.setConfigTree(null);
+                } else {
+                    toCompile.put(gs, fingerprint);
+                }
+            }
+            staleXsls = CompileScheduler.longestFirst(staleXsls, previousManifest);
+            CompileScheduler scheduler = new CompileScheduler(toCompile.keySet(), staleXsls);
+            ConfigCompilation configCompilation = null;
+            if(!toCompile.isEmpty()) {
+                try {
+                    gauloisCompilerXsl = getInternalStylesheet(GAULOIS_COMPILER_XSL);
+                    // we need to construct a map <xsl resolved URI -> target path>
+                    configCompilation = new ConfigCompilation(scheduler, toCompile, buildXslMap(foundXsls), getPostCompilerXsls());
+                    configCompilation.start();
+                } catch(SaxonApiException ex) {
+                    complete = false;
+                    getLog().error(ex);
+                }
+            }
+            try {
+                for(List<GauloisXsl> batch: batches(staleXsls)) {
+                    complete &= compileXsls(batch, scheduler);
+                }
+            } finally {
+                if(!keepsWorkers()) closeWorkers();
+                scheduler.releaseAll();
+            }
+            for(GauloisXsl gx: foundXsls.values()) {
+                manifest.keepDuration(gx.getXslSystemId());
+            }
+            if(sefCache!=null) sefCache.evict();
+            report.addPhase(BuildReport.XSL_COMPILE, System.nanoTime()-start);
+            if(documentPool!=null) {
+                getLog().debug(LOG_PREFIX+" document pool: "+documentPool.getHits()+" hits, "+documentPool.getMisses()+" misses, "+documentPool.getSize()+" bytes");
+            }
+            if(sourceStore!=null) {
+                getLog().debug(LOG_PREFIX+" source store: "+sourceStore.getHits()+" hits, "+sourceStore.getMisses()+" misses, "+sourceStore.getSize()+" bytes");
+            }
+            if(publishedSefs!=null && complete) {
+                try {
+                    publishedSefs.write(classesDirectory);
+                } catch(IOException ex) {
+                    getLog().warn(LOG_PREFIX+" unable to write "+SefManifest.PATH, ex);
+                }
+            }
+            if(configCompilation!=null) {
+                try {
+                    configCompilation.join();
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    configCompilation.interrupt();
+                    throw new MojoExecutionException("gaulois config compilation has been interrupted", ex);
+                }
+                for(Exception ex: configCompilation.getErrors()) {
+                    complete = false;
+                    getLog().error(ex);
+                }
+                report.addPhase(BuildReport.CONFIG_COMPILE, configCompilation.getBusyNanos());
+            }
+        } else {
+            getLog().warn(LOG_PREFIX+" Errors occured");
+        }
+        manifest.setComplete(complete);
+        try {
+            manifest.save(fingerprintsFile);
+        } catch(IOException ex) {
+            getLog().warn(LOG_PREFIX+" unable to write "+fingerprintsFile.getAbsolutePath(), ex);
+        }
+        writeReport();
+    }
+    
+    /**
+     * Initializes Saxon, if it has not been yet : catalog resolution is available afterwards.
+     */
+    private void ensureSaxonInitialized() {
+        if(saxonInitialized) return;
+        long start = System.nanoTime();
+        try {
+            initSaxon();
+            saxonInitialized = true;
+        } catch(XPathException ex) {
+            getLog().error("while configuring saxon:",ex);
+        }
+        report.addPhase(BuildReport.SAXON_INIT, System.nanoTime()-start);
+    }
+    
+    /**
+     * Checks configuration, and lists gaulois config files
+     * @return The gaulois config files
+     * @throws MojoExecutionException If configuration is not valid
+     */
+    private List<GauloisConfigEntry> prepare() throws MojoExecutionException {
         if(gauloisPipeFilesets==null) {
             getLog().error(LOG_PREFIX+"\n"+ERROR_MESSAGE);
             throw new MojoExecutionException(ERROR_MESSAGE);
@@ -183,114 +547,640 @@ public class GCMojo extends AbstractCompiler {
         if(xslSourceDirs.isEmpty()) {
             xslSourceDirs.add(new File(projectBaseDir, "src/main/xsl"));
         }
-        Log log = getLog();
+        report = new BuildReport();
+        loadClasspath();
+        classpathIndex = new ClasspathIndex(classpaths, sessionStartTime, getLog());
+        long start = System.nanoTime();
+        List<GauloisConfigEntry> configEntries = listGauloisConfigs();
+        report.addPhase(BuildReport.FILESET_WALK, System.nanoTime()-start);
+        saxonKey = computeSaxonKey();
+        publishedSaxonKey = new Fingerprint()
+                .add(Version.getProductTitle())
+                .addObject(saxonOptions)
+                .toString();
+        return configEntries;
+    }
+    
+    /**
+     * Initializes Saxon, then scans gaulois configs, the XSL they reference, and the 
+     * schemas these XSL import.
+     * @param configEntries The gaulois config files to scan
+     * @return <tt>true</tt> if an error occured
+     * @throws MojoExecutionException If scan has been interrupted
+     * @throws MojoFailureException If an internal stylesheet can not be compiled
+     */
+    private boolean scan(List<GauloisConfigEntry> configEntries) throws MojoExecutionException, MojoFailureException {
+        ensureSaxonInitialized();
+        gauloisSets = new ConcurrentSkipListSet<>();
+        foundXsls = new ConcurrentSkipListMap<>();
+        stylesheetCache = StylesheetCache.getInstance(sessionStartTime);
+        if(sourceStore==null && !boundedMemory && sourceStoreSize>0) {
+            sourceStore = new SourceStore(sourceStoreSize*1024L*1024L, getLog());
+        }
+        manifest.setSourceStore(sourceStore);
+        if(documentPool==null && !boundedMemory && documentPoolSize>0) {
+            documentPool = new DocumentPool(getXsltCompiler().getProcessor(), sourceStore, documentPoolSize*1024L*1024L, getLog());
+        }
+        if(dependencyScanner==null) {
+            uriTable = new UriTable();
+            dependencyScanner = new DependencyScanner(getUriResolver(), uriTable, documentPool, getLog());
+        }
+        if(boundedMemory && (useXutScanner || singleParse)) {
+            // xut builds a dependency tree per XSL, singleParse keeps config trees until compilation
+            getLog().debug(LOG_PREFIX+" boundedMemory: useXutScanner and singleParse are ignored");
+            useXutScanner = false;
+            singleParse = false;
+        }
+        if(useXutScanner) {
+            try {
+                xutScanner = getInternalStylesheet(XUT_SCANNER_XSL);
+                xutFilter = getInternalStylesheet(SCHEMA_FILTER_XSL);
+            } catch(SaxonApiException ex) {
+                throw new MojoFailureException("while compiling xut xsl", ex);
+            }
+        }
+        schemaRegistry = new SchemaRegistry(manifest, getLog());
+        xslLocator = new XslLocator(xslSourceDirs, classesDirectory, getUriResolver(), classpathIndex, getLog());
+        long start = System.nanoTime();
+        boolean hasError = scanGauloisConfigs(configEntries);
+        report.addPhase(BuildReport.CONFIG_SCAN, System.nanoTime()-start);
+        return hasError;
+    }
+    
+    /**
+     * Scans sources without compiling anything : after this call, gaulois configs, XSL and 
+     * the dependency model are available.
+     * @return <tt>true</tt> if an error occured
+     * @throws MojoExecutionException If configuration is not valid, or scan has been interrupted
+     * @throws MojoFailureException If an internal stylesheet can not be compiled
+     */
+    protected boolean scanSources() throws MojoExecutionException, MojoFailureException {
+        List<GauloisConfigEntry> configEntries = prepare();
+        previousManifest = BuildManifest.empty();
+        manifest = new BuildManifest(computeBuildKey(), previousManifest);
+        return scan(configEntries);
+    }
+    
+    protected Collection<GauloisSet> getGauloisSets() {
+        return gauloisSets;
+    }
+    
+    protected DependencyScanner getDependencyScanner() {
+        return dependencyScanner;
+    }
+    
+    /**
+     * Returns the directories that contain sources : <tt>xslSourceDirs</tt>, and 
+     * directories of <tt>gauloisPipeFilesets</tt> that are not based on an URI.
+     * Must be called after {@link #execute() }.
+     * @return The source directories
+     */
+    protected List<File> getSourceDirectories() {
+        List<File> ret = new ArrayList<>(xslSourceDirs);
+        for(FileSet fs: gauloisPipeFilesets) {
+            if((fs.getUri()==null || fs.getUri().isEmpty()) && fs.getDir()!=null) {
+                File dir = new File(fs.getDir());
+                ret.add(dir.isAbsolute() ? dir : new File(projectBaseDir, fs.getDir()));
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Tells that sources have changed since previous {@link #execute() }, so that next one 
+     * re-reads them. Saxon and Saxon caches are kept, unless catalog has changed.
+     * @param paths The changed files. A directory means its content is unknown.
+     */
+    protected void sourcesChanged(Collection<Path> paths) {
+        for(Path path: paths) {
+            if(catalog!=null && path.toFile().getAbsoluteFile().equals(catalog.getAbsoluteFile())) {
+                // resolution of all references may change
+                saxonInitialized = false;
+                dependencyScanner = null;
+                // pooled documents belong to the previous Saxon configuration
+                documentPool = null;
+                // workers keep the resolutions of the previous catalog
+                closeWorkers();
+                return;
+            }
+        }
+        for(Path path: paths) {
+            if(dependencyScanner==null || Files.isDirectory(path)) {
+                dependencyScanner = null;
+                if(compileWorkerPool!=null) compileWorkerPool.invalidateAll();
+                return;
+            }
+            String uri = path.toFile().toURI().toString();
+            dependencyScanner.invalidate(uri);
+            if(compileWorkerPool!=null) compileWorkerPool.invalidate(uri);
+        }
+    }
+    
+    boolean isIncremental() {
+        return incremental;
+    }
+    
+    /**
+     * Splits a list in batches of <tt>boundedBatchSize</tt> if <tt>boundedMemory</tt> 
+     * is set, else returns the whole list as a single batch.
+     * @param <T> The type of items
+     * @param items The items to split
+     * @return The batches
+     */
+    private <T> List<List<T>> batches(List<T> items) {
+        if(!boundedMemory || boundedBatchSize<1 || items.size()<=boundedBatchSize) {
+            return Collections.singletonList(items);
+        }
+        List<List<T>> ret = new ArrayList<>();
+        for(int i=0; i<items.size(); i+=boundedBatchSize) {
+            ret.add(items.subList(i, Math.min(items.size(), i+boundedBatchSize)));
+        }
+        return ret;
+    }
+    
+    /**
+     * Writes the build report, and logs its summary
+     */
+    private void writeReport() {
+        report.logSummary(getLog(), reportSlowest);
+        if(reportFile!=null) {
+            try {
+                report.write(reportFile);
+            } catch(IOException ex) {
+                getLog().warn(LOG_PREFIX+" unable to write "+reportFile.getAbsolutePath(), ex);
+            }
+        }
+    }
+    
+    /**
+     * Copies XSL published as SEF by dependency jars to their target file
+     * @param xsls The XSL to compile
+     * @return The XSL that are not published, and still have to be compiled
+     */
+    private List<GauloisXsl> fetchFromDependencies(List<GauloisXsl> xsls) {
+        List<GauloisXsl> ret = new ArrayList<>(xsls.size());
+        Map<String,SefManifest> sefManifests = new HashMap<>();
+        int reused = 0;
+        for(GauloisXsl gx: xsls) {
+            String systemId = gx.getXslSystemId();
+            int sep = systemId.indexOf("!/");
+            if(systemId.startsWith("jar:") && sep>0) {
+                String jarUri = systemId.substring(4, sep);
+                if(!sefManifests.containsKey(jarUri)) sefManifests.put(jarUri, SefManifest.load(jarUri));
+                SefManifest sefManifest = sefManifests.get(jarUri);
+                String base = systemId.substring(0, sep+2);
+                String path = systemId.substring(sep+2);
+                if(sefManifest!=null && sefManifest.getSef(path)!=null && publishedSaxonKey.equals(sefManifest.getSaxonKey())) {
+                    String closureHash = computeClosureHash(gx, base);
+                    if(closureHash!=null && closureHash.equals(sefManifest.getClosureHash(path))) {
+                        try (InputStream is = new URL(base+sefManifest.getSef(path)).openStream()) {
+                            gx.getTargetFile().getParentFile().mkdirs();
+                            Files.copy(is, gx.getTargetFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                            manifest.putOutput(gx.getTargetFile(), gx.getFingerprint());
+                            if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" "+systemId+" precompiled in dependency");
+                            reused++;
+                            continue;
+                        } catch(IOException ex) {
+                            getLog().debug(LOG_PREFIX+" unable to copy precompiled "+systemId+": "+ex.getMessage());
+                        }
+                    } else if(getLog().isDebugEnabled()) {
+                        getLog().debug(LOG_PREFIX+" "+systemId+" has been precompiled from other sources");
+                    }
+                }
+            }
+            ret.add(gx);
+        }
+        if(reused>0) {
+            getLog().info(LOG_PREFIX+" "+reused+" XSL precompiled in dependencies");
+        }
+        return ret;
+    }
+    
+    /**
+     * Lists compiled XSL of <tt>xslSourceDirs</tt>, to publish them
+     * @return The manifest to write in classes directory
+     */
+    private SefManifest buildSefManifest() {
+        SefManifest ret = new SefManifest(publishedSaxonKey);
+        String classesUri = classesDirectory.getAbsoluteFile().toURI().toString();
+        List<String> bases = new ArrayList<>();
+        for(File dir: xslSourceDirs) {
+            try {
+                bases.add(dir.getCanonicalFile().toURI().toString());
+            } catch(IOException ex) {
+                getLog().debug(LOG_PREFIX+" "+dir+": "+ex.getMessage());
+            }
+        }
+        for(GauloisXsl gx: foundXsls.values()) {
+            String sefUri = gx.getTargetFile().getAbsoluteFile().toURI().toString();
+            for(String base: bases) {
+                if(gx.getXslSystemId().startsWith(base)) {
+                    String closureHash = computeClosureHash(gx, base);
+                    if(closureHash!=null && sefUri.startsWith(classesUri)) {
+                        ret.put(gx.getXslSystemId().substring(base.length()), sefUri.substring(classesUri.length()), closureHash);
+                    }
+                    break;
+                }
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Computes the hash of a XSL closure, with paths relative to <tt>base</tt>
+     * @param gx The XSL
+     * @param base The classpath root URI XSL comes from
+     * @return The hash, or <tt>null</tt> if a module of closure is not under <tt>base</tt>
+     */
+    private String computeClosureHash(GauloisXsl gx, String base) {
+        Map<String,String> hashes = new HashMap<>();
         try {
-            initSaxon();
-        } catch(XPathException ex) {
-            getLog().error("while configuring saxon:",ex);
+            for(String uri: dependencyScanner.getClosure(gx.getXslSystemId())) {
+                if(!uri.startsWith(base)) return null;
+                hashes.put(uri.substring(base.length()), manifest.hashInput(uri));
+            }
+        } catch(IOException ex) {
+            return null;
         }
-        loadClasspath();
-        gauloisSets = new TreeSet<>();
-        foundXsls = new HashMap<>();
-        ThreadLocal<EntityResolver2> th = new ThreadLocal<>();
-        th.set(getEntityResolver());
-        getLog().warn(LOG_PREFIX+getXsltCompiler().getProcessor().getUnderlyingConfiguration().getSourceParserClass());
-
+        return SefManifest.closureHash(hashes);
+    }
+    
+    /**
+     * Copies XSL found in SEF cache to their target file
+     * @param xsls The XSL to compile
+     * @return The XSL that are not in cache, and still have to be compiled
+     */
+    private List<GauloisXsl> fetchFromCache(List<GauloisXsl> xsls) {
+        List<GauloisXsl> ret = new ArrayList<>(xsls.size());
+        for(GauloisXsl gx: xsls) {
+            if(gx.getCacheKey()!=null && sefCache.fetch(gx.getCacheKey(), gx.getTargetFile())) {
+                if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" "+gx.getXslSystemId()+" found in SEF cache");
+                manifest.putOutput(gx.getTargetFile(), gx.getFingerprint());
+            } else {
+                ret.add(gx);
+            }
+        }
+        if(!xsls.isEmpty()) {
+            getLog().info(LOG_PREFIX+" "+sefCache.getHits()+" XSL copied from SEF cache, "+sefCache.getMisses()+" to compile");
+        }
+        return ret;
+    }
+    
+    /**
+     * Stores a successfully compiled XSL in SEF cache, if any
+     * @param gx The compiled XSL
+     */
+    private void storeInCache(GauloisXsl gx) {
+        if(sefCache!=null && gx.getCacheKey()!=null) {
+            sefCache.store(gx.getCacheKey(), gx.getTargetFile());
+        }
+    }
+    
+    /**
+     * Compiles XSL to SEF. If <tt>compileThreads</tt> is greater than 1, compilation is 
+     * spread over a pool of worker threads. XSL and their modules are read from 
+     * the document pool, if any.
+     * @param xsls The XSL to compile
+     * @param scheduler Notified of each compiled XSL
+     * @return <tt>true</tt> if all XSL have been successfully compiled
+     * @throws MojoExecutionException If compilation has been interrupted
+     */
+    private boolean compileXsls(List<GauloisXsl> xsls, CompileScheduler scheduler) throws MojoExecutionException {
+        boolean ret = true;
+        if(compileWorkers<1 && documentPool==null && (compileThreads==1 || xsls.size()<2)) {
+            for(GauloisXsl gx: xsls) {
+                try {
+                    if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" compiling "+gx.getXslSystemId());
+                    Source xslSource = sourceStore!=null ? 
+                            sourceStore.getSource(gx.getXslSystemId()) : 
+                            new StreamSource(gx.getXslSystemId());
+                    long start = System.nanoTime();
+                    compileFile(xslSource, gx.getTargetFile());
+                    long duration = System.nanoTime()-start;
+                    report.addFile(BuildReport.XSL_COMPILE, gx.getXslSystemId(), duration, 
+                            BuildReport.sizeOf(gx.getXslSystemId()), BuildReport.sizeOf(gx.getTargetFile()));
+                    manifest.putOutput(gx.getTargetFile(), gx.getFingerprint());
+                    manifest.putDuration(gx.getXslSystemId(), duration);
+                    storeInCache(gx);
+                } catch (FileNotFoundException | SaxonApiException ex) {
+                    ret = false;
+                    getLog().warn(LOG_PREFIX+" while compiling "+gx.getXslSystemId(), ex);
+                }
+                scheduler.compiled(gx);
+            }
+            return ret;
+        }
+        List<XslCompilerPool.CompileResult> results;
         try {
-            URL url = getClass().getResource("/org/mricaud/xml-utilities/get-xml-file-static-dependency-tree.xsl");
-            StreamSource ssource = new StreamSource(url.openStream());
-            ssource.setSystemId(url.toExternalForm());
-            xutScanner = getXsltCompiler().compile(ssource);
-            xutFilter = getXsltCompiler().compile(new StreamSource(getClass().getResource("/top/marchand/maven/gaulois/compiler/schema-filter.xsl").openStream()));
-        } catch(SaxonApiException | IOException ex) {
-            throw new MojoFailureException("while compiling xut xsl", ex);
+            if(compileWorkers>0) {
+                results = compileForked(xsls, scheduler);
+            } else {
+                XslCompilerPool pool = new XslCompilerPool(getXsltCompiler(), compileThreads, documentPool);
+                getLog().debug(LOG_PREFIX+" compiling "+xsls.size()+" XSL on "+pool.getThreads()+" threads");
+                results = pool.compile(xsls, scheduler);
+            }
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("XSL compilation has been interrupted", ex);
         }
-        Path targetDir = classesDirectory.toPath();
+        // results are in submission order, so logs are always the same for a given schedule
+        for(XslCompilerPool.CompileResult result: results) {
+            GauloisXsl gx = result.getXsl();
+            for(String warning: result.getWarnings()) {
+                getLog().warn(LOG_PREFIX+" "+gx.getXslSystemId()+": "+warning);
+            }
+            for(String error: result.getErrors()) {
+                getLog().error(LOG_PREFIX+" "+gx.getXslSystemId()+": "+error);
+            }
+            report.addFile(BuildReport.XSL_COMPILE, gx.getXslSystemId(), result.getDurationNanos(), 
+                    BuildReport.sizeOf(gx.getXslSystemId()), BuildReport.sizeOf(gx.getTargetFile()));
+            if(result.isSuccess()) {
+                manifest.putOutput(gx.getTargetFile(), gx.getFingerprint());
+                manifest.putDuration(gx.getXslSystemId(), result.getDurationNanos());
+                storeInCache(gx);
+            } else {
+                ret = false;
+                getLog().warn(LOG_PREFIX+" while compiling "+gx.getXslSystemId(), result.getException());
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Compiles XSL in forked workers. XSL that import schemas are compiled in this JVM, 
+     * where schemas have been registered.
+     * @param xsls The XSL to compile
+     * @param listener Notified of each compiled XSL
+     * @return The compilation results : forked ones first, in submission order
+     * @throws InterruptedException If compilation has been interrupted
+     */
+    private List<XslCompilerPool.CompileResult> compileForked(List<GauloisXsl> xsls, XslCompilerPool.CompileListener listener) throws InterruptedException {
+        List<GauloisXsl> forked = new ArrayList<>(xsls.size());
+        List<GauloisXsl> local = new ArrayList<>();
+        for(GauloisXsl gx: xsls) {
+            if(gx.getSchemas().isEmpty()) forked.add(gx); else local.add(gx);
+        }
+        if(compileWorkerPool==null) {
+            compileWorkerPool = new CompileWorkerPool(getXsltCompiler(), compileWorkers, workerJvmArgs, getLog());
+        }
+        getLog().debug(LOG_PREFIX+" compiling "+forked.size()+" XSL on "+compileWorkerPool.getSize()+" workers, "+local.size()+" in Maven JVM");
+        List<XslCompilerPool.CompileResult> ret = new ArrayList<>(compileWorkerPool.compile(forked, dependencyScanner, listener));
+        ret.addAll(new XslCompilerPool(getXsltCompiler(), compileThreads, documentPool).compile(local, listener));
+        return ret;
+    }
+    
+    /**
+     * @return <tt>true</tt> if compile workers are kept after execution, to be reused by next one. 
+     * They must then be stopped with {@link #closeWorkers() }.
+     */
+    protected boolean keepsWorkers() {
+        return false;
+    }
+    
+    /**
+     * Stops compile workers, if any
+     */
+    protected void closeWorkers() {
+        if(compileWorkerPool!=null) {
+            compileWorkerPool.close();
+            compileWorkerPool = null;
+        }
+    }
+    
+    /**
+     * Scans all gaulois config files. If <tt>scanThreads</tt> is greater than 1, configs
+     * are scanned concurrently.
+     * @param entries The gaulois config files to scan
+     * @return <tt>true</tt> if an error occured
+     * @throws MojoExecutionException If scan has been interrupted
+     */
+    private boolean scanGauloisConfigs(List<GauloisConfigEntry> entries) throws MojoExecutionException {
+        final Path targetDir = classesDirectory.toPath();
         boolean hasError = false;
+        int threads = scanThreads<1 ? Runtime.getRuntime().availableProcessors() : scanThreads;
+        for(GauloisConfigEntry entry: entries) {
+            manifest.putConfig(entry.getKey());
+        }
+        if(threads==1 || entries.size()<2) {
+            for(GauloisConfigEntry entry: entries) {
+                hasError |= scanGauloisConfig(entry, targetDir);
+            }
+            return hasError;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, entries.size()), new WorkerThreadFactory("gaulois-scanner"));
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>(entries.size());
+            for(final GauloisConfigEntry entry: entries) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return scanGauloisConfig(entry, targetDir);
+                    }
+                }));
+            }
+            for(Future<Boolean> future: futures) {
+                hasError |= future.get();
+            }
+            return hasError;
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("gaulois config scan has been interrupted", ex);
+        } catch(ExecutionException ex) {
+            throw new MojoExecutionException("while scanning gaulois configs", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Scans a gaulois config file.
+     * @param entry The gaulois config to scan
+     * @param targetDir The build dir
+     * @return <tt>true</tt> if an error occured
+     */
+    private boolean scanGauloisConfig(GauloisConfigEntry entry, Path targetDir) {
+        if(entry.getFileSet()!=null) {
+            FileSet fs = entry.getFileSet();
+            try {
+                Source source = compiler.getURIResolver().resolve(fs.getUri(), null);
+                String sPath = fs.getUriPath();
+                if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" sPath="+sPath);
+                Path targetPath = targetDir.resolve(sPath).getParent();
+                if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" targetPath="+targetPath.toString());
+                String sourceFileName = sPath.substring(sPath.lastIndexOf("/")+1);
+                if(sourceFileName.contains("?")) {
+                    sourceFileName = sourceFileName.substring(0, sourceFileName.indexOf("?")-1);
+                }
+                // we keep the same extension for gaulois config files
+                File targetFile = targetPath.resolve(sourceFileName).toFile();
+                if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" targetFile="+targetFile.getAbsolutePath());
+                return scanGauloisFile(source, targetFile, targetDir);
+            } catch(TransformerException | URISyntaxException ex) {
+                getLog().error("while parsing "+fs.getUri(), ex);
+                return true;
+            }
+        } else {
+            try {
+                return scanGauloisFile(entry.getSourceFile(), entry.getTargetFile(), targetDir);
+            } catch(FileNotFoundException | URISyntaxException ex) {
+                // it can not be thrown but we are required to catch it
+                getLog().error(LOG_PREFIX+"while parsing "+entry.getSourceFile().getAbsolutePath(), ex);
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Lists all gaulois-pipe config files declared in <tt>gauloisPipeFilesets</tt>.
+     * Filesets based on URI are resolved later, when Saxon is initialized.
+     * @return The gaulois config files to scan
+     */
+    List<GauloisConfigEntry> listGauloisConfigs() {
+        Path targetDir = classesDirectory.toPath();
+        List<GauloisConfigEntry> ret = new ArrayList<>();
         getLog().debug(LOG_PREFIX+" looking for gaulois-pipe config files");
         for(FileSet fs: gauloisPipeFilesets) {
             if(fs.getUri()!=null && !fs.getUri().isEmpty()) {
-                try {
-                    Source source = compiler.getURIResolver().resolve(fs.getUri(), null);
-                    String sPath = fs.getUriPath();
-                    getLog().debug(LOG_PREFIX+" sPath="+sPath);
-                    Path targetPath = targetDir.resolve(sPath).getParent();
-                    getLog().debug(LOG_PREFIX+" targetPath="+targetPath.toString());
-                    String sourceFileName = sPath.substring(sPath.lastIndexOf("/")+1);
-                    if(sourceFileName.contains("?")) {
-                        sourceFileName = sourceFileName.substring(0, sourceFileName.indexOf("?")-1);
-                    }
-                    // we keep the same extension for gaulois config files
-                    File targetFile = targetPath.resolve(sourceFileName).toFile();
-                    getLog().debug(LOG_PREFIX+" targetFile="+targetFile.getAbsolutePath());
-                    hasError |= scanGauloisFile(source, targetFile, targetDir);
-                } catch(TransformerException | URISyntaxException ex) {
-                    hasError = true;
-                    getLog().error("while parsing "+fs.getUri(), ex);
-                }
+                ret.add(new GauloisConfigEntry(fs));
             } else {
-                List<Path> pathes = fs.getFiles(projectBaseDir, log);
+                List<Path> pathes = fs.getFiles(projectBaseDir, getLog());
                 // this must be call <strong>after</strong> the call to fs.getFiles, as fs.dir is modified by fs.getFiles
                 Path basedir = new File(fs.getDir()).toPath();
-                getLog().debug(LOG_PREFIX+"looking in "+basedir.toString());
+                if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+"looking in "+basedir.toString());
                 for(Path p: pathes) {
-                    getLog().debug(LOG_PREFIX+"found "+p.toString());
+                    if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+"found "+p.toString());
                     File sourceFile = basedir.resolve(p).toFile();
                     Path targetPath = p.getParent()==null ? targetDir : targetDir.resolve(p.getParent());
                     String sourceFileName = sourceFile.getName();
                     // we keep the same extension for gaulois config files
                     File targetFile = targetPath.resolve(sourceFileName).toFile();
-                    try {
-                        hasError |= scanGauloisFile(sourceFile, targetFile, targetDir);
-                    } catch(FileNotFoundException | URISyntaxException ex) {
-                        // it can not be thrown but we are required to catch it
-                        hasError = true;
-                        getLog().error(LOG_PREFIX+"while parsing "+p.toString(), ex);
-                    }
+                    ret.add(new GauloisConfigEntry(sourceFile, targetFile));
                 }
             }
         }
-        StringBuilder sb = new StringBuilder();
-        for(GauloisXsl gx: foundXsls.values()) sb.append(gx.getXslSystemId()).append("->").append(gx.getTargetFile().getAbsolutePath()).append("\n");
-        getLog().debug("Found XSL: "+sb.toString());
-        if(!hasError) {
-            for(String xslSystemId: foundXsls.keySet()) {
-                try {
-                    getLog().debug(LOG_PREFIX+" compiling "+xslSystemId);
-                    Source xslSource = new StreamSource(xslSystemId);
-                    File targetFile = foundXsls.get(xslSystemId).getTargetFile();
-                    compileFile(xslSource, targetFile);
-                } catch (FileNotFoundException | SaxonApiException ex) {
-                    getLog().warn(LOG_PREFIX+" while compiling "+xslSystemId, ex);
-                }
+        return ret;
+    }
+    
+    private static Set<String> getConfigKeys(List<GauloisConfigEntry> entries) {
+        Set<String> ret = new HashSet<>();
+        for(GauloisConfigEntry entry: entries) ret.add(entry.getKey());
+        return ret;
+    }
+    
+    /**
+     * Computes the fingerprint of Saxon configuration : Saxon version, <tt>SaxonOptions</tt>
+     * and catalog. Stylesheets compiled with the same Saxon key can be shared.
+     * @return The Saxon fingerprint
+     * @throws MojoExecutionException If catalog can not be read
+     */
+    private String computeSaxonKey() throws MojoExecutionException {
+        try {
+            return new Fingerprint()
+                    .add(Version.getProductTitle())
+                    .addObject(saxonOptions)
+                    .add(catalog==null ? null : catalog.getAbsolutePath())
+                    .addContent(catalog)
+                    .toString();
+        } catch(IOException ex) {
+            throw new MojoExecutionException("while computing Saxon fingerprint", ex);
+        }
+    }
+    
+    /**
+     * Computes the fingerprint of everything that is not a source file, but has an 
+     * impact on compilation : Saxon version and options, catalog, declared post-compilers, ...
+     * <p>It is computed before the up-to-date check, so it must not require Saxon : 
+     * post-compilers are only keyed on their declaration here. Their resolved modules are 
+     * recorded as build inputs when configs are fingerprinted, and the up-to-date check 
+     * compares their stamps.</p>
+     * @return The build fingerprint
+     * @throws MojoExecutionException If a configuration file can not be read
+     */
+    private String computeBuildKey() throws MojoExecutionException {
+        try {
+            Fingerprint fp = new Fingerprint()
+                    .add(BuildManifest.FORMAT_VERSION)
+                    .add(saxonKey)
+                    .add(classesDirectory.getAbsolutePath())
+                    .add(getSchemasDestination().getAbsolutePath())
+                    .add(xslSourceDirs.toString())
+                    .add(String.valueOf(classpaths))
+                    .addContent(getClass().getResource(GAULOIS_COMPILER_XSL));
+            fp.add(postCompiler==null ? null : postCompiler.getAbsolutePath());
+            if(postCompilers!=null) {
+                for(String stage: postCompilers) fp.add(stage);
             }
-            Source xsl = new StreamSource(this.getClass().getResourceAsStream("/top/marchand/maven/gaulois/compiler/gaulois-compiler.xsl"));
-            try {
-                gauloisCompilerXsl = getXsltCompiler().compile(xsl);
-                // we need to construct a map <xsl resolved URI -> target path>
-                XdmMap xslMap = buildXslMap(foundXsls);
-                for(GauloisSet gs: gauloisSets) {
-                    getLog().debug(LOG_PREFIX+" compiling "+gs.getGauloisConfigSystemId());
-                    // passer ici les schemas à déclarer
-                    compileGaulois(new StreamSource(gs.getGauloisConfigSystemId()), gs.getTargetFile(), gs.getAllSchemas(), xslMap);
-                }
-            } catch(SaxonApiException ex) {
-                getLog().error(ex);
+            return fp.toString();
+        } catch(IOException ex) {
+            throw new MojoExecutionException("while computing build fingerprint", ex);
+        }
+    }
+    
+    /**
+     * Computes the fingerprint of a XSL, from its content and the content of all its dependencies
+     * @param gx The XSL
+     */
+    private void computeFingerprint(GauloisXsl gx) {
+        try {
+            Fingerprint fp = new Fingerprint()
+                    .add(manifest.getBuildKey())
+                    .add(gx.getTargetFile().getAbsolutePath());
+            // compiled form does not depend on where it is written : SEF cache key is shared by projects
+            Fingerprint cacheKey = new Fingerprint()
+                    .add(BuildManifest.FORMAT_VERSION)
+                    .add(saxonKey);
+            for(String uri: new TreeSet<>(dependencyScanner.getClosure(gx.getXslSystemId()))) {
+                String hash = manifest.hashInput(uri);
+                fp.add(uri).add(hash);
+                cacheKey.add(uri).add(hash);
             }
-        } else {
-            getLog().warn(LOG_PREFIX+" Errors occured");
+            gx.setFingerprint(fp.toString());
+            gx.setCacheKey(cacheKey.toString());
+        } catch(IOException ex) {
+            getLog().debug(LOG_PREFIX+" unable to fingerprint "+gx.getXslSystemId()+": "+ex.getMessage());
+        }
+    }
+    
+    /**
+     * Computes the fingerprint of a gaulois config file, from its content and the fingerprints of its XSL
+     * @param gs The gaulois config
+     * @return The fingerprint, or <tt>null</tt> if it can not be computed
+     */
+    private String computeFingerprint(GauloisSet gs, String postCompilersKey) {
+        if(postCompilersKey==null) return null;
+        try {
+            Fingerprint fp = new Fingerprint()
+                    .add(manifest.getBuildKey())
+                    .add(postCompilersKey)
+                    .add(gs.getGauloisConfigSystemId())
+                    .add(manifest.hashInput(gs.getGauloisConfigSystemId()))
+                    .add(gs.getTargetFile().getAbsolutePath());
+            for(GauloisXsl gx: gs.getXsls()) {
+                if(gx.getFingerprint()==null) return null;
+                fp.add(gx.getOriginalSystemId()).add(gx.getTargetFile().getAbsolutePath()).add(gx.getFingerprint());
+            }
+            for(String schema: gs.getAllSchemas()) fp.add(schema);
+            return fp.toString();
+        } catch(IOException ex) {
+            getLog().debug(LOG_PREFIX+" unable to fingerprint "+gs.getGauloisConfigSystemId()+": "+ex.getMessage());
+            return null;
         }
     }
     
     private XdmMap buildXslMap(Map<String,GauloisXsl> xsls) {
         Map<String,String> tempMap = new HashMap<>();
         for(GauloisXsl gx: xsls.values()) {
-            tempMap.put(gx.getOriginalSystemId(), gx.getTargetFile().getAbsolutePath());
+            for(String href: gx.getOriginalSystemIds()) {
+                tempMap.put(href, gx.getTargetFile().getAbsolutePath());
+            }
         }
         return XdmMap.makeMap(tempMap);
     }
     
     private static final String LOG_PREFIX = "[gaulois-compiler]";
+    private static final String GAULOIS_COMPILER_XSL = "/top/marchand/maven/gaulois/compiler/gaulois-compiler.xsl";
+    private static final String SCHEMA_FILTER_XSL = "/top/marchand/maven/gaulois/compiler/schema-filter.xsl";
+    private static final String XUT_SCANNER_XSL = "/org/mricaud/xml-utilities/get-xml-file-static-dependency-tree.xsl";
     private static final String ERROR_MESSAGE = "<gauloisPipeFilesets>\n\t<gauloisPipeFileset>\n\t\t<dir>src/main/xsl...</dir>\n\t</gauloisPipeFileset>\n</gauloisPipeFilesets>\n is required in gaulois-compiler-maven-plugin configuration";
 
     @Override
@@ -310,9 +1200,9 @@ public class GCMojo extends AbstractCompiler {
      */
     protected boolean scanGauloisFile(File sourceFile, File targetFile, Path targetDir) throws FileNotFoundException, URISyntaxException {
         String systemId = sourceFile.toURI().toString();
-        getLog().debug("scanGauloisFile("+systemId+",File, Path);");
-        InputSource is = new InputSource(new FileInputStream(sourceFile));
-        is.setSystemId(systemId);
+        if(getLog().isDebugEnabled()) getLog().debug("scanGauloisFile("+systemId+",File, Path);");
+        // only systemId is used
+        InputSource is = new InputSource(systemId);
         SAXSource source = new SAXSource(is);
         source.setSystemId(systemId);
         return scanGauloisFile(source, targetFile, targetDir);
@@ -320,87 +1210,231 @@ public class GCMojo extends AbstractCompiler {
     protected boolean scanGauloisFile(Source source, File targetFile, Path targetDir) throws URISyntaxException {
         assert(source.getSystemId()!=null);
         try {
-            final XMLReader reader = new ParserAdapter(PARSER_FACTORY.newSAXParser().getParser());
-            final GauloisConfigScanner scanner = new GauloisConfigScanner(xslSourceDirs, classesDirectory, getUriResolver(), getLog(), classpaths);
-            XMLFilter filter = new XMLFilterImpl(reader) {
-                @Override
-                public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-                    super.startElement(uri, localName, qName, atts);
-                    scanner.startElement(uri, localName, qName, atts);
-                }
-            };
-            // use systemId to create a new InputSource, and to keep the Source not consumed
-            filter.parse(source.getSystemId());
+            final GauloisConfigScanner scanner = new GauloisConfigScanner(xslLocator, getLog());
+            XdmNode configTree = null;
+            if(singleParse) {
+                // built with the shared processor, as gaulois compiler may come from another execution
+                configTree = getSharedProcessor().newDocumentBuilder().build(new StreamSource(source.getSystemId()));
+                scanner.scan(configTree);
+            } else if(leanScan) {
+                scanner.scan(source.getSystemId());
+            } else {
+                final XMLReader reader = SaxParsers.newXMLReader();
+                XMLFilter filter = new XMLFilterImpl(reader) {
+                    @Override
+                    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+                        super.startElement(uri, localName, qName, atts);
+                        scanner.startElement(uri, localName, qName, atts);
+                    }
+                };
+                // use systemId to create a new InputSource, and to keep the Source not consumed
+                filter.parse(source.getSystemId());
+            }
             if(scanner.hasErrors()) {
                 for(String errorMsg: scanner.getErrorMessages()) {
                     getLog().error(errorMsg);
                 }
             } else {
                 GauloisSet set = new GauloisSet(source.getSystemId(), targetFile);
-                if(!gauloisSets.contains(set)) {
-                    gauloisSets.add(set);
+                set.setConfigTree(configTree);
+                // configs may be scanned concurrently : only the first one that adds a set or a XSL handles it
+                if(gauloisSets.add(set)) {
                     for(Source xslSource: scanner.getXslToCompile().keySet()) {
-                        GauloisXsl xsl = foundXsls.get(xslSource.getSystemId());
+                        GauloisConfigScanner.FileInfo fileInfo =  scanner.getXslToCompile().get(xslSource);
+                        String xslSystemId = uriTable.canonical(xslSource.getSystemId());
+                        GauloisXsl candidate = new GauloisXsl(xslSystemId, fileInfo.getFile(), fileInfo.getOriginalSystemId());
+                        GauloisXsl xsl = foundXsls.putIfAbsent(xslSystemId, candidate);
                         if(xsl==null) {
-                            GauloisConfigScanner.FileInfo fileInfo =  scanner.getXslToCompile().get(xslSource);
-                            xsl = new GauloisXsl(xslSource.getSystemId(), fileInfo.getFile(), fileInfo.getOriginalSystemId());
-                            foundXsls.put(xslSource.getSystemId(), xsl);
+                            xsl = candidate;
                             scanForSchemas(xsl);
                         }
+                        xsl.getOriginalSystemIds().add(fileInfo.getOriginalSystemId());
                         set.getXsls().add(xsl);
                     }
                 }
             }
             return scanner.hasErrors();
-        } catch(ParserConfigurationException | SAXException | SaxonApiException | IOException ex) {
+        } catch(ParserConfigurationException | SAXException | XMLStreamException | SaxonApiException | IOException ex) {
             getLog().error("while scanning "+source.getSystemId(), ex);
             return true;
         }
     }
     protected void compileGaulois(Source source, File target, Set<String> schemas, XdmMap xslMap) throws SaxonApiException {
-        XsltTransformer tr = gauloisCompilerXsl.load();
-        tr.setURIResolver(getUriResolver());
-        ArrayList<XdmAtomicValue> values = new ArrayList<>();
-        for(String schema:schemas) {
-            getLog().info(LOG_PREFIX+target.getName()+" has schema: "+schema);
-            values.add(new XdmAtomicValue(schema));
-        }
-        XdmValue sequence = new XdmValue(values);
-        tr.setMessageListener(new MessageListener() {
+        new GauloisConfigCompiler(gauloisCompilerXsl, getPostCompilerXsls(), getUriResolver(), report, getLog())
+                .compile(source, target, schemas, xslMap, classesDirectory.getAbsolutePath());
+    }
+    /**
+     * Returns all post-compiler stages : <tt>postCompiler</tt>, then <tt>postCompilers</tt>.
+     * Each stage is compiled once, and shared with other executions while its content 
+     * does not change.
+     * @return The post-compiler stages, in order. May be empty.
+     * @throws SaxonApiException If a stage can not be found or compiled
+     */
+    protected List<XsltExecutable> getPostCompilerXsls() throws SaxonApiException {
+        if(postCompilerXsls==null) {
+            List<XsltExecutable> ret = new ArrayList<>();
+            for(String systemId: getPostCompilerSystemIds()) {
+                ret.add(getPostCompilerXsl(systemId));
+            }
+            postCompilerXsls = ret;
+        }
+        return postCompilerXsls;
+    }
+    private List<String> getPostCompilerSystemIds() throws SaxonApiException {
+        List<String> ret = new ArrayList<>();
+        if(postCompiler!=null && postCompiler.isFile()) {
+            ret.add(postCompiler.toURI().toString());
+        }
+        if(postCompilers!=null) {
+            for(String stage: postCompilers) {
+                ret.add(resolvePostCompiler(stage));
+            }
+        }
+        return ret;
+    }
+    /**
+     * Resolves a post-compiler stage : a <tt>cp:/</tt> URI, thru the catalog or in classpath, 
+     * or a file, relative to project base directory.
+     */
+    private String resolvePostCompiler(String stage) throws SaxonApiException {
+        if(stage.startsWith("cp:/")) {
+            try {
+                Source source = getUriResolver()==null ? null : getUriResolver().resolve(stage, "");
+                if(source!=null && source.getSystemId()!=null) return source.getSystemId();
+            } catch(TransformerException ex) {
+                // search in classpath
+            }
+            String systemId = classpathIndex.lookup(stage.substring(3));
+            if(systemId==null) throw new SaxonApiException("post-compiler "+stage+" not found");
+            return systemId;
+        }
+        File file = new File(stage);
+        if(!file.isAbsolute()) file = new File(projectBaseDir, stage);
+        if(!file.isFile()) throw new SaxonApiException("post-compiler "+file.getAbsolutePath()+" not found");
+        return file.toURI().toString();
+    }
+    /**
+     * Compiles a post-compiler stage. XSL are compiled with their systemId, so that relative 
+     * includes work ; <tt>.sef</tt> are loaded as compiled packages.
+     */
+    private XsltExecutable getPostCompilerXsl(final String systemId) throws SaxonApiException {
+        String hash;
+        try {
+            hash = computePostCompilerHash(systemId);
+        } catch(IOException ex) {
+            throw new SaxonApiException("while reading post-compiler "+systemId, ex);
+        }
+        return stylesheetCache.get(saxonKey, "postCompiler|"+systemId+"|"+hash, new Callable<XsltExecutable>() {
             @Override
-            public void message(XdmNode xn, boolean bln, SourceLocator sl) {
-                getLog().debug(xn.toString());
+            public XsltExecutable call() throws SaxonApiException, URISyntaxException {
+                getLog().debug(LOG_PREFIX+" compiling post-compiler "+systemId);
+                XsltCompiler compiler = newSharedCompiler();
+                if(systemId.endsWith(".sef")) {
+                    return compiler.loadExecutablePackage(new URI(systemId));
+                }
+                return compiler.compile(new StreamSource(systemId));
             }
         });
-        tr.setParameter(QN_PARAM_SCHEMAS, sequence);
-        tr.setParameter(QN_PARAM_XSLMAP, xslMap);
-        tr.setParameter(QN_TARGET_PATH, XdmValue.makeValue(classesDirectory.getAbsolutePath()));
-        XsltTransformer first = tr;
-        // post compiler ?
-        XsltTransformer pc = getPostCompiler();
-        if(pc!=null) {
-            tr.setDestination(pc);
-            tr = pc;
-        }
-        Serializer ser = getProcessor().newSerializer(target);
-        tr.setDestination(ser);
-        XdmNode sourceNode = getBuilder().build(source);
-        first.setInitialContextNode(sourceNode);
-        first.transform();
-        first.close();
-    }
-    protected XsltTransformer getPostCompiler() {
-        if(postCompilerXsl==null && postCompiler!=null && postCompiler.exists() && postCompiler.isFile()) {
+    }
+    
+    /**
+     * Computes the fingerprint of all post-compiler stages, as they are resolved, with all 
+     * the modules they include or import
+     * @return The fingerprint, or <tt>null</tt> if a stage can not be read
+     */
+    private String computePostCompilersKey() {
+        Fingerprint fp = new Fingerprint();
+        try {
+            for(String systemId: getPostCompilerSystemIds()) {
+                fp.add(systemId).add(computePostCompilerHash(systemId));
+            }
+        } catch(SaxonApiException ex) {
+            // compilation will report it
+            fp.add(ex.getMessage());
+        } catch(IOException ex) {
+            getLog().debug(LOG_PREFIX+" unable to fingerprint post-compilers: "+ex.getMessage());
+            return null;
+        }
+        return fp.toString();
+    }
+    
+    /**
+     * Computes the fingerprint of a post-compiler stage, from its content and the content 
+     * of all modules it includes or imports. All of them are recorded as build inputs.
+     * @param systemId The stage, as resolved by {@link #resolvePostCompiler(java.lang.String) }
+     * @return The fingerprint
+     * @throws IOException If the stage can not be read
+     */
+    private String computePostCompilerHash(String systemId) throws IOException {
+        Fingerprint fp = new Fingerprint().add(manifest.hashInput(systemId));
+        DependencyScanner scanner = new DependencyScanner(getUriResolver(), getLog());
+        for(String uri: new TreeSet<>(scanner.getClosure(systemId))) {
+            if(uri.equals(systemId)) continue;
+            fp.add(uri);
             try {
-                postCompilerXsl = getXsltCompiler().compile(new StreamSource(new FileInputStream(postCompiler)));
-            } catch(SaxonApiException | FileNotFoundException ex) {
-                getLog().error("while compiling post-compiler "+postCompiler.getAbsolutePath(), ex);
+                fp.add(manifest.hashInput(uri));
+            } catch(IOException ex) {
+                // a missing module is part of the fingerprint
+                fp.add(null);
             }
         }
-        return postCompilerXsl==null ? null : postCompilerXsl.load();
+        return fp.toString();
+    }
+    
+    /**
+     * Returns a stylesheet bundled with the plugin, from the stylesheet cache.
+     * The precompiled SEF packaged in plugin is used if possible, else stylesheet is 
+     * compiled from source.
+     * @param resource The stylesheet resource path
+     * @return The compiled stylesheet
+     * @throws SaxonApiException If stylesheet can not be compiled
+     */
+    private XsltExecutable getInternalStylesheet(final String resource) throws SaxonApiException {
+        final URL url = getClass().getResource(resource);
+        return stylesheetCache.get(saxonKey, url.toExternalForm(), new Callable<XsltExecutable>() {
+            @Override
+            public XsltExecutable call() throws SaxonApiException, IOException {
+                XsltCompiler sharedCompiler = newSharedCompiler();
+                XsltExecutable precompiled = PrecompiledStylesheets.load(sharedCompiler, resource, getLog());
+                if(precompiled!=null) {
+                    getLog().debug(LOG_PREFIX+" using precompiled "+resource);
+                    return precompiled;
+                }
+                StreamSource source = new StreamSource(url.openStream());
+                source.setSystemId(url.toExternalForm());
+                return sharedCompiler.compile(source);
+            }
+        });
+    }
+    
+    /**
+     * @return The processor shared by all executions with the same Saxon configuration
+     */
+    private Processor getSharedProcessor() {
+        return stylesheetCache.getProcessor(saxonKey, getXsltCompiler().getProcessor());
+    }
+    /**
+     * Returns a new compiler of the processor shared by all executions with the same 
+     * Saxon key, configured as the compiler of this execution : its URI resolver resolves 
+     * <tt>cp:/</tt> against this module classpath. Stylesheets that are put in the stylesheet 
+     * cache must be compiled with it.
+     * @return A new compiler
+     */
+    private XsltCompiler newSharedCompiler() {
+        return XslCompilerPool.newCompiler(getSharedProcessor(), getXsltCompiler());
     }
     protected void scanForSchemas(GauloisXsl xsl) throws SaxonApiException, URISyntaxException, IOException {
-        getLog().debug(LOG_PREFIX+" scanning for schema "+xsl.getXslSystemId());
+        if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" scanning for schema "+xsl.getXslSystemId());
+        long start = System.nanoTime();
+        List<SchemaDependency> schemas = useXutScanner ? 
+                scanForSchemasWithXut(xsl) : 
+                dependencyScanner.getImportedSchemas(xsl.getXslSystemId());
+        report.addPhase(BuildReport.SCHEMA_SCAN, System.nanoTime()-start);
+        for(SchemaDependency schema: schemas) {
+            exploreFile(xsl, schema);
+        }
+    }
+    private List<SchemaDependency> scanForSchemasWithXut(GauloisXsl xsl) throws SaxonApiException {
         XsltTransformer xut = xutScanner.load();
         xut.setMessageListener(new NullMessageListener());
         XsltTransformer filter = xutFilter.load();
@@ -411,8 +1445,8 @@ public class GCMojo extends AbstractCompiler {
             @Override
             public void message(XdmNode xn, boolean bln, SourceLocator sl) { }
         });
-        XdmNode xslDocument = getBuilder().build(new StreamSource(xsl.getXslSystemId()));
-        xut.setInitialContextNode(xslDocument);
+        // xut scanner may have been compiled by another execution, with another Configuration
+        xut.setSource(sourceStore!=null ? sourceStore.getSource(xsl.getXslSystemId()) : new StreamSource(xsl.getXslSystemId()));
         xut.setParameter(new QName(XUT_NS, "xut:get-xml-file-static-dependency-tree.filterDuplicatedDependencies"), new XdmAtomicValue(true));
         xut.transform();
         XdmNode dependencies = dest.getXdmNode();
@@ -420,41 +1454,51 @@ public class GCMojo extends AbstractCompiler {
         // all first-level childs are imported schemas
         XdmNode file = (XdmNode)(dependencies.axisIterator(Axis.CHILD).next());
         XdmSequenceIterator xsi = file.axisIterator(Axis.CHILD);
+        List<SchemaDependency> ret = new ArrayList<>();
         while(xsi.hasNext()) {
-            exploreFile(xsl, (XdmNode)(xsi.next()));
-        }
-    }
-    private void exploreFile(GauloisXsl xsl, XdmNode node) throws URISyntaxException, IOException {
-        String dependencyType = node.getAttributeValue(QN_DEP_TYPE);
-        String absUri = node.getAttributeValue(QN_ABS_URI);
-        getLog().debug(LOG_PREFIX+"\texploreFile <"+node.getNodeName()+" "+QN_DEP_TYPE.toString()+"="+dependencyType+" absUri="+absUri);
-        if(dependencyType.equals("xsl:import-schema")) { // always true, but for documentation
-            String uri = node.getAttributeValue(QN_URI);
-            String name = node.getAttributeValue(QN_NAME);
-            SchemaTarget targetSchema = getTargetSchemaFile(name, absUri);
-            xsl.getSchemas().add(targetSchema.getAccessUri());
-            getLog().debug(LOG_PREFIX+"\turi is "+absUri);
-            copyUriToFile(absUri, targetSchema.getFileLocation());
-            XdmSequenceIterator it = node.axisIterator(Axis.CHILD);
-            while(it.hasNext()) {
-                XdmNode schemaNode = (XdmNode)it.next();
-                copySubSchema(targetSchema.getFileLocation(), schemaNode);
-            }
-        }
-    }
-    private void copySubSchema(File parent, XdmNode schemaNode) throws URISyntaxException, IOException {
-        String dependencyType = schemaNode.getAttributeValue(QN_DEP_TYPE);
-		if(dependencyType != null && dependencyType.equals("xsl:import-schema")) { // NOT always true => sometimes we get a <report> child with info about the parent file
-			String uri = schemaNode.getAttributeValue(QN_URI);
-			String absUri = schemaNode.getAttributeValue(QN_ABS_URI);
-			File schemaFile = parent.toPath().resolve(uri).toFile();
-			copyFile(new File(new URI(absUri)), schemaFile);
-			XdmSequenceIterator it = schemaNode.axisIterator(Axis.CHILD);
-			while(it.hasNext()) {
-				XdmNode subSchemaNode = (XdmNode)it.next();
-				copySubSchema(schemaFile, subSchemaNode);
-			}
-		}
+            ret.add(toSchemaDependency((XdmNode)(xsi.next())));
+        }
+        return ret;
+    }
+    private static SchemaDependency toSchemaDependency(XdmNode node) {
+        SchemaDependency ret = new SchemaDependency(
+                node.getAttributeValue(QN_DEP_TYPE), 
+                node.getAttributeValue(QN_NAME), 
+                node.getAttributeValue(QN_URI), 
+                node.getAttributeValue(QN_ABS_URI));
+        XdmSequenceIterator it = node.axisIterator(Axis.CHILD);
+        while(it.hasNext()) {
+            ret.getChildren().add(toSchemaDependency((XdmNode)it.next()));
+        }
+        return ret;
+    }
+    private void exploreFile(GauloisXsl xsl, SchemaDependency schema) throws URISyntaxException, IOException {
+        String dependencyType = schema.getDependencyType();
+        String absUri = schema.getAbsUri();
+        if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+"\texploreFile "+dependencyType+" "+schema.getName()+" absUri="+absUri);
+        if(DependencyScanner.XSL_IMPORT_SCHEMA.equals(dependencyType)) { // always true, but for documentation
+            if(absUri==null) {
+                throw new IOException(schema.getUri()+" imported by "+xsl.getXslSystemId()+" is not available");
+            }
+            SchemaTarget targetSchema = getTargetSchemaFile(schema.getName(), absUri);
+            xsl.getSchemas().add(uriTable.canonical(targetSchema.getAccessUri()));
+            if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+"\turi is "+absUri);
+            schemaRegistry.register(absUri, targetSchema.getFileLocation());
+            for(SchemaDependency subSchema: schema.getChildren()) {
+                copySubSchema(targetSchema.getFileLocation(), subSchema);
+            }
+        }
+    }
+    private void copySubSchema(File parent, SchemaDependency schema) throws URISyntaxException, IOException {
+        String dependencyType = schema.getDependencyType();
+        if(DependencyScanner.XSL_IMPORT_SCHEMA.equals(dependencyType)) { // NOT always true => sometimes we get a <report> child with info about the parent file
+            String absUri = schema.getAbsUri();
+            File schemaFile = parent.toPath().resolve(schema.getUri()).toFile();
+            schemaRegistry.register(absUri, schemaFile);
+            for(SchemaDependency subSchema: schema.getChildren()) {
+                copySubSchema(schemaFile, subSchema);
+            }
+        }
     }
     private SchemaTarget getTargetSchemaFile(String name, String absUri) {
         File destSchema = new File(getSchemasDestination(), name);
@@ -463,31 +1507,6 @@ public class GCMojo extends AbstractCompiler {
         return new SchemaTarget(accessUri, destSchema);
     }
     
-    private void copyFile(File source, File dest) throws IOException {
-        dest.getParentFile().mkdirs();
-        try (
-                FileChannel in = new FileInputStream(source).getChannel(); 
-                FileChannel out = new FileOutputStream(dest).getChannel()) {
-            in.transferTo (0, in.size(), out);
-        }
-    }
-    
-    private void copyUriToFile(String uri, File dest) throws IOException, URISyntaxException {
-        dest.getParentFile().mkdirs();
-        URL url = new URI(uri).toURL();
-        InputStream is = url.openStream();
-        try (
-                ReadableByteChannel in = Channels.newChannel(is);
-                FileChannel out = new FileOutputStream(dest).getChannel()) {
-            final long size = 5*1024;
-            long offset = 0;
-            long  vol = out.transferFrom(in, 0, size);
-            while(vol==size) {
-                offset+=vol;
-                vol = out.transferFrom(in, offset, size);
-            }
-        }
-    }
     private void loadClasspath() {
         try {
             classpaths = new ArrayList<>(project.getCompileClasspathElements().size());
@@ -531,6 +1550,149 @@ public class GCMojo extends AbstractCompiler {
         
     }
 
+    /**
+     * A gaulois-pipe config file to scan : either a file found in a fileset, or a fileset 
+     * based on a URI, that will be resolved thru the catalog.
+     */
+    static class GauloisConfigEntry {
+        private final File sourceFile;
+        private final File targetFile;
+        private final FileSet fileSet;
+        
+        public GauloisConfigEntry(final File sourceFile, final File targetFile) {
+            super();
+            this.sourceFile = sourceFile;
+            this.targetFile = targetFile;
+            this.fileSet = null;
+        }
+        
+        public GauloisConfigEntry(final FileSet fileSet) {
+            super();
+            this.sourceFile = null;
+            this.targetFile = null;
+            this.fileSet = fileSet;
+        }
+
+        public File getSourceFile() {
+            return sourceFile;
+        }
+
+        public File getTargetFile() {
+            return targetFile;
+        }
+
+        public FileSet getFileSet() {
+            return fileSet;
+        }
+        
+        /**
+         * The key that identifies this config in build manifest
+         * @return The key
+         */
+        public String getKey() {
+            return fileSet==null ? sourceFile.toURI().toString() : fileSet.getUri();
+        }
+    }
+
+    /**
+     * Compiles gaulois configs in a background thread, as soon as the scheduler tells 
+     * that all their XSL have been compiled. Configs that become ready together are 
+     * compiled in a single transformation if <tt>batchCompile</tt> is set.
+     */
+    private class ConfigCompilation implements Runnable {
+        private final CompileScheduler scheduler;
+        private final Map<GauloisSet,String> toCompile;
+        private final XdmMap xslMap;
+        private final List<XsltExecutable> postCompilerXsls;
+        private final List<Exception> errors;
+        private long busyNanos;
+        private Thread thread;
+        
+        public ConfigCompilation(CompileScheduler scheduler, Map<GauloisSet,String> toCompile, XdmMap xslMap, List<XsltExecutable> postCompilerXsls) {
+            super();
+            this.scheduler = scheduler;
+            this.toCompile = toCompile;
+            this.xslMap = xslMap;
+            this.postCompilerXsls = postCompilerXsls;
+            this.errors = new ArrayList<>();
+        }
+        
+        public void start() {
+            thread = new WorkerThreadFactory("gaulois-config").newThread(this);
+            thread.start();
+        }
+        
+        public void join() throws InterruptedException {
+            thread.join();
+        }
+        
+        public void interrupt() {
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            GauloisBatchCompiler batchCompiler = null;
+            GauloisConfigCompiler configCompiler = new GauloisConfigCompiler(gauloisCompilerXsl, postCompilerXsls, getUriResolver(), report, getLog());
+            try {
+                for(List<GauloisSet> ready = scheduler.takeReady(); !ready.isEmpty(); ready = scheduler.takeReady()) {
+                    long start = System.nanoTime();
+                    if(batchCompile && ready.size()>1) {
+                        if(batchCompiler==null) {
+                            batchCompiler = new GauloisBatchCompiler(gauloisCompilerXsl, postCompilerXsls, getUriResolver(), report, getLog());
+                        }
+                        for(List<GauloisSet> batch: batches(ready)) {
+                            getLog().debug(LOG_PREFIX+" compiling "+batch.size()+" configs in a single transformation");
+                            try {
+                                batchCompiler.compile(batch, xslMap, classesDirectory.getAbsolutePath());
+                                for(GauloisSet gs: batch) {
+                                    manifest.putOutput(gs.getTargetFile(), toCompile.get(gs));
+                                }
+                            } catch(SaxonApiException | RuntimeException ex) {
+                                addError(ex);
+                            }
+                        }
+                    } else {
+                        for(GauloisSet gs: ready) {
+                            if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" compiling "+gs.getGauloisConfigSystemId());
+                            try {
+                                configCompiler.compile(gs, xslMap, classesDirectory.getAbsolutePath());
+                                manifest.putOutput(gs.getTargetFile(), toCompile.get(gs));
+                            } catch(SaxonApiException | RuntimeException ex) {
+                                addError(ex);
+                            }
+                        }
+                    }
+                    addBusyNanos(System.nanoTime()-start);
+                }
+            } catch(InterruptedException ex) {
+                addError(ex);
+            }
+        }
+        
+        private synchronized void addError(Exception ex) {
+            errors.add(ex);
+        }
+        
+        private synchronized void addBusyNanos(long nanos) {
+            busyNanos += nanos;
+        }
+        
+        /**
+         * @return The errors that occured. To be called after {@link #join() }.
+         */
+        public synchronized List<Exception> getErrors() {
+            return new ArrayList<>(errors);
+        }
+        
+        /**
+         * @return The time spent compiling configs, waits for XSL excluded
+         */
+        public synchronized long getBusyNanos() {
+            return busyNanos;
+        }
+    }
+
     @Override
     public SaxonOptions getSaxonOptions() {
         return saxonOptions;
@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import top.marchand.maven.gaulois.compiler.utils.SourceWatcher;
+
+/**
+ * Compiles, then stays resident and recompiles each time a source changes : XSL 
+ * directories, gaulois config directories and catalog are watched.
+ * <p>Saxon is initialized once, and compiled stylesheets are kept ; as compilation is 
+ * incremental, only the XSL, schemas and configs affected by a change are compiled again.
+ * Only a catalog change re-initializes Saxon.</p>
+ * <pre>mvn gaulois-compiler:watch</pre>
+ * @author cmarchand
+ */
+@Mojo(name="watch", requiresDependencyResolution = ResolutionScope.COMPILE)
+public class GCWatchMojo extends GCMojo {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    
+    /**
+     * The time, in milliseconds, without any change after which sources are recompiled. 
+     * Editors that save many files lead to a single recompilation.
+     */
+    @Parameter(defaultValue = "200", property = "gaulois.compiler.watchQuietPeriod")
+    private long watchQuietPeriod;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if(!isIncremental()) {
+            getLog().warn(LOG_PREFIX+" incremental is false : each change recompiles all sources");
+        }
+        super.execute();
+        try (SourceWatcher watcher = new SourceWatcher(getLog())) {
+            for(File dir: getSourceDirectories()) {
+                watcher.watchTree(dir.toPath());
+            }
+            if(getCatalogFile()!=null) {
+                watcher.watchFile(getCatalogFile().toPath());
+            }
+            getLog().info(LOG_PREFIX+" watching sources, Ctrl-C to stop");
+            while(!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = watcher.take(watchQuietPeriod);
+                long start = System.currentTimeMillis();
+                if(getLog().isDebugEnabled()) getLog().debug(LOG_PREFIX+" changed: "+changed);
+                sourcesChanged(changed);
+                try {
+                    super.execute();
+                    getLog().info(LOG_PREFIX+" "+changed.size()+" change(s) compiled in "+(System.currentTimeMillis()-start)+" ms");
+                } catch(MojoExecutionException | MojoFailureException ex) {
+                    // keep on watching : next save may fix it
+                    getLog().error(LOG_PREFIX+" compilation failed", ex);
+                }
+            }
+        } catch(IOException ex) {
+            throw new MojoExecutionException("unable to watch sources", ex);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeWorkers();
+        }
+    }
+
+    @Override
+    protected boolean keepsWorkers() {
+        // warm workers make recompilations faster
+        return true;
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Fingerprints of a gaulois-compiler execution, persisted in build directory.
+ * <p>Each output (compiled XSL, gaulois config, copied schema) is stored with a fingerprint
+ * of all its inputs. Each input is stored with its size, its last modification date, and
+ * a hash of its content. For a jar entry, size and date are the ones of the jar.</p>
+ * <p>A later execution uses it to skip outputs whose fingerprint has not changed, and to
+ * detect, without initializing Saxon, that nothing has to be done at all.</p>
+ * @author cmarchand
+ */
+public class BuildManifest {
+    /**
+     * Change it each time the manifest format, or what is fingerprinted, changes
+     */
+    public static final String FORMAT_VERSION = "1";
+    private static final String KEY_FORMAT = "format";
+    private static final String KEY_BUILD = "build";
+    private static final String KEY_COMPLETE = "complete";
+    private static final String PREFIX_INPUT = "input.";
+    private static final String PREFIX_OUTPUT = "output.";
+    private static final String PREFIX_CONFIG = "config.";
+    private static final String PREFIX_DURATION = "duration.";
+    
+    private final Properties props;
+    private final BuildManifest previous;
+    private final Map<String,String> hashes;
+    private SourceStore sourceStore;
+    
+    private BuildManifest(Properties props, BuildManifest previous) {
+        super();
+        this.props = props;
+        this.previous = previous;
+        this.hashes = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Creates an empty manifest for current execution
+     * @param buildKey The fingerprint of the global configuration (Saxon version, options, ...)
+     * @param previous The manifest of previous build, used to avoid re-hashing unchanged files
+     */
+    public BuildManifest(String buildKey, BuildManifest previous) {
+        this(new Properties(), previous);
+        props.setProperty(KEY_FORMAT, FORMAT_VERSION);
+        props.setProperty(KEY_BUILD, buildKey);
+    }
+    
+    /**
+     * Loads a manifest. If file does not exist, or can not be read, an empty manifest is returned.
+     * @param file The file to load
+     * @return The manifest
+     */
+    public static BuildManifest load(File file) {
+        Properties props = new Properties();
+        if(file!=null && file.isFile()) {
+            try(InputStream is = new FileInputStream(file)) {
+                props.load(is);
+            } catch(IOException | IllegalArgumentException ex) {
+                props.clear();
+            }
+        }
+        if(!FORMAT_VERSION.equals(props.getProperty(KEY_FORMAT))) props.clear();
+        return new BuildManifest(props, null);
+    }
+    
+    /**
+     * Returns an empty manifest, where nothing is up to date.
+     * @return An empty manifest
+     */
+    public static BuildManifest empty() {
+        return new BuildManifest(new Properties(), null);
+    }
+    
+    public String getBuildKey() {
+        return props.getProperty(KEY_BUILD);
+    }
+    
+    /**
+     * Checks if the previous build, described by this manifest, is still up to date : same build key, 
+     * same config files, no input changed, and all outputs still exist.
+     * @param buildKey The build key of current execution
+     * @param configKeys The keys of gaulois config files of current execution
+     * @param log To explain why build is not up to date
+     * @return <tt>true</tt> if nothing has to be compiled
+     */
+    public boolean isUpToDate(String buildKey, Collection<String> configKeys, Log log) {
+        if(!"true".equals(props.getProperty(KEY_COMPLETE))) {
+            log.debug("[gaulois-compiler] previous build is not complete");
+            return false;
+        }
+        if(!buildKey.equals(getBuildKey())) {
+            log.debug("[gaulois-compiler] build configuration has changed");
+            return false;
+        }
+        if(!new HashSet<>(configKeys).equals(getConfigKeys())) {
+            log.debug("[gaulois-compiler] gaulois config files have changed");
+            return false;
+        }
+        for(String key: props.stringPropertyNames()) {
+            if(key.startsWith(PREFIX_INPUT)) {
+                String uri = key.substring(PREFIX_INPUT.length());
+                if(!isInputUnchanged(uri, props.getProperty(key))) {
+                    log.debug("[gaulois-compiler] "+uri+" has changed");
+                    return false;
+                }
+            } else if(key.startsWith(PREFIX_OUTPUT)) {
+                File output = new File(key.substring(PREFIX_OUTPUT.length()));
+                if(!output.isFile()) {
+                    log.debug("[gaulois-compiler] "+output.getAbsolutePath()+" does not exist");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks if an output is up to date, regarding this manifest
+     * @param output The output file
+     * @param fingerprint The fingerprint of the output inputs, may be <tt>null</tt> if unknown
+     * @return <tt>true</tt> if output exists and has been produced from the same inputs
+     */
+    public boolean isFresh(File output, String fingerprint) {
+        return fingerprint!=null 
+                && output.isFile() 
+                && fingerprint.equals(props.getProperty(PREFIX_OUTPUT+output.getAbsolutePath()));
+    }
+    
+    /**
+     * Records an output, with the fingerprint of its inputs
+     * @param output The output
+     * @param fingerprint The fingerprint. If <tt>null</tt>, output is not recorded
+     */
+    public void putOutput(File output, String fingerprint) {
+        if(fingerprint!=null) {
+            props.setProperty(PREFIX_OUTPUT+output.getAbsolutePath(), fingerprint);
+        }
+    }
+    
+    /**
+     * Records a gaulois config file
+     * @param configKey The config key : its URI, or the URI declared in fileset
+     */
+    public void putConfig(String configKey) {
+        props.setProperty(PREFIX_CONFIG+configKey, "");
+    }
+    
+    /**
+     * Records the time a XSL took to compile, so that next build schedules it
+     * @param systemId The XSL systemId
+     * @param nanos The compilation time, in nanoseconds
+     */
+    public void putDuration(String systemId, long nanos) {
+        props.setProperty(PREFIX_DURATION+systemId, Long.toString(nanos));
+    }
+    
+    /**
+     * Returns the time a XSL took to compile, in this build or in previous one
+     * @param systemId The XSL systemId
+     * @return The compilation time, in nanoseconds, or <tt>-1</tt> if unknown
+     */
+    public long getDuration(String systemId) {
+        String duration = props.getProperty(PREFIX_DURATION+systemId);
+        if(duration==null) return previous==null ? -1L : previous.getDuration(systemId);
+        try {
+            return Long.parseLong(duration);
+        } catch(NumberFormatException ex) {
+            return -1L;
+        }
+    }
+    
+    /**
+     * Keeps the compilation time of previous build, for a XSL that has not been compiled 
+     * in this build
+     * @param systemId The XSL systemId
+     */
+    public void keepDuration(String systemId) {
+        if(props.getProperty(PREFIX_DURATION+systemId)==null) {
+            long duration = getDuration(systemId);
+            if(duration>=0) putDuration(systemId, duration);
+        }
+    }
+    
+    private Set<String> getConfigKeys() {
+        Set<String> ret = new HashSet<>();
+        for(String key: props.stringPropertyNames()) {
+            if(key.startsWith(PREFIX_CONFIG)) ret.add(key.substring(PREFIX_CONFIG.length()));
+        }
+        return ret;
+    }
+    
+    /**
+     * Marks this manifest as describing a build without any error
+     * @param complete <tt>true</tt> if no error occured
+     */
+    public void setComplete(boolean complete) {
+        props.setProperty(KEY_COMPLETE, Boolean.toString(complete));
+    }
+    
+    /**
+     * Sets the store inputs are read from, so that hashed inputs are not read again 
+     * when they are parsed or compiled
+     * @param sourceStore The store. May be <tt>null</tt>
+     */
+    public void setSourceStore(SourceStore sourceStore) {
+        this.sourceStore = sourceStore;
+    }
+    
+    /**
+     * Returns the content hash of an input, and records it as an input of this build.
+     * If file (or jar) size and last modification date have not changed since previous build, 
+     * the input is not read again.
+     * @param uri The input URI
+     * @return The content hash
+     * @throws IOException If input can not be read
+     */
+    public String hashInput(String uri) throws IOException {
+        String hash = hashes.get(uri);
+        if(hash!=null) return hash;
+        File file = getStampFile(uri);
+        String description;
+        if(file!=null) {
+            String stamp = file.length()+";"+file.lastModified()+";";
+            String previousDescription = previous==null ? null : previous.props.getProperty(PREFIX_INPUT+uri);
+            if(previousDescription!=null && previousDescription.startsWith(stamp)) {
+                hash = previousDescription.substring(stamp.length());
+            } else {
+                hash = sourceStore==null ? hashContent(uri) : Fingerprint.of(sourceStore.openStream(uri));
+            }
+            description = stamp.concat(hash);
+        } else {
+            try {
+                hash = Fingerprint.of(sourceStore==null ? new URI(uri).toURL().openStream() : sourceStore.openStream(uri));
+            } catch(URISyntaxException | IllegalArgumentException ex) {
+                throw new IOException(ex);
+            }
+            description = ";;".concat(hash);
+        }
+        props.setProperty(PREFIX_INPUT+uri, description);
+        hashes.put(uri, hash);
+        return hash;
+    }
+    
+    private static boolean isInputUnchanged(String uri, String description) {
+        String[] parts = description.split(";", 3);
+        if(parts.length!=3) return false;
+        File file = getStampFile(uri);
+        try {
+            if(file!=null) {
+                if(!file.isFile()) return false;
+                if(parts[0].equals(Long.toString(file.length())) && parts[1].equals(Long.toString(file.lastModified()))) {
+                    return true;
+                }
+                return parts[2].equals(hashContent(uri));
+            } else {
+                return parts[2].equals(Fingerprint.of(new URI(uri).toURL().openStream()));
+            }
+        } catch(IOException | URISyntaxException | IllegalArgumentException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Returns the file whose size and last modification date stand for an input : the 
+     * input file itself, or the jar a <tt>jar:</tt> input is an entry of
+     * @param uri The input URI
+     * @return The file, or <tt>null</tt> if input is not local
+     */
+    private static File getStampFile(String uri) {
+        File file = UriUtils.toFile(uri);
+        return file!=null ? file : UriUtils.toJarFile(uri);
+    }
+    
+    /**
+     * Hashes a local input. Jar entries are read thru {@link ZipFile}, and not a cached 
+     * {@link java.net.JarURLConnection} that would keep the jar open.
+     * @param uri The input URI, a <tt>file:</tt> or a <tt>jar:file:</tt> one
+     * @return The content hash
+     * @throws IOException If input can not be read
+     */
+    private static String hashContent(String uri) throws IOException {
+        File file = UriUtils.toFile(uri);
+        if(file!=null) return Fingerprint.of(new FileInputStream(file));
+        try (ZipFile zip = new ZipFile(UriUtils.toJarFile(uri))) {
+            ZipEntry entry = zip.getEntry(UriUtils.toJarEntry(uri));
+            if(entry==null) throw new FileNotFoundException(uri);
+            return Fingerprint.of(zip.getInputStream(entry));
+        }
+    }
+    
+    /**
+     * Saves this manifest
+     * @param file The file to write to
+     * @throws IOException If file can not be written
+     */
+    public void save(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        try(OutputStream os = new FileOutputStream(file)) {
+            props.store(os, "gaulois-compiler fingerprints - do not edit");
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import net.sf.saxon.Configuration;
+import net.sf.saxon.event.ProxyReceiver;
+import net.sf.saxon.event.Receiver;
+import net.sf.saxon.s9api.Destination;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.trans.XPathException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Durations of build phases, and of each compiled file. Thread-safe.
+ * 
+ * <p>Phases that run concurrently, or inside another phase (schema scan, post-compile), 
+ * are cumulated over all threads ; other phases are wall-clock durations.</p>
+ * 
+ * @author cmarchand
+ */
+public class BuildReport {
+    public static final String SAXON_INIT = "saxon-init";
+    public static final String FILESET_WALK = "fileset-walk";
+    public static final String CONFIG_SCAN = "config-scan";
+    public static final String SCHEMA_SCAN = "schema-scan";
+    public static final String SCHEMA_COPY = "schema-copy";
+    public static final String XSL_COMPILE = "xsl-compile";
+    public static final String CONFIG_COMPILE = "config-compile";
+    public static final String POST_COMPILE = "post-compile";
+    private static final List<String> PHASES = Arrays.asList(
+            SAXON_INIT, FILESET_WALK, CONFIG_SCAN, SCHEMA_SCAN, SCHEMA_COPY, XSL_COMPILE, CONFIG_COMPILE, POST_COMPILE);
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    
+    private final long startTime;
+    private final ConcurrentMap<String,AtomicLong> phases;
+    private final ConcurrentLinkedQueue<FileEntry> files;
+    
+    public BuildReport() {
+        super();
+        this.startTime = System.currentTimeMillis();
+        this.phases = new ConcurrentHashMap<>();
+        this.files = new ConcurrentLinkedQueue<>();
+    }
+    
+    /**
+     * Adds a duration to a phase
+     * @param phase The phase, one of the constants of this class
+     * @param nanos The duration, in nanoseconds
+     */
+    public void addPhase(String phase, long nanos) {
+        AtomicLong duration = phases.get(phase);
+        if(duration==null) {
+            AtomicLong previous = phases.putIfAbsent(phase, duration = new AtomicLong());
+            if(previous!=null) duration = previous;
+        }
+        duration.addAndGet(nanos);
+    }
+    
+    /**
+     * @param phase The phase
+     * @return The phase duration, in nanoseconds
+     */
+    public long getPhaseNanos(String phase) {
+        AtomicLong duration = phases.get(phase);
+        return duration==null ? 0L : duration.get();
+    }
+    
+    /**
+     * Records the compilation of a file
+     * @param phase The phase the file has been processed in
+     * @param systemId The file systemId
+     * @param nanos The duration, in nanoseconds
+     * @param inputBytes The source size, or <tt>-1</tt> if unknown
+     * @param outputBytes The produced file size, or <tt>-1</tt> if unknown
+     */
+    public void addFile(String phase, String systemId, long nanos, long inputBytes, long outputBytes) {
+        files.add(new FileEntry(phase, systemId, nanos, inputBytes, outputBytes));
+    }
+    
+    /**
+     * @param phase The phase
+     * @param count The max number of files to return
+     * @return The <tt>count</tt> slowest files of <tt>phase</tt>, slowest first
+     */
+    public List<FileEntry> getSlowest(String phase, int count) {
+        List<FileEntry> ret = new ArrayList<>();
+        for(FileEntry entry: files) {
+            if(entry.getPhase().equals(phase)) ret.add(entry);
+        }
+        Collections.sort(ret, new Comparator<FileEntry>() {
+            @Override
+            public int compare(FileEntry o1, FileEntry o2) {
+                return Long.compare(o2.getNanos(), o1.getNanos());
+            }
+        });
+        return ret.size()>count ? new ArrayList<>(ret.subList(0, count)) : ret;
+    }
+    
+    /**
+     * Logs phases durations, and the slowest stylesheets and configs
+     * @param log The log to write to
+     * @param slowest The number of slowest files to list ; <tt>0</tt> to only log phases
+     */
+    public void logSummary(Log log, int slowest) {
+        StringBuilder sb = new StringBuilder(LOG_PREFIX).append(" total ").append(System.currentTimeMillis()-startTime).append("ms :");
+        for(String phase: PHASES) {
+            if(phases.containsKey(phase)) {
+                sb.append(' ').append(phase).append(' ').append(toMillis(getPhaseNanos(phase))).append("ms");
+            }
+        }
+        log.info(sb.toString());
+        if(slowest>0) {
+            logSlowest(log, "slowest stylesheets", XSL_COMPILE, slowest);
+            logSlowest(log, "slowest configs", CONFIG_COMPILE, slowest);
+        }
+    }
+    
+    private void logSlowest(Log log, String title, String phase, int slowest) {
+        List<FileEntry> entries = getSlowest(phase, slowest);
+        if(entries.isEmpty()) return;
+        log.info(LOG_PREFIX+" "+title+":");
+        for(FileEntry entry: entries) {
+            log.info(String.format(Locale.ROOT, "%s %8dms %s", LOG_PREFIX, toMillis(entry.getNanos()), entry.getSystemId()));
+        }
+    }
+    
+    /**
+     * Writes this report as JSON
+     * @param file The file to write to. Parent directories are created.
+     * @throws IOException If file can not be written
+     */
+    public void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(parent!=null) parent.mkdirs();
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        List<FileEntry> entries = new ArrayList<>(files);
+        Collections.sort(entries, new Comparator<FileEntry>() {
+            @Override
+            public int compare(FileEntry o1, FileEntry o2) {
+                int ret = o1.getPhase().compareTo(o2.getPhase());
+                return ret!=0 ? ret : o1.getSystemId().compareTo(o2.getSystemId());
+            }
+        });
+        try (Writer w = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            w.write("{\n  \"start\": ");
+            w.write(quote(iso.format(new Date(startTime))));
+            w.write(",\n  \"totalMs\": ");
+            w.write(Long.toString(System.currentTimeMillis()-startTime));
+            w.write(",\n  \"phases\": {");
+            boolean first = true;
+            for(String phase: PHASES) {
+                if(!phases.containsKey(phase)) continue;
+                w.write(first ? "\n    " : ",\n    ");
+                w.write(quote(phase));
+                w.write(": ");
+                w.write(Long.toString(toMillis(getPhaseNanos(phase))));
+                first = false;
+            }
+            w.write("\n  },\n  \"files\": [");
+            first = true;
+            for(FileEntry entry: entries) {
+                w.write(first ? "\n    " : ",\n    ");
+                w.write("{\"phase\": ");
+                w.write(quote(entry.getPhase()));
+                w.write(", \"systemId\": ");
+                w.write(quote(entry.getSystemId()));
+                w.write(", \"durationMs\": ");
+                w.write(Long.toString(toMillis(entry.getNanos())));
+                w.write(", \"inputBytes\": ");
+                w.write(Long.toString(entry.getInputBytes()));
+                w.write(", \"outputBytes\": ");
+                w.write(Long.toString(entry.getOutputBytes()));
+                w.write("}");
+                first = false;
+            }
+            w.write("\n  ]\n}\n");
+        }
+    }
+    
+    /**
+     * Returns a receiver that adds the time spent in its <tt>close()</tt> to a phase. 
+     * When receiver feeds a {@link net.sf.saxon.s9api.XsltTransformer}, this is the 
+     * time spent in transformation.
+     * @param phase The phase to add time to
+     * @param receiver The receiver to time
+     * @return The timed receiver
+     */
+    public Receiver timed(final String phase, Receiver receiver) {
+        return new ProxyReceiver(receiver) {
+            @Override
+            public void close() throws XPathException {
+                long start = System.nanoTime();
+                super.close();
+                addPhase(phase, System.nanoTime()-start);
+            }
+        };
+    }
+    
+    /**
+     * Same as {@link #timed(java.lang.String, net.sf.saxon.event.Receiver) }, for a destination
+     * @param phase The phase to add time to
+     * @param destination The destination to time
+     * @return The timed destination
+     */
+    public Destination timed(final String phase, final Destination destination) {
+        return new Destination() {
+            @Override
+            public Receiver getReceiver(Configuration config) throws SaxonApiException {
+                return timed(phase, destination.getReceiver(config));
+            }
+            @Override
+            public void close() throws SaxonApiException {
+                destination.close();
+            }
+        };
+    }
+    
+    /**
+     * @param uri The URI
+     * @return The size of the file denoted by <tt>uri</tt>, or <tt>-1</tt> if it is not a file
+     */
+    public static long sizeOf(String uri) {
+        File file = UriUtils.toFile(uri);
+        return file!=null && file.isFile() ? file.length() : -1L;
+    }
+    
+    /**
+     * @param file The file
+     * @return The size of the file, or <tt>-1</tt> if it does not exist
+     */
+    public static long sizeOf(File file) {
+        return file!=null && file.isFile() ? file.length() : -1L;
+    }
+    
+    private static long toMillis(long nanos) {
+        return nanos/1000000L;
+    }
+    
+    /**
+     * Quotes a string as a JSON string
+     * @param s The string
+     * @return The quoted string
+     */
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length()+2).append('"');
+        for(char c: s.toCharArray()) {
+            switch(c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if(c<0x20) sb.append(String.format("\\u%04x", (int)c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+    
+    /**
+     * A processed file
+     */
+    public static class FileEntry {
+        private final String phase;
+        private final String systemId;
+        private final long nanos;
+        private final long inputBytes;
+        private final long outputBytes;
+        
+        FileEntry(String phase, String systemId, long nanos, long inputBytes, long outputBytes) {
+            super();
+            this.phase = phase;
+            this.systemId = systemId;
+            this.nanos = nanos;
+            this.inputBytes = inputBytes;
+            this.outputBytes = outputBytes;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public String getSystemId() {
+            return systemId;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getInputBytes() {
+            return inputBytes;
+        }
+
+        public long getOutputBytes() {
+            return outputBytes;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * An index of all resources available in classpath : classpath directories and jar 
+ * entries. Index is built once, on first lookup, and then shared by all 
+ * {@link GauloisConfigScanner}s of an execution.
+ * 
+ * <p>As with a class loader, when a resource is available in many classpath entries, 
+ * the first one wins.</p>
+ * 
+ * <p>Jar entries are listed once per jar version, and shared by all executions of a 
+ * Maven session, so that modules built in parallel do not read the same dependency jars 
+ * again. Listings are dropped when a new session starts, as a long-lived JVM (Maven 
+ * daemon, IDE) would else keep all jars it has ever seen.</p>
+ * 
+ * @author cmarchand
+ */
+public class ClasspathIndex {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    private static final AtomicReference<SessionJarEntries> JAR_ENTRIES = new AtomicReference<>();
+    private final List<String> classpathes;
+    private final ConcurrentMap<String,JarEntries> jarEntries;
+    private final Log log;
+    private volatile Map<String,String> index;
+    
+    /**
+     * Builds an index that does not share jar listings with other executions
+     * @param classpathes The classpath entries URIs, in classpath order
+     * @param log The log
+     */
+    public ClasspathIndex(List<String> classpathes, Log log) {
+        this(classpathes, new ConcurrentHashMap<String,JarEntries>(), log);
+    }
+    
+    /**
+     * Builds an index that shares jar listings with all executions of a Maven session
+     * @param classpathes The classpath entries URIs, in classpath order
+     * @param sessionId An object that identifies the Maven session, as its start time
+     * @param log The log
+     */
+    public ClasspathIndex(List<String> classpathes, Object sessionId, Log log) {
+        this(classpathes, getSessionJarEntries(sessionId), log);
+    }
+    
+    private ClasspathIndex(List<String> classpathes, ConcurrentMap<String,JarEntries> jarEntries, Log log) {
+        super();
+        this.classpathes = classpathes;
+        this.jarEntries = jarEntries;
+        this.log = log;
+    }
+    
+    /**
+     * Returns the jar listings of a Maven session
+     * @param sessionId An object that identifies the Maven session
+     * @return The jar listings, by jar path
+     */
+    static ConcurrentMap<String,JarEntries> getSessionJarEntries(Object sessionId) {
+        while(true) {
+            SessionJarEntries current = JAR_ENTRIES.get();
+            if(current!=null && current.sessionId!=null && current.sessionId.equals(sessionId)) return current.entries;
+            SessionJarEntries created = new SessionJarEntries(sessionId);
+            // executions of a previous session keep the listings they already got
+            if(JAR_ENTRIES.compareAndSet(current, created)) return created.entries;
+        }
+    }
+    
+    /**
+     * Looks for a resource in classpath
+     * @param path The resource path, from classpath root, i.e. <tt>/top/marchand/file.xsl</tt>
+     * @return The resource systemId, or <tt>null</tt> if not found
+     */
+    public String lookup(String path) {
+        String key = path.startsWith("/") ? path : "/".concat(path);
+        return getIndex().get(key);
+    }
+    
+    /**
+     * @return The number of indexed resources
+     */
+    public int size() {
+        return getIndex().size();
+    }
+    
+    private Map<String,String> getIndex() {
+        Map<String,String> ret = index;
+        if(ret==null) {
+            synchronized(this) {
+                ret = index;
+                if(ret==null) {
+                    ret = buildIndex();
+                    index = ret;
+                }
+            }
+        }
+        return ret;
+    }
+    
+    private Map<String,String> buildIndex() {
+        long start = System.currentTimeMillis();
+        Map<String,String> ret = new HashMap<>();
+        for(String cp: classpathes) {
+            File file = UriUtils.toFile(cp);
+            if(file==null) {
+                log.debug(LOG_PREFIX+" "+cp+" is not a file, ignored");
+            } else if(file.isDirectory()) {
+                indexDirectory(file.toPath(), ret);
+            } else if(file.isFile()) {
+                indexJar(file, cp, ret);
+            }
+        }
+        log.debug(LOG_PREFIX+" classpath indexed in "+(System.currentTimeMillis()-start)+"ms, "+ret.size()+" resources");
+        return ret;
+    }
+    
+    private void indexJar(File jar, String cp, Map<String,String> ret) {
+        try {
+            for(String key: getJarEntries(jar)) {
+                if(!ret.containsKey(key)) {
+                    ret.put(key, "jar:"+cp+"!"+key);
+                }
+            }
+        } catch(IOException ex) {
+            log.warn(LOG_PREFIX+" unable to index "+jar.getAbsolutePath()+": "+ex.getMessage());
+        }
+    }
+    
+    /**
+     * Returns the entries of a jar, from the session cache if jar has not changed
+     * @param jar The jar
+     * @return The paths of jar files, starting with <tt>/</tt>
+     * @throws IOException If jar can not be read
+     */
+    private String[] getJarEntries(File jar) throws IOException {
+        String path = jar.getAbsolutePath();
+        long lastModified = jar.lastModified();
+        long length = jar.length();
+        JarEntries cached = jarEntries.get(path);
+        if(cached!=null && cached.lastModified==lastModified && cached.length==length) {
+            return cached.names;
+        }
+        List<String> names = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while(entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if(!entry.isDirectory()) {
+                    String name = entry.getName();
+                    names.add(name.startsWith("/") ? name : "/".concat(name));
+                }
+            }
+        }
+        // a concurrent execution may list the same jar ; both results are the same
+        JarEntries listed = new JarEntries(lastModified, length, names.toArray(new String[names.size()]));
+        jarEntries.put(path, listed);
+        return listed.names;
+    }
+    
+    private void indexDirectory(final Path root, final Map<String,String> ret) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if(attrs.isRegularFile()) {
+                        String key = "/"+root.relativize(file).toString().replace(File.separatorChar, '/');
+                        if(!ret.containsKey(key)) {
+                            ret.put(key, file.toFile().toURI().toString());
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch(IOException ex) {
+            log.warn(LOG_PREFIX+" unable to index "+root+": "+ex.getMessage());
+        }
+    }
+    
+    private static class SessionJarEntries {
+        private final Object sessionId;
+        private final ConcurrentMap<String,JarEntries> entries;
+        
+        private SessionJarEntries(Object sessionId) {
+            super();
+            this.sessionId = sessionId;
+            this.entries = new ConcurrentHashMap<>();
+        }
+    }
+    
+    static class JarEntries {
+        private final long lastModified;
+        private final long length;
+        private final String[] names;
+        
+        private JarEntries(long lastModified, long length, String[] names) {
+            super();
+            this.lastModified = lastModified;
+            this.length = length;
+            this.names = names;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schedules compilations : XSL are compiled longest first, from the compilation times 
+ * of previous build, and a gaulois config becomes ready to compile as soon as all its 
+ * XSL have been compiled, so that config compilation overlaps XSL compilation.
+ * @author cmarchand
+ */
+public class CompileScheduler implements XslCompilerPool.CompileListener {
+    private final Map<String,List<GauloisSet>> dependents;
+    private final Map<GauloisSet,Integer> pending;
+    private final List<GauloisSet> ready;
+    private boolean released;
+    
+    /**
+     * @param sets The gaulois configs to compile
+     * @param xsls The XSL that will be compiled. XSL of <tt>sets</tt> that are not 
+     * in this list are considered as already compiled.
+     */
+    public CompileScheduler(Collection<GauloisSet> sets, Collection<GauloisXsl> xsls) {
+        super();
+        dependents = new HashMap<>();
+        for(GauloisXsl gx: xsls) {
+            dependents.put(gx.getXslSystemId(), new ArrayList<GauloisSet>());
+        }
+        pending = new HashMap<>();
+        ready = new ArrayList<>();
+        for(GauloisSet gs: sets) {
+            int count = 0;
+            for(GauloisXsl gx: gs.getXsls()) {
+                List<GauloisSet> list = dependents.get(gx.getXslSystemId());
+                if(list!=null) {
+                    list.add(gs);
+                    count++;
+                }
+            }
+            if(count==0) ready.add(gs); else pending.put(gs, count);
+        }
+    }
+    
+    /**
+     * Orders XSL longest first. XSL whose compilation time is unknown come first, 
+     * largest first, as they may be the longest.
+     * @param xsls The XSL to compile
+     * @param manifest The manifest compilation times are read from
+     * @return The XSL, in compilation order
+     */
+    public static List<GauloisXsl> longestFirst(Collection<GauloisXsl> xsls, BuildManifest manifest) {
+        final Map<GauloisXsl,Long> costs = new HashMap<>();
+        for(GauloisXsl gx: xsls) {
+            long duration = manifest.getDuration(gx.getXslSystemId());
+            // unknown durations are negative sizes, so that they sort before known ones
+            costs.put(gx, duration>=0 ? duration : Long.MIN_VALUE+Math.max(0L, BuildReport.sizeOf(gx.getXslSystemId())));
+        }
+        List<GauloisXsl> ret = new ArrayList<>(xsls);
+        Collections.sort(ret, new Comparator<GauloisXsl>() {
+            @Override
+            public int compare(GauloisXsl o1, GauloisXsl o2) {
+                long c1 = costs.get(o1);
+                long c2 = costs.get(o2);
+                boolean unknown1 = c1<0;
+                boolean unknown2 = c2<0;
+                if(unknown1!=unknown2) return unknown1 ? -1 : 1;
+                if(c1!=c2) return c1>c2 ? -1 : 1;
+                return o1.getXslSystemId().compareTo(o2.getXslSystemId());
+            }
+        });
+        return ret;
+    }
+
+    @Override
+    public void compiled(XslCompilerPool.CompileResult result) {
+        compiled(result.getXsl());
+    }
+    
+    /**
+     * Marks a XSL as compiled. Configs whose XSL are all compiled become ready.
+     * @param xsl The compiled XSL
+     */
+    public synchronized void compiled(GauloisXsl xsl) {
+        List<GauloisSet> sets = dependents.remove(xsl.getXslSystemId());
+        if(sets==null) return;
+        for(GauloisSet gs: sets) {
+            Integer count = pending.get(gs);
+            if(count==null) continue;
+            if(count==1) {
+                pending.remove(gs);
+                ready.add(gs);
+            } else {
+                pending.put(gs, count-1);
+            }
+        }
+        notifyAll();
+    }
+    
+    /**
+     * Makes all configs ready, whether their XSL have been compiled or not. To be called 
+     * when XSL compilation is over.
+     */
+    public synchronized void releaseAll() {
+        ready.addAll(pending.keySet());
+        pending.clear();
+        dependents.clear();
+        released = true;
+        notifyAll();
+    }
+    
+    /**
+     * Waits for configs to be ready
+     * @return All configs that are ready, in config order, or an empty list when all configs have been taken
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public synchronized List<GauloisSet> takeReady() throws InterruptedException {
+        while(ready.isEmpty() && !(released || pending.isEmpty())) {
+            wait();
+        }
+        List<GauloisSet> ret = new ArrayList<>(ready);
+        ready.clear();
+        Collections.sort(ret);
+        return ret;
+    }
+}
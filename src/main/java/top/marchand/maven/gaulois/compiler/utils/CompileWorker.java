@@ -0,0 +1,252 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+
+/**
+ * The main class of a forked compile worker. A worker compiles XSL to SEF, one at a time, 
+ * on requests read from its standard input, and streams diagnostics and results to its 
+ * standard output.
+ * <p>Each line is a tab-separated record, whose first field is the record type :</p>
+ * <ul>
+ * <li><tt>P name value</tt> : a Saxon configuration property,</li>
+ * <li><tt>O name value</tt> : a compiler option,</li>
+ * <li><tt>R base href target</tt> : the URI <tt>href</tt> resolves to from <tt>base</tt>,</li>
+ * <li><tt>C systemId targetPath</tt> : compiles a XSL ; worker answers with <tt>W message</tt>
+ * and <tt>E message</tt> records, then <tt>D success nanos exceptionMessage</tt>,</li>
+ * <li><tt>Q</tt> : stops the worker.</li>
+ * </ul>
+ * <p>References are resolved as the Maven execution resolved them, so a worker needs neither 
+ * catalog nor project classpath. This class only depends on the JDK and Saxon.</p>
+ * @author cmarchand
+ */
+public class CompileWorker implements URIResolver {
+    static final String CONFIG = "P";
+    static final String OPTION = "O";
+    static final String RESOLVE = "R";
+    static final String COMPILE = "C";
+    static final String WARNING = "W";
+    static final String ERROR = "E";
+    static final String DONE = "D";
+    static final String QUIT = "Q";
+    static final String OPTION_LICENSED = "licensed";
+    static final String OPTION_SCHEMA_AWARE = "schemaAware";
+    static final String OPTION_ASSERTIONS = "assertions";
+    static final String OPTION_TRACING = "tracing";
+    static final String OPTION_BYTE_CODE = "byteCode";
+    static final String OPTION_RELOCATABLE = "relocatable";
+    static final String OPTION_JIT = "jit";
+    static final String OPTION_TARGET_EDITION = "targetEdition";
+    static final String OPTION_COLLATION = "collation";
+    
+    private final Writer out;
+    private final Map<String,String> configProperties = new LinkedHashMap<>();
+    private final Map<String,String> options = new HashMap<>();
+    private final Map<String,String> resolutions = new HashMap<>();
+    private XsltCompiler compiler;
+    
+    CompileWorker(Writer out) {
+        super();
+        this.out = out;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        OutputStream protocol = new FileOutputStream(FileDescriptor.out);
+        // Saxon and xsl:message must not write to the protocol stream
+        System.setOut(System.err);
+        Writer out = new BufferedWriter(new OutputStreamWriter(protocol, StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        new CompileWorker(out).run(in);
+    }
+    
+    /**
+     * Runs requests until <tt>Q</tt> or end of input, i.e. when the Maven JVM has exited
+     * @param in The requests
+     * @throws IOException If a response can not be written
+     */
+    void run(BufferedReader in) throws IOException {
+        String line;
+        while((line=in.readLine())!=null) {
+            String[] fields = decode(line);
+            switch(fields[0]) {
+                case CONFIG:
+                    configProperties.put(fields[1], fields[2]); break;
+                case OPTION:
+                    options.put(fields[1], fields[2]); break;
+                case RESOLVE:
+                    resolutions.put(fields[1]+"\n"+fields[2], fields[3]); break;
+                case COMPILE:
+                    compile(fields[1], new File(fields[2])); break;
+                case QUIT:
+                    return;
+            }
+        }
+    }
+    
+    private void compile(String systemId, File targetFile) throws IOException {
+        long start = System.nanoTime();
+        String exception = "";
+        try {
+            XsltCompiler xslCompiler = getCompiler();
+            xslCompiler.setErrorListener(new ErrorListener() {
+                @Override
+                public void warning(TransformerException ex) throws TransformerException {
+                    send(WARNING, ex.getMessageAndLocation());
+                }
+                @Override
+                public void error(TransformerException ex) throws TransformerException {
+                    send(ERROR, ex.getMessageAndLocation());
+                }
+                @Override
+                public void fatalError(TransformerException ex) throws TransformerException {
+                    send(ERROR, ex.getMessageAndLocation());
+                }
+            });
+            XsltExecutable exec = xslCompiler.compile(new StreamSource(systemId));
+            targetFile.getParentFile().mkdirs();
+            try(OutputStream os = new FileOutputStream(targetFile)) {
+                exec.export(os);
+            }
+        } catch(SaxonApiException | IOException | RuntimeException ex) {
+            exception = String.valueOf(ex.getMessage());
+        }
+        out.write(encode(DONE, Boolean.toString(exception.isEmpty()), Long.toString(System.nanoTime()-start), exception));
+        out.flush();
+    }
+    
+    private void send(String type, String message) throws TransformerException {
+        try {
+            out.write(encode(type, message));
+            out.flush();
+        } catch(IOException ex) {
+            throw new TransformerException(ex);
+        }
+    }
+    
+    private XsltCompiler getCompiler() {
+        if(compiler==null) {
+            Processor processor = new Processor(Boolean.parseBoolean(options.get(OPTION_LICENSED)));
+            for(Map.Entry<String,String> property: configProperties.entrySet()) {
+                try {
+                    processor.getUnderlyingConfiguration().setConfigurationProperty(property.getKey(), property.getValue());
+                } catch(RuntimeException ex) {
+                    System.err.println("unable to set "+property.getKey()+": "+ex.getMessage());
+                }
+            }
+            compiler = processor.newXsltCompiler();
+            compiler.setURIResolver(this);
+            compiler.setSchemaAware(Boolean.parseBoolean(options.get(OPTION_SCHEMA_AWARE)));
+            compiler.setAssertionsEnabled(Boolean.parseBoolean(options.get(OPTION_ASSERTIONS)));
+            compiler.setCompileWithTracing(Boolean.parseBoolean(options.get(OPTION_TRACING)));
+            compiler.setGenerateByteCode(Boolean.parseBoolean(options.get(OPTION_BYTE_CODE)));
+            compiler.setRelocatable(Boolean.parseBoolean(options.get(OPTION_RELOCATABLE)));
+            compiler.setJustInTimeCompilation(Boolean.parseBoolean(options.get(OPTION_JIT)));
+            if(options.containsKey(OPTION_TARGET_EDITION)) compiler.setTargetEdition(options.get(OPTION_TARGET_EDITION));
+            if(options.containsKey(OPTION_COLLATION)) compiler.declareDefaultCollation(options.get(OPTION_COLLATION));
+        }
+        return compiler;
+    }
+
+    @Override
+    public Source resolve(String href, String base) {
+        String target = resolutions.get(base+"\n"+href);
+        return target==null ? null : new StreamSource(target);
+    }
+    
+    /**
+     * Encodes a record as a line. Tabs, line breaks and backslashes are escaped.
+     * @param fields The record fields
+     * @return The line, with its line separator
+     */
+    static String encode(String... fields) {
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<fields.length; i++) {
+            if(i>0) sb.append('\t');
+            String field = fields[i]==null ? "" : fields[i];
+            for(int c=0; c<field.length(); c++) {
+                char ch = field.charAt(c);
+                switch(ch) {
+                    case '\\': sb.append("\\\\"); break;
+                    case '\t': sb.append("\\t"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    default: sb.append(ch);
+                }
+            }
+        }
+        return sb.append('\n').toString();
+    }
+    
+    /**
+     * Decodes a line written by {@link #encode(java.lang.String...) }
+     * @param line The line, without its line separator
+     * @return The record fields
+     */
+    static String[] decode(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for(int c=0; c<line.length(); c++) {
+            char ch = line.charAt(c);
+            if(ch=='\t') {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            } else if(ch=='\\' && c+1<line.length()) {
+                char next = line.charAt(++c);
+                sb.append(next=='t' ? '\t' : next=='n' ? '\n' : next=='r' ? '\r' : next);
+            } else {
+                sb.append(ch);
+            }
+        }
+        fields.add(sb.toString());
+        return fields.toArray(new String[fields.size()]);
+    }
+}
@@ -0,0 +1,391 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import net.sf.saxon.lib.FeatureKeys;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltCompiler;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Compiles XSL to SEF in a pool of forked JVMs, so that Saxon memory is not taken from the 
+ * Maven heap. Workers are started on first compilation, and reused until the pool is closed.
+ * <p>Workers are configured as the model compiler and its configuration. Each worker is 
+ * given, for the modules of the XSL it compiles, the URIs <tt>xsl:include</tt> and 
+ * <tt>xsl:import</tt> have been resolved to by the {@link DependencyScanner}. Worker 
+ * standard error is logged at debug level. See {@link CompileWorker} for the protocol.</p>
+ * @author cmarchand
+ */
+public class CompileWorkerPool implements Closeable {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    // configuration properties that change the compiled code
+    private static final String[] CONFIG_PROPERTIES = {
+        FeatureKeys.OPTIMIZATION_LEVEL, FeatureKeys.ALLOW_SYNTAX_EXTENSIONS, FeatureKeys.XSLT_ENABLE_ASSERTIONS,
+        FeatureKeys.DISABLE_XSL_EVALUATE, FeatureKeys.STRICT_STREAMABILITY, FeatureKeys.ALLOW_MULTITHREADING,
+        FeatureKeys.MULTIPLE_SCHEMA_IMPORTS, FeatureKeys.XML_VERSION, FeatureKeys.XSD_VERSION, 
+        FeatureKeys.LICENSE_FILE_LOCATION
+    };
+    
+    private final List<String> command;
+    private final List<String> settings;
+    private final int size;
+    private final Log log;
+    private final BlockingQueue<Worker> idle;
+    private final List<Worker> started;
+    
+    /**
+     * @param model The compiler whose configuration workers copy
+     * @param size The number of workers. If lower than 1, the number of available processors is used
+     * @param jvmArgs The workers JVM arguments, separated by spaces, i.e. <tt>-Xmx2g</tt>. May be <tt>null</tt>
+     * @param log The log
+     */
+    public CompileWorkerPool(XsltCompiler model, int size, String jvmArgs, Log log) {
+        super();
+        this.size = size<1 ? Runtime.getRuntime().availableProcessors() : size;
+        this.log = log;
+        this.idle = new LinkedBlockingQueue<>();
+        this.started = Collections.synchronizedList(new ArrayList<Worker>());
+        this.command = new ArrayList<>();
+        command.add(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+        if(jvmArgs!=null && !jvmArgs.trim().isEmpty()) {
+            command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        }
+        command.add("-cp");
+        command.add(getClasspath());
+        command.add(CompileWorker.class.getName());
+        this.settings = getSettings(model);
+    }
+    
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Tells that a module has changed : its references are sent again to workers 
+     * on next compilation that uses it.
+     * @param uri The module absolute URI
+     */
+    public void invalidate(String uri) {
+        synchronized(started) {
+            for(Worker worker: started) {
+                worker.knownModules.remove(uri);
+            }
+        }
+    }
+    
+    /**
+     * Tells that any module may have changed : all references are sent again to workers.
+     */
+    public void invalidateAll() {
+        synchronized(started) {
+            for(Worker worker: started) {
+                worker.knownModules.clear();
+            }
+        }
+    }
+    
+    /**
+     * Compiles all XSL to their target file.
+     * @param xsls The XSL to compile
+     * @param scanner The scanner XSL modules have been resolved with
+     * @return The compilation results, in the same order than <tt>xsls</tt>
+     * @throws InterruptedException If compilation has been interrupted
+     */
+    public List<XslCompilerPool.CompileResult> compile(List<GauloisXsl> xsls, DependencyScanner scanner) throws InterruptedException {
+        return compile(xsls, scanner, null);
+    }
+    
+    /**
+     * Compiles all XSL to their target file. XSL are started in list order.
+     * @param xsls The XSL to compile
+     * @param scanner The scanner XSL modules have been resolved with
+     * @param listener Notified as soon as each XSL is compiled. May be <tt>null</tt>
+     * @return The compilation results, in the same order than <tt>xsls</tt>
+     * @throws InterruptedException If compilation has been interrupted
+     */
+    public List<XslCompilerPool.CompileResult> compile(List<GauloisXsl> xsls, final DependencyScanner scanner, final XslCompilerPool.CompileListener listener) throws InterruptedException {
+        if(xsls.isEmpty()) return Collections.emptyList();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(size, xsls.size()), new WorkerThreadFactory("gaulois-worker"));
+        try {
+            List<Future<XslCompilerPool.CompileResult>> futures = new ArrayList<>(xsls.size());
+            for(final GauloisXsl xsl: xsls) {
+                futures.add(executor.submit(new Callable<XslCompilerPool.CompileResult>() {
+                    @Override
+                    public XslCompilerPool.CompileResult call() throws InterruptedException {
+                        XslCompilerPool.CompileResult result = compile(xsl, scanner);
+                        if(listener!=null) listener.compiled(result);
+                        return result;
+                    }
+                }));
+            }
+            List<XslCompilerPool.CompileResult> ret = new ArrayList<>(xsls.size());
+            for(Future<XslCompilerPool.CompileResult> future: futures) {
+                try {
+                    ret.add(future.get());
+                } catch(ExecutionException ex) {
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+            return ret;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private XslCompilerPool.CompileResult compile(GauloisXsl xsl, DependencyScanner scanner) throws InterruptedException {
+        XslCompilerPool.CompileResult result = new XslCompilerPool.CompileResult(xsl);
+        Worker worker = acquire();
+        try {
+            worker.compile(xsl, scanner, result);
+        } catch(IOException ex) {
+            // worker is lost, i.e. out of memory : another one is started on next request
+            result.setException(ex);
+            worker.destroy();
+            started.remove(worker);
+            worker = null;
+        } finally {
+            if(worker!=null) idle.put(worker);
+        }
+        return result;
+    }
+    
+    private Worker acquire() throws InterruptedException {
+        Worker worker = idle.poll();
+        if(worker!=null) return worker;
+        synchronized(started) {
+            Iterator<Worker> it = started.iterator();
+            while(it.hasNext()) {
+                if(!it.next().isAlive()) it.remove();
+            }
+            if(started.size()<size) {
+                try {
+                    worker = new Worker();
+                    started.add(worker);
+                    return worker;
+                } catch(IOException ex) {
+                    log.warn(LOG_PREFIX+" unable to start compile worker: "+ex.getMessage());
+                    if(started.isEmpty()) throw new IllegalStateException("no compile worker can be started", ex);
+                }
+            }
+        }
+        return idle.take();
+    }
+    
+    /**
+     * Stops all workers
+     */
+    @Override
+    public void close() {
+        synchronized(started) {
+            for(Worker worker: started) {
+                worker.quit();
+            }
+            started.clear();
+        }
+        idle.clear();
+    }
+    
+    /**
+     * Returns the settings records of a compiler
+     * @param model The compiler
+     * @return The records, ready to be sent to a worker
+     */
+    private static List<String> getSettings(XsltCompiler model) {
+        List<String> ret = new ArrayList<>();
+        Processor processor = model.getProcessor();
+        for(String name: CONFIG_PROPERTIES) {
+            try {
+                Object value = processor.getUnderlyingConfiguration().getConfigurationProperty(name);
+                if(value!=null) ret.add(CompileWorker.encode(CompileWorker.CONFIG, name, value.toString()));
+            } catch(RuntimeException ex) {
+                // not supported by this Saxon edition
+            }
+        }
+        ret.add(option(CompileWorker.OPTION_LICENSED, Boolean.toString(!"HE".equals(processor.getSaxonEdition()))));
+        ret.add(option(CompileWorker.OPTION_SCHEMA_AWARE, Boolean.toString(model.isSchemaAware())));
+        ret.add(option(CompileWorker.OPTION_ASSERTIONS, Boolean.toString(model.isAssertionsEnabled())));
+        ret.add(option(CompileWorker.OPTION_TRACING, Boolean.toString(model.isCompileWithTracing())));
+        ret.add(option(CompileWorker.OPTION_BYTE_CODE, Boolean.toString(model.isGenerateByteCode())));
+        ret.add(option(CompileWorker.OPTION_RELOCATABLE, Boolean.toString(model.isRelocatable())));
+        ret.add(option(CompileWorker.OPTION_JIT, Boolean.toString(model.isJustInTimeCompilation())));
+        if(model.getTargetEdition()!=null) ret.add(option(CompileWorker.OPTION_TARGET_EDITION, model.getTargetEdition()));
+        if(model.getDefaultCollation()!=null) ret.add(option(CompileWorker.OPTION_COLLATION, model.getDefaultCollation()));
+        return ret;
+    }
+    
+    private static String option(String name, String value) {
+        return CompileWorker.encode(CompileWorker.OPTION, name, value);
+    }
+    
+    /**
+     * Returns the classpath of workers : the plugin classpath, or at least the plugin and Saxon
+     * @return The classpath
+     */
+    static String getClasspath() {
+        Set<String> entries = new LinkedHashSet<>();
+        ClassLoader loader = CompileWorkerPool.class.getClassLoader();
+        if(loader instanceof URLClassLoader) {
+            for(URL url: ((URLClassLoader)loader).getURLs()) {
+                addEntry(entries, url);
+            }
+        }
+        for(Class<?> clazz: new Class<?>[] { CompileWorker.class, Processor.class }) {
+            CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+            if(codeSource!=null) addEntry(entries, codeSource.getLocation());
+        }
+        StringBuilder sb = new StringBuilder();
+        for(String entry: entries) {
+            if(sb.length()>0) sb.append(File.pathSeparatorChar);
+            sb.append(entry);
+        }
+        return sb.toString();
+    }
+    
+    private static void addEntry(Set<String> entries, URL url) {
+        try {
+            if(url!=null && "file".equals(url.getProtocol())) entries.add(new File(url.toURI()).getAbsolutePath());
+        } catch(URISyntaxException | IllegalArgumentException ex) {
+            // not a classpath entry
+        }
+    }
+    
+    /**
+     * A worker JVM, and the modules whose resolutions it already knows
+     */
+    private class Worker {
+        private final Process process;
+        private final Writer in;
+        private final BufferedReader out;
+        private final Set<String> knownModules = Collections.synchronizedSet(new HashSet<String>());
+        
+        private Worker() throws IOException {
+            super();
+            process = new ProcessBuilder(command).start();
+            in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            final BufferedReader err = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8));
+            Thread drain = new WorkerThreadFactory("gaulois-worker-err").newThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        String line;
+                        while((line=err.readLine())!=null) {
+                            log.debug(LOG_PREFIX+" worker: "+line);
+                        }
+                    } catch(IOException ex) {
+                        // worker has exited
+                    }
+                }
+            });
+            drain.start();
+            for(String setting: settings) {
+                in.write(setting);
+            }
+        }
+        
+        private void compile(GauloisXsl xsl, DependencyScanner scanner, XslCompilerPool.CompileResult result) throws IOException {
+            if(scanner!=null) {
+                for(String module: scanner.getClosure(xsl.getXslSystemId())) {
+                    if(!knownModules.add(module)) continue;
+                    for(DependencyScanner.Reference ref: scanner.getModule(module).getReferences()) {
+                        if(ref.getAbsUri()!=null && (DependencyScanner.XSL_INCLUDE.equals(ref.getType()) || DependencyScanner.XSL_IMPORT.equals(ref.getType()))) {
+                            in.write(CompileWorker.encode(CompileWorker.RESOLVE, module, ref.getHref(), ref.getAbsUri()));
+                        }
+                    }
+                }
+            }
+            in.write(CompileWorker.encode(CompileWorker.COMPILE, xsl.getXslSystemId(), xsl.getTargetFile().getAbsolutePath()));
+            in.flush();
+            String line;
+            while((line=out.readLine())!=null) {
+                String[] fields = CompileWorker.decode(line);
+                switch(fields[0]) {
+                    case CompileWorker.WARNING:
+                        result.getWarnings().add(fields[1]); break;
+                    case CompileWorker.ERROR:
+                        result.getErrors().add(fields[1]); break;
+                    case CompileWorker.DONE:
+                        result.setDurationNanos(Long.parseLong(fields[2]));
+                        if(!Boolean.parseBoolean(fields[1])) result.setException(new SaxonApiException(fields[3]));
+                        return;
+                }
+            }
+            throw new IOException("compile worker has exited while compiling "+xsl.getXslSystemId());
+        }
+        
+        private boolean isAlive() {
+            try {
+                process.exitValue();
+                return false;
+            } catch(IllegalThreadStateException ex) {
+                return true;
+            }
+        }
+        
+        private void quit() {
+            try {
+                in.write(CompileWorker.encode(CompileWorker.QUIT));
+                in.close();
+            } catch(IOException ex) {
+                destroy();
+            }
+        }
+        
+        private void destroy() {
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The graph of gaulois configs, the XSL they use, the modules these XSL include or import, 
+ * and the schemas they import. Each node is identified by its canonical URI ; nodes that 
+ * come from a jar have this jar as origin.
+ * <p>Graph can be written as JSON or DOT, and queried for the nodes impacted by a change.</p>
+ * @author cmarchand
+ */
+public class DependencyGraph {
+    public static final String CONFIG = "config";
+    public static final String XSL = "xsl";
+    public static final String MODULE = "module";
+    public static final String SCHEMA = "schema";
+    /**
+     * Type of edges from a gaulois config to a XSL
+     */
+    public static final String GC_XSLT = "gc:xslt";
+    
+    private final Map<String,Node> nodes;
+    private final Set<Edge> edges;
+    // reverse edges : uri -> uris that reference it
+    private final Map<String,Set<String>> referencedBy;
+    private final Map<String,String> canonicalUris;
+    
+    public DependencyGraph() {
+        super();
+        this.nodes = new TreeMap<>();
+        this.edges = new LinkedHashSet<>();
+        this.referencedBy = new HashMap<>();
+        this.canonicalUris = new HashMap<>();
+    }
+    
+    /**
+     * Builds the graph of scanned gaulois configs
+     * @param sets The gaulois configs
+     * @param scanner The scanner that knows XSL and schemas dependencies
+     * @return The graph
+     */
+    public static DependencyGraph build(Collection<GauloisSet> sets, DependencyScanner scanner) {
+        DependencyGraph graph = new DependencyGraph();
+        Deque<String> toVisit = new ArrayDeque<>();
+        Set<String> visited = new HashSet<>();
+        for(GauloisSet gs: sets) {
+            String config = graph.addNode(gs.getGauloisConfigSystemId(), CONFIG);
+            for(GauloisXsl gx: gs.getXsls()) {
+                graph.addEdge(config, graph.addNode(gx.getXslSystemId(), XSL), GC_XSLT);
+                if(visited.add(gx.getXslSystemId())) toVisit.add(gx.getXslSystemId());
+            }
+        }
+        while(!toVisit.isEmpty()) {
+            String uri = toVisit.poll();
+            String from = graph.canonical(uri);
+            for(DependencyScanner.Reference ref: scanner.getModule(uri).getReferences()) {
+                if(ref.getAbsUri()==null) continue;
+                boolean schema = ref.getType().startsWith("xs:") || DependencyScanner.XSL_IMPORT_SCHEMA.equals(ref.getType());
+                graph.addEdge(from, graph.addNode(ref.getAbsUri(), schema ? SCHEMA : MODULE), ref.getType());
+                if(visited.add(ref.getAbsUri())) toVisit.add(ref.getAbsUri());
+            }
+        }
+        return graph;
+    }
+    
+    /**
+     * Adds a node, if not already present. A XSL used by a config, and included by 
+     * another XSL, stays a {@link #XSL}.
+     * @param uri The node URI
+     * @param kind The node kind
+     * @return The node canonical URI
+     */
+    public String addNode(String uri, String kind) {
+        String canonical = canonical(uri);
+        Node node = nodes.get(canonical);
+        if(node==null) {
+            nodes.put(canonical, new Node(canonical, kind, getOrigin(canonical)));
+        } else if(MODULE.equals(node.kind) && XSL.equals(kind)) {
+            nodes.put(canonical, new Node(canonical, kind, node.origin));
+        }
+        return canonical;
+    }
+    
+    /**
+     * Adds an edge between two nodes
+     * @param from The canonical URI of referencing node
+     * @param to The canonical URI of referenced node
+     * @param type The reference type : {@link #GC_XSLT}, or one of the {@link DependencyScanner} types
+     */
+    public void addEdge(String from, String to, String type) {
+        if(edges.add(new Edge(from, to, type))) {
+            Set<String> froms = referencedBy.get(to);
+            if(froms==null) {
+                froms = new HashSet<>();
+                referencedBy.put(to, froms);
+            }
+            froms.add(from);
+        }
+    }
+    
+    private String canonical(String uri) {
+        String ret = canonicalUris.get(uri);
+        if(ret==null) {
+            ret = UriUtils.canonicalize(uri);
+            canonicalUris.put(uri, ret);
+        }
+        return ret;
+    }
+    
+    /**
+     * Returns the jar a URI comes from
+     * @param uri The URI
+     * @return The jar URI, or <tt>null</tt> if <tt>uri</tt> is not a <tt>jar:</tt> URI
+     */
+    static String getOrigin(String uri) {
+        int sep = uri.indexOf("!");
+        return uri.startsWith("jar:") && sep>0 ? uri.substring(4, sep) : null;
+    }
+    
+    /**
+     * Returns the kind of a node
+     * @param uri The node URI
+     * @return The node kind, or <tt>null</tt> if graph has no such node
+     */
+    public String getKind(String uri) {
+        Node node = nodes.get(canonical(uri));
+        return node==null ? null : node.kind;
+    }
+    
+    /**
+     * Returns all nodes that depend on, or are, one of <tt>uris</tt>
+     * @param uris The changed URIs
+     * @return The impacted canonical URIs, sorted
+     */
+    public Set<String> getImpacted(Collection<String> uris) {
+        Set<String> impacted = new TreeSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        for(String uri: uris) {
+            String canonical = canonical(uri);
+            if(nodes.containsKey(canonical) && impacted.add(canonical)) toVisit.add(canonical);
+        }
+        while(!toVisit.isEmpty()) {
+            Set<String> froms = referencedBy.get(toVisit.poll());
+            if(froms==null) continue;
+            for(String from: froms) {
+                if(impacted.add(from)) toVisit.add(from);
+            }
+        }
+        return impacted;
+    }
+    
+    /**
+     * Writes the graph as JSON : <tt>{"nodes": [...], "edges": [...]}</tt>
+     * @param file The file to write to. Parent directories are created.
+     * @throws IOException If file can not be written
+     */
+    public void writeJson(File file) throws IOException {
+        try (Writer w = newWriter(file)) {
+            w.write("{\n  \"nodes\": [");
+            boolean first = true;
+            for(Node node: nodes.values()) {
+                w.write(first ? "\n    " : ",\n    ");
+                w.write("{\"uri\": ");
+                w.write(BuildReport.quote(node.uri));
+                w.write(", \"kind\": ");
+                w.write(BuildReport.quote(node.kind));
+                if(node.origin!=null) {
+                    w.write(", \"origin\": ");
+                    w.write(BuildReport.quote(node.origin));
+                }
+                w.write("}");
+                first = false;
+            }
+            w.write("\n  ],\n  \"edges\": [");
+            first = true;
+            for(Edge edge: edges) {
+                w.write(first ? "\n    " : ",\n    ");
+                w.write("{\"from\": ");
+                w.write(BuildReport.quote(edge.from));
+                w.write(", \"to\": ");
+                w.write(BuildReport.quote(edge.to));
+                w.write(", \"type\": ");
+                w.write(BuildReport.quote(edge.type));
+                w.write("}");
+                first = false;
+            }
+            w.write("\n  ]\n}\n");
+        }
+    }
+    
+    /**
+     * Writes the graph in Graphviz DOT format. Nodes that come from a same jar are grouped 
+     * in a cluster.
+     * @param file The file to write to. Parent directories are created.
+     * @throws IOException If file can not be written
+     */
+    public void writeDot(File file) throws IOException {
+        Map<String,List<Node>> byOrigin = new TreeMap<>();
+        List<Node> local = new ArrayList<>();
+        for(Node node: nodes.values()) {
+            if(node.origin==null) {
+                local.add(node);
+            } else {
+                List<Node> list = byOrigin.get(node.origin);
+                if(list==null) {
+                    list = new ArrayList<>();
+                    byOrigin.put(node.origin, list);
+                }
+                list.add(node);
+            }
+        }
+        try (Writer w = newWriter(file)) {
+            w.write("digraph gaulois {\n  rankdir=LR;\n");
+            for(Node node: local) writeDotNode(w, node, "  ");
+            int cluster = 0;
+            for(Map.Entry<String,List<Node>> entry: byOrigin.entrySet()) {
+                w.write("  subgraph cluster_"+(cluster++)+" {\n    label="+BuildReport.quote(SchemaDependency.getFileName(entry.getKey()))+";\n");
+                for(Node node: entry.getValue()) writeDotNode(w, node, "    ");
+                w.write("  }\n");
+            }
+            for(Edge edge: edges) {
+                w.write("  "+BuildReport.quote(edge.from)+" -> "+BuildReport.quote(edge.to)+" [label="+BuildReport.quote(edge.type)+"];\n");
+            }
+            w.write("}\n");
+        }
+    }
+    
+    private static void writeDotNode(Writer w, Node node, String indent) throws IOException {
+        String shape;
+        switch(node.kind) {
+            case CONFIG: shape = "note"; break;
+            case SCHEMA: shape = "ellipse"; break;
+            case MODULE: shape = "box, style=dashed"; break;
+            default: shape = "box";
+        }
+        w.write(indent+BuildReport.quote(node.uri)+" [label="+BuildReport.quote(SchemaDependency.getFileName(node.uri))+", shape="+shape+"];\n");
+    }
+    
+    private static Writer newWriter(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(parent!=null) parent.mkdirs();
+        return new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8);
+    }
+    
+    private static class Node {
+        private final String uri;
+        private final String kind;
+        private final String origin;
+        
+        Node(String uri, String kind, String origin) {
+            super();
+            this.uri = uri;
+            this.kind = kind;
+            this.origin = origin;
+        }
+    }
+    
+    private static class Edge {
+        private final String from;
+        private final String to;
+        private final String type;
+        
+        Edge(String from, String to, String type) {
+            super();
+            this.from = from;
+            this.to = to;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Edge)) return false;
+            Edge other = (Edge)obj;
+            return from.equals(other.from) && to.equals(other.to) && type.equals(other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 31 * hash + from.hashCode();
+            hash = 31 * hash + to.hashCode();
+            hash = 31 * hash + type.hashCode();
+            return hash;
+        }
+    }
+}
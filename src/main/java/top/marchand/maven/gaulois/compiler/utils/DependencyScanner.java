@@ -0,0 +1,433 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import net.sf.saxon.s9api.Axis;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XdmNodeKind;
+import net.sf.saxon.s9api.XdmSequenceIterator;
+import org.apache.maven.plugin.logging.Log;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A streaming scanner of XSL and XSD dependencies. It follows <tt>xsl:include</tt>, 
+ * <tt>xsl:import</tt>, <tt>xsl:import-schema</tt>, and <tt>xs:include</tt>, <tt>xs:import</tt>, 
+ * <tt>xs:redefine</tt>, <tt>xs:override</tt> in schemas.
+ * <p>Documents are SAX-parsed, no tree is built, unless a {@link DocumentPool} is given : 
+ * modules are then taken from the pool, where compilation finds them. Each module is parsed only once : its 
+ * direct references are kept, so a library included by many XSL is analysed once. 
+ * References are kept as ids of a {@link UriTable}, so that a URI referenced by many 
+ * modules is stored once. 
+ * A scanner is thread-safe, and should live as long as sources do not change : one 
+ * Maven execution.</p>
+ * @author cmarchand
+ */
+public class DependencyScanner {
+    public static final String XSL_NS = "http://www.w3.org/1999/XSL/Transform";
+    public static final String XSD_NS = "http://www.w3.org/2001/XMLSchema";
+    public static final String XSL_INCLUDE = "xsl:include";
+    public static final String XSL_IMPORT = "xsl:import";
+    public static final String XSL_IMPORT_SCHEMA = "xsl:import-schema";
+    public static final String XS_INCLUDE = "xs:include";
+    public static final String XS_IMPORT = "xs:import";
+    public static final String XS_REDEFINE = "xs:redefine";
+    public static final String XS_OVERRIDE = "xs:override";
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    // reference types, as stored in modules : index in TYPES
+    private static final String[] TYPES = { XSL_INCLUDE, XSL_IMPORT, XSL_IMPORT_SCHEMA, XS_INCLUDE, XS_IMPORT, XS_REDEFINE, XS_OVERRIDE };
+    private static final QName QN_HREF = new QName("href");
+    private static final QName QN_SCHEMA_LOCATION_XSL = new QName("schema-location");
+    private static final QName QN_SCHEMA_LOCATION = new QName("schemaLocation");
+    private static final byte TYPE_XSL_INCLUDE = 0;
+    private static final byte TYPE_XSL_IMPORT = 1;
+    private static final byte TYPE_XSL_IMPORT_SCHEMA = 2;
+    private static final byte TYPE_XS_INCLUDE = 3;
+    private static final byte TYPE_XS_IMPORT = 4;
+    private static final byte TYPE_XS_REDEFINE = 5;
+    private static final byte TYPE_XS_OVERRIDE = 6;
+    
+    private final URIResolver resolver;
+    private final UriTable uriTable;
+    private final Log log;
+    private final ConcurrentMap<Integer,Module> modules;
+    private final DocumentPool documents;
+    
+    /**
+     * @param resolver The resolver to resolve references with ; if it can not resolve a 
+     * reference, it is resolved against the referencing document URI.
+     * @param log The log
+     */
+    public DependencyScanner(URIResolver resolver, Log log) {
+        this(resolver, new UriTable(), log);
+    }
+    
+    /**
+     * @param resolver The resolver to resolve references with ; if it can not resolve a 
+     * reference, it is resolved against the referencing document URI.
+     * @param uriTable The table module URIs and hrefs are interned in
+     * @param log The log
+     */
+    public DependencyScanner(URIResolver resolver, UriTable uriTable, Log log) {
+        this(resolver, uriTable, null, log);
+    }
+    
+    /**
+     * @param resolver The resolver to resolve references with ; if it can not resolve a 
+     * reference, it is resolved against the referencing document URI.
+     * @param uriTable The table module URIs and hrefs are interned in
+     * @param documents The pool modules are read from, so that compilation finds them 
+     * already parsed. May be <tt>null</tt> ; modules are then streamed.
+     * @param log The log
+     */
+    public DependencyScanner(URIResolver resolver, UriTable uriTable, DocumentPool documents, Log log) {
+        super();
+        this.resolver = resolver;
+        this.uriTable = uriTable;
+        this.documents = documents;
+        this.log = log;
+        this.modules = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Returns a module, parsing it if it has not been parsed yet
+     * @param uri The module absolute URI
+     * @return The module
+     */
+    public Module getModule(String uri) {
+        return getModule(uriTable.intern(uri));
+    }
+    
+    private Module getModule(int id) {
+        Module module = modules.get(id);
+        if(module==null) {
+            module = parse(id);
+            Module previous = modules.putIfAbsent(id, module);
+            if(previous!=null) module = previous;
+        }
+        return module;
+    }
+    
+    /**
+     * Forgets a module, so that it is parsed again next time it is requested.
+     * Modules that reference it do not need to be invalidated.
+     * @param uri The module absolute URI
+     */
+    public void invalidate(String uri) {
+        modules.remove(uriTable.intern(uri));
+    }
+    
+    /**
+     * Returns all modules reachable from <tt>uri</tt>, including <tt>uri</tt>.
+     * Modules that can not be read are part of the closure.
+     * @param uri The XSL to start from
+     * @return All modules absolute URIs, in discovery order
+     */
+    public Set<String> getClosure(String uri) {
+        Set<String> closure = new LinkedHashSet<>();
+        BitSet visited = new BitSet();
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        int id = uriTable.intern(uri);
+        visited.set(id);
+        closure.add(uri);
+        toVisit.add(id);
+        while(!toVisit.isEmpty()) {
+            for(int target: getModule(toVisit.poll()).targets) {
+                if(target!=UriTable.NONE && !visited.get(target)) {
+                    visited.set(target);
+                    closure.add(uriTable.get(target));
+                    toVisit.add(target);
+                }
+            }
+        }
+        return closure;
+    }
+    
+    /**
+     * Returns all schemas imported by a XSL, or by one of the modules it includes or imports, 
+     * in document order. Each schema comes with the tree of schemas it includes or imports.
+     * A schema imported many times is returned once.
+     * @param xslUri The XSL URI
+     * @return The imported schemas
+     */
+    public List<SchemaDependency> getImportedSchemas(String xslUri) {
+        List<SchemaDependency> ret = new ArrayList<>();
+        collectImportedSchemas(uriTable.intern(xslUri), new BitSet(), new BitSet(), ret);
+        return ret;
+    }
+    
+    private void collectImportedSchemas(int xslId, BitSet visited, BitSet schemas, List<SchemaDependency> ret) {
+        if(visited.get(xslId)) return;
+        visited.set(xslId);
+        Module module = getModule(xslId);
+        for(int i=0; i<module.types.length; i++) {
+            int target = module.targets[i];
+            switch(module.types[i]) {
+                case TYPE_XSL_INCLUDE:
+                case TYPE_XSL_IMPORT:
+                    if(target!=UriTable.NONE) collectImportedSchemas(target, visited, schemas, ret);
+                    break;
+                case TYPE_XSL_IMPORT_SCHEMA:
+                    if(target==UriTable.NONE || !schemas.get(target)) {
+                        if(target!=UriTable.NONE) schemas.set(target);
+                        ret.add(buildSchemaDependency(module.getReference(i), new HashSet<String>()));
+                    }
+                    break;
+            }
+        }
+    }
+    
+    private SchemaDependency buildSchemaDependency(Reference ref, Set<String> ancestors) {
+        String absUri = ref.getAbsUri();
+        Module module = absUri==null ? null : getModule(absUri);
+        String name = SchemaDependency.getFileName(absUri==null ? ref.getHref() : absUri);
+        SchemaDependency ret = new SchemaDependency(ref.getType(), name, ref.getHref(), module!=null && module.isAvailable() ? absUri : null);
+        if(module!=null && module.isAvailable() && ancestors.add(absUri)) {
+            for(Reference child: module.getReferences()) {
+                ret.getChildren().add(buildSchemaDependency(child, ancestors));
+            }
+            ancestors.remove(absUri);
+        }
+        return ret;
+    }
+    
+    private Module parse(int id) {
+        String uri = uriTable.get(id);
+        ReferenceCollector collector = new ReferenceCollector();
+        boolean available = true;
+        try {
+            XdmNode document = documents==null ? null : documents.get(uri);
+            if(document!=null) {
+                collector.collect(document);
+            } else {
+                XMLReader reader = SaxParsers.newXMLReader();
+                reader.setContentHandler(collector);
+                reader.parse(uri);
+            }
+        } catch(ParserConfigurationException | SAXException | IOException | SaxonApiException ex) {
+            available = false;
+            log.debug(LOG_PREFIX+" unable to parse "+uri+": "+ex.getMessage());
+        }
+        int count = collector.types.size();
+        byte[] types = new byte[count];
+        int[] hrefs = new int[count];
+        int[] targets = new int[count];
+        for(int i=0; i<count; i++) {
+            String href = collector.hrefs.get(i);
+            types[i] = collector.types.get(i);
+            hrefs[i] = uriTable.intern(href);
+            targets[i] = uriTable.intern(resolve(href, uri));
+        }
+        return new Module(uriTable, id, available, types, hrefs, targets);
+    }
+    
+    private String resolve(String href, String base) {
+        if(resolver!=null) {
+            try {
+                Source source = resolver.resolve(href, base);
+                if(source!=null && source.getSystemId()!=null) return source.getSystemId();
+            } catch(TransformerException | RuntimeException ex) {
+                // fallback to standard URI resolution
+            }
+        }
+        try {
+            return UriUtils.resolve(base, href);
+        } catch(URISyntaxException ex) {
+            log.debug(LOG_PREFIX+" unable to resolve "+href+" from "+base);
+            return null;
+        }
+    }
+    
+    /**
+     * A parsed XSL or XSD, and the modules it references. References are stored 
+     * as ids of the scanner {@link UriTable}.
+     */
+    public static class Module {
+        private final UriTable uriTable;
+        private final int id;
+        private final boolean available;
+        private final byte[] types;
+        private final int[] hrefs;
+        private final int[] targets;
+        
+        Module(UriTable uriTable, int id, boolean available, byte[] types, int[] hrefs, int[] targets) {
+            super();
+            this.uriTable = uriTable;
+            this.id = id;
+            this.available = available;
+            this.types = types;
+            this.hrefs = hrefs;
+            this.targets = targets;
+        }
+
+        public String getUri() {
+            return uriTable.get(id);
+        }
+
+        /**
+         * @return <tt>false</tt> if document could not be read or parsed
+         */
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /**
+         * @return The references, in document order. The list is built at each call.
+         */
+        public List<Reference> getReferences() {
+            List<Reference> ret = new ArrayList<>(types.length);
+            for(int i=0; i<types.length; i++) ret.add(getReference(i));
+            return ret;
+        }
+        
+        private Reference getReference(int index) {
+            return new Reference(TYPES[types[index]], uriTable.get(hrefs[index]), uriTable.get(targets[index]));
+        }
+    }
+    
+    /**
+     * A reference from a module to another one
+     */
+    public static class Reference {
+        private final String type;
+        private final String href;
+        private final String absUri;
+        
+        Reference(String type, String href, String absUri) {
+            super();
+            this.type = type;
+            this.href = href;
+            this.absUri = absUri;
+        }
+
+        /**
+         * @return One of <tt>xsl:include</tt>, <tt>xsl:import</tt>, <tt>xsl:import-schema</tt>, 
+         * <tt>xs:include</tt>, <tt>xs:import</tt>, <tt>xs:redefine</tt>, <tt>xs:override</tt>
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return The reference, as written in document
+         */
+        public String getHref() {
+            return href;
+        }
+
+        /**
+         * @return The resolved reference, or <tt>null</tt> if it can not be resolved
+         */
+        public String getAbsUri() {
+            return absUri;
+        }
+    }
+    
+    /**
+     * Collects references to other modules
+     */
+    private static class ReferenceCollector extends DefaultHandler {
+        private final List<Byte> types = new ArrayList<>();
+        private final List<String> hrefs = new ArrayList<>();
+        
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if(XSL_NS.equals(uri) || XSD_NS.equals(uri)) {
+                element(uri, localName, atts.getValue("href"), atts.getValue("schema-location"), atts.getValue("schemaLocation"));
+            }
+        }
+        
+        /**
+         * Collects references of an already parsed document, in document order
+         * @param document The document
+         */
+        private void collect(XdmNode document) {
+            XdmSequenceIterator it = document.axisIterator(Axis.DESCENDANT);
+            while(it.hasNext()) {
+                XdmNode node = (XdmNode)it.next();
+                if(node.getNodeKind()==XdmNodeKind.ELEMENT) {
+                    String uri = node.getNodeName().getNamespaceURI();
+                    if(XSL_NS.equals(uri) || XSD_NS.equals(uri)) {
+                        element(uri, node.getNodeName().getLocalName(), node.getAttributeValue(QN_HREF), 
+                                node.getAttributeValue(QN_SCHEMA_LOCATION_XSL), node.getAttributeValue(QN_SCHEMA_LOCATION));
+                    }
+                }
+            }
+        }
+        
+        private void element(String uri, String localName, String href, String xslSchemaLocation, String schemaLocation) {
+            if(XSL_NS.equals(uri)) {
+                switch(localName) {
+                    case "include":
+                        add(TYPE_XSL_INCLUDE, href); break;
+                    case "import":
+                        add(TYPE_XSL_IMPORT, href); break;
+                    case "import-schema":
+                        add(TYPE_XSL_IMPORT_SCHEMA, xslSchemaLocation); break;
+                }
+            } else {
+                switch(localName) {
+                    case "include":
+                        add(TYPE_XS_INCLUDE, schemaLocation); break;
+                    case "import":
+                        add(TYPE_XS_IMPORT, schemaLocation); break;
+                    case "redefine":
+                        add(TYPE_XS_REDEFINE, schemaLocation); break;
+                    case "override":
+                        add(TYPE_XS_OVERRIDE, schemaLocation); break;
+                }
+            }
+        }
+        
+        private void add(byte type, String href) {
+            if(href!=null && !href.isEmpty()) {
+                types.add(type);
+                hrefs.add(href);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.DocumentBuilder;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmNode;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A bounded pool of parsed XSL and XSD modules, so that a module included by many XSL 
+ * is parsed once for dependency scanning and for all compilations.
+ * <p>Documents are keyed by canonical URI, and checked against the last modification 
+ * time and length of their file, or of the jar they come from ; documents that are neither 
+ * files nor jar entries are not pooled. Pool size is counted in source bytes ; when it is 
+ * full, least recently used documents are removed.</p>
+ * <p>Documents are built with the pool {@link Processor}, and can only be given to compilers 
+ * of this processor.</p>
+ * @author cmarchand
+ */
+public class DocumentPool {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    
+    private final Processor processor;
+    private final SourceStore store;
+    private final Log log;
+    private final StampedLruCache<XdmNode> documents;
+    
+    /**
+     * @param processor The processor documents are built with
+     * @param maxBytes The maximal size of pooled documents, in source bytes
+     * @param log The log
+     */
+    public DocumentPool(Processor processor, long maxBytes, Log log) {
+        this(processor, null, maxBytes, log);
+    }
+    
+    /**
+     * @param processor The processor documents are built with
+     * @param store The store documents are read from. May be <tt>null</tt>
+     * @param maxBytes The maximal size of pooled documents, in source bytes
+     * @param log The log
+     */
+    public DocumentPool(Processor processor, SourceStore store, long maxBytes, Log log) {
+        super();
+        this.processor = processor;
+        this.store = store;
+        this.log = log;
+        this.documents = new StampedLruCache<>(maxBytes);
+    }
+    
+    /**
+     * Returns a parsed document, from the pool if it has not changed since it has been parsed
+     * @param uri The document URI
+     * @return The document, or <tt>null</tt> if it can not be pooled
+     * @throws SaxonApiException If document is not well-formed
+     * @throws IOException If document can not be read
+     */
+    public XdmNode get(String uri) throws SaxonApiException, IOException {
+        String key = UriUtils.canonicalize(uri);
+        StampedLruCache.Stamp stamp = StampedLruCache.getStamp(key);
+        if(stamp==null) return null;
+        XdmNode node = documents.get(key, stamp);
+        if(node!=null) return node;
+        byte[] content = read(key);
+        DocumentBuilder builder = processor.newDocumentBuilder();
+        builder.setLineNumbering(true);
+        node = builder.build(new StreamSource(new ByteArrayInputStream(content), key));
+        documents.put(key, stamp, node, content.length);
+        return node;
+    }
+    
+    /**
+     * Returns a source for a document : the pooled document if it can be pooled, a 
+     * stream source otherwise, so that errors are reported by the consumer.
+     * @param uri The document URI
+     * @return The source
+     */
+    public Source getSource(String uri) {
+        try {
+            XdmNode node = get(uri);
+            if(node!=null) return node.asSource();
+        } catch(SaxonApiException | IOException | RuntimeException ex) {
+            log.debug(LOG_PREFIX+" unable to pool "+uri+": "+ex.getMessage());
+        }
+        return new StreamSource(uri);
+    }
+    
+    /**
+     * Returns a resolver that serves resolved documents from the pool
+     * @param delegate The resolver that resolves URIs. If it does not resolve an URI, 
+     * it is resolved against the base URI.
+     * @return The resolver
+     */
+    public URIResolver asResolver(final URIResolver delegate) {
+        return new URIResolver() {
+            @Override
+            public Source resolve(String href, String base) throws TransformerException {
+                Source source = delegate==null ? null : delegate.resolve(href, base);
+                String systemId = source==null ? null : source.getSystemId();
+                if(source==null) {
+                    try {
+                        systemId = UriUtils.resolve(base, href);
+                    } catch(URISyntaxException ex) {
+                        return null;
+                    }
+                } else if(systemId==null || !(source instanceof StreamSource)) {
+                    return source;
+                }
+                XdmNode node = null;
+                try {
+                    node = get(systemId);
+                } catch(SaxonApiException | IOException | RuntimeException ex) {
+                    log.debug(LOG_PREFIX+" unable to pool "+systemId+": "+ex.getMessage());
+                }
+                // not pooled : the compiler reads and reports errors as usual
+                if(node==null) return source;
+                // the delegate source may own an open stream
+                if(source!=null) close((StreamSource)source);
+                return node.asSource();
+            }
+        };
+    }
+    
+    public long getHits() {
+        return documents.getHits();
+    }
+    
+    public long getMisses() {
+        return documents.getMisses();
+    }
+    
+    /**
+     * @return The size of pooled documents, in source bytes
+     */
+    public long getSize() {
+        return documents.getSize();
+    }
+    
+    private byte[] read(String uri) throws IOException {
+        if(store==null) return StampedLruCache.read(uri);
+        try (InputStream is = store.openStream(uri)) {
+            return StampedLruCache.read(is);
+        }
+    }
+    
+    private static void close(StreamSource source) {
+        try {
+            if(source.getInputStream()!=null) source.getInputStream().close();
+            if(source.getReader()!=null) source.getReader().close();
+        } catch(IOException ex) {
+            // nothing to do
+        }
+    }
+}
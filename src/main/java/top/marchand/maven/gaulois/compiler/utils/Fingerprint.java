@@ -0,0 +1,225 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A SHA-256 digest of everything added to it.
+ * Used to compute fingerprints of inputs and outputs, to know if an output has to be 
+ * compiled again.
+ * @author cmarchand
+ */
+public class Fingerprint {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int MAX_DEPTH = 8;
+    private final MessageDigest digest;
+    private String value;
+    
+    public Fingerprint() {
+        super();
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException ex) {
+            // SHA-256 is required on every Java platform
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Adds a string to this fingerprint
+     * @param s The string to add, may be <tt>null</tt>
+     * @return this fingerprint
+     */
+    public Fingerprint add(String s) {
+        checkNotComputed();
+        if(s!=null) digest.update(s.getBytes(StandardCharsets.UTF_8));
+        // separator, so that add("ab").add("c") differs from add("a").add("bc")
+        digest.update((byte)0);
+        return this;
+    }
+    
+    /**
+     * Adds the whole content of a stream to this fingerprint. The stream is closed.
+     * @param is The stream to read
+     * @return this fingerprint
+     * @throws IOException If stream can not be read
+     */
+    public Fingerprint addContent(InputStream is) throws IOException {
+        checkNotComputed();
+        try(InputStream in = is) {
+            byte[] buffer = new byte[64*1024];
+            int read;
+            while((read=in.read(buffer))>=0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        digest.update((byte)0);
+        return this;
+    }
+    
+    /**
+     * Adds the content of a file, or only a separator if the file is <tt>null</tt> or does not exist.
+     * @param file The file to read
+     * @return this fingerprint
+     * @throws IOException If file can not be read
+     */
+    public Fingerprint addContent(File file) throws IOException {
+        if(file!=null && file.isFile()) {
+            return addContent(new FileInputStream(file));
+        }
+        return add(null);
+    }
+
+    /**
+     * Adds the content of a resource, or only a separator if the URL is <tt>null</tt>.
+     * @param url The resource to read
+     * @return this fingerprint
+     * @throws IOException If resource can not be read
+     */
+    public Fingerprint addContent(URL url) throws IOException {
+        if(url!=null) {
+            return addContent(url.openStream());
+        }
+        return add(null);
+    }
+    
+    /**
+     * Adds a description of an object : its fields values, recursively. Used to 
+     * fingerprint configuration beans, as <tt>SaxonOptions</tt>.
+     * @param o The object to describe
+     * @return this fingerprint
+     */
+    public Fingerprint addObject(Object o) {
+        describe(o, 0);
+        return this;
+    }
+    
+    private void describe(Object o, int depth) {
+        if(o==null) {
+            add(null);
+        } else if(depth>MAX_DEPTH || isSimple(o.getClass())) {
+            add(o.toString());
+        } else if(o instanceof Iterable) {
+            add("[");
+            for(Object item: (Iterable<?>)o) describe(item, depth+1);
+            add("]");
+        } else if(o instanceof Map) {
+            Map<String,Object> sorted = new TreeMap<>();
+            for(Map.Entry<?,?> entry: ((Map<?,?>)o).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            add("{");
+            for(Map.Entry<String,Object> entry: sorted.entrySet()) {
+                add(entry.getKey());
+                describe(entry.getValue(), depth+1);
+            }
+            add("}");
+        } else if(o.getClass().isArray()) {
+            add("[");
+            for(int i=0;i<Array.getLength(o);i++) describe(Array.get(o, i), depth+1);
+            add("]");
+        } else {
+            Map<String,Field> fields = new TreeMap<>();
+            for(Class<?> clazz=o.getClass(); clazz!=null && clazz!=Object.class; clazz=clazz.getSuperclass()) {
+                for(Field f: clazz.getDeclaredFields()) {
+                    if(Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) continue;
+                    String key = clazz.getName()+"."+f.getName();
+                    fields.put(key, f);
+                }
+            }
+            add(o.getClass().getName());
+            for(Map.Entry<String,Field> entry: fields.entrySet()) {
+                Field f = entry.getValue();
+                add(entry.getKey());
+                try {
+                    f.setAccessible(true);
+                    describe(f.get(o), depth+1);
+                } catch(IllegalAccessException | RuntimeException ex) {
+                    add("?");
+                }
+            }
+        }
+    }
+    
+    private static boolean isSimple(Class<?> clazz) {
+        return clazz.isPrimitive()
+                || CharSequence.class.isAssignableFrom(clazz)
+                || Number.class.isAssignableFrom(clazz)
+                || Boolean.class==clazz || Character.class==clazz
+                || clazz.isEnum() || File.class.isAssignableFrom(clazz)
+                || clazz.getName().startsWith("java.");
+    }
+    
+    private void checkNotComputed() {
+        if(value!=null) throw new IllegalStateException("fingerprint has already been computed");
+    }
+
+    /**
+     * Returns the hexadecimal representation of this fingerprint. Once called, nothing 
+     * can be added anymore.
+     * @return The fingerprint
+     */
+    @Override
+    public String toString() {
+        if(value==null) {
+            value = toHex(digest.digest());
+        }
+        return value;
+    }
+    
+    /**
+     * Computes the fingerprint of a stream content
+     * @param is The stream to read. It is closed
+     * @return The fingerprint
+     * @throws IOException If stream can not be read
+     */
+    public static String of(InputStream is) throws IOException {
+        return new Fingerprint().addContent(is).toString();
+    }
+    
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length*2];
+        for(int i=0;i<bytes.length;i++) {
+            chars[2*i] = HEX[(bytes[i]>>4) & 0x0f];
+            chars[2*i+1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.transform.Result;
+import javax.xml.transform.SourceLocator;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.event.Receiver;
+import net.sf.saxon.lib.OutputURIResolver;
+import net.sf.saxon.s9api.Destination;
+import net.sf.saxon.s9api.DocumentBuilder;
+import net.sf.saxon.s9api.MessageListener;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmAtomicValue;
+import net.sf.saxon.s9api.XdmDestination;
+import net.sf.saxon.s9api.XdmMap;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XdmValue;
+import net.sf.saxon.s9api.XsltExecutable;
+import net.sf.saxon.s9api.XsltTransformer;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Compiles many gaulois configs in a single run of <tt>gaulois-compiler.xsl</tt> : 
+ * transformer is loaded and parameters are bound once, and each config is written 
+ * with a <tt>xsl:result-document</tt>.
+ * 
+ * <p>If there are post-compilers, each result document is piped into its own 
+ * post-compilers chain, which writes the target file. Each config compilation is 
+ * recorded in build report.</p>
+ * 
+ * @author cmarchand
+ */
+public class GauloisBatchCompiler {
+    private static final QName QN_BATCH_TEMPLATE = new QName("top:marchand:xml:maven:gaulois:compiler", "compile-batch");
+    private static final QName QN_PARAM_XSLMAP = new QName("xslMap");
+    private static final QName QN_TARGET_PATH = new QName("targetPath");
+    private static final QName QN_PARAM_BATCH_CONFIGS = new QName("batchConfigs");
+    private static final QName QN_PARAM_BATCH_SCHEMAS = new QName("batchSchemas");
+    
+    private final XsltExecutable gauloisCompilerXsl;
+    private final List<XsltExecutable> postCompilerXsls;
+    private final URIResolver resolver;
+    private final BuildReport report;
+    private final Log log;
+    
+    /**
+     * @param gauloisCompilerXsl The gaulois compiler
+     * @param postCompilerXsls The post-compiler stages, in order ; may be empty
+     * @param resolver The URI resolver to use in transformations
+     * @param report The report to record each config compilation in
+     * @param log The log
+     */
+    public GauloisBatchCompiler(XsltExecutable gauloisCompilerXsl, List<XsltExecutable> postCompilerXsls, URIResolver resolver, BuildReport report, Log log) {
+        super();
+        this.gauloisCompilerXsl = gauloisCompilerXsl;
+        this.postCompilerXsls = postCompilerXsls;
+        this.resolver = resolver;
+        this.report = report;
+        this.log = log;
+    }
+    
+    /**
+     * Compiles all configs. Config trees are released when all configs are written.
+     * @param sets The configs to compile
+     * @param xslMap The map <tt>xsl href -&gt; compiled XSL location</tt>
+     * @param targetPath The classes directory absolute path
+     * @throws SaxonApiException If one of the configs can not be compiled
+     */
+    public void compile(Collection<GauloisSet> sets, XdmMap xslMap, String targetPath) throws SaxonApiException {
+        Processor processor = gauloisCompilerXsl.getProcessor();
+        Map<XdmAtomicValue,XdmValue> configs = new HashMap<>();
+        Map<XdmAtomicValue,XdmValue> schemas = new HashMap<>();
+        Map<String,String> configSystemIds = new HashMap<>();
+        DocumentBuilder builder = null;
+        for(GauloisSet gs: sets) {
+            XdmAtomicValue targetUri = new XdmAtomicValue(gs.getTargetFile().toURI().toString());
+            XdmNode config = gs.getConfigTree();
+            if(config==null) {
+                // config has not been kept while scanning
+                if(builder==null) builder = processor.newDocumentBuilder();
+                config = builder.build(new StreamSource(gs.getGauloisConfigSystemId()));
+            }
+            configs.put(targetUri, config);
+            configSystemIds.put(gs.getTargetFile().toURI().toString(), gs.getGauloisConfigSystemId());
+            List<XdmAtomicValue> values = new ArrayList<>();
+            for(String schema: gs.getAllSchemas()) {
+                log.info("[gaulois-compiler]"+gs.getTargetFile().getName()+" has schema: "+schema);
+                values.add(new XdmAtomicValue(schema));
+            }
+            schemas.put(targetUri, new XdmValue(values));
+            gs.getTargetFile().getParentFile().mkdirs();
+        }
+        XsltTransformer tr = gauloisCompilerXsl.load();
+        tr.setURIResolver(resolver);
+        tr.setMessageListener(new MessageListener() {
+            @Override
+            public void message(XdmNode xn, boolean bln, SourceLocator sl) {
+                if(log.isDebugEnabled()) log.debug(xn.toString());
+            }
+        });
+        tr.setParameter(QN_PARAM_XSLMAP, xslMap);
+        tr.setParameter(QN_TARGET_PATH, XdmValue.makeValue(targetPath));
+        tr.setParameter(QN_PARAM_BATCH_CONFIGS, new XdmMap(configs));
+        tr.setParameter(QN_PARAM_BATCH_SCHEMAS, new XdmMap(schemas));
+        tr.getUnderlyingController().setOutputURIResolver(new ResultDocumentResolver(configSystemIds));
+        tr.setInitialTemplate(QN_BATCH_TEMPLATE);
+        // principal result is empty
+        tr.setDestination(new XdmDestination());
+        tr.transform();
+        tr.close();
+        for(GauloisSet gs: sets) gs.setConfigTree(null);
+    }
+    
+    /**
+     * Loads a post-compilers chain : each stage is the destination of the previous one, 
+     * so documents are streamed from one stage to the next, without intermediate tree.
+     * @param stages The post-compiler stages, in order
+     * @param resolver The URI resolver to use in post-compilers
+     * @param destination The destination of the last stage
+     * @return The loaded stages, in order. Documents must be sent to the first one.
+     */
+    public static List<XsltTransformer> loadPostCompilers(List<XsltExecutable> stages, URIResolver resolver, Destination destination) {
+        List<XsltTransformer> ret = new ArrayList<>(stages.size());
+        for(XsltExecutable stage: stages) {
+            XsltTransformer tr = stage.load();
+            tr.setURIResolver(resolver);
+            if(!ret.isEmpty()) ret.get(ret.size()-1).setDestination(tr);
+            ret.add(tr);
+        }
+        if(!ret.isEmpty()) ret.get(ret.size()-1).setDestination(destination);
+        return ret;
+    }
+    
+    /**
+     * Writes each result document to its target file, thru a new post-compilers chain 
+     * if there are post-compilers, and records it in build report.
+     */
+    private class ResultDocumentResolver implements OutputURIResolver {
+        private final ConcurrentMap<Result,OpenResult> results = new ConcurrentHashMap<>();
+        // target URI -> config systemId
+        private final Map<String,String> configSystemIds;
+        
+        ResultDocumentResolver(Map<String,String> configSystemIds) {
+            super();
+            this.configSystemIds = configSystemIds;
+        }
+        
+        @Override
+        public OutputURIResolver newInstance() {
+            return this;
+        }
+
+        @Override
+        public Result resolve(String href, String base) throws TransformerException {
+            long start = System.nanoTime();
+            try {
+                File target = new File(new URI(UriUtils.resolve(base, href)));
+                String systemId = target.toURI().toString();
+                Result result;
+                List<XsltTransformer> chain = Collections.emptyList();
+                OutputStream os = null;
+                if(postCompilerXsls.isEmpty()) {
+                    os = new FileOutputStream(target);
+                    result = new StreamResult(os);
+                    result.setSystemId(systemId);
+                } else {
+                    chain = loadPostCompilers(postCompilerXsls, resolver, gauloisCompilerXsl.getProcessor().newSerializer(target));
+                    Receiver receiver = report.timed(BuildReport.POST_COMPILE, 
+                            chain.get(0).getReceiver(gauloisCompilerXsl.getProcessor().getUnderlyingConfiguration()));
+                    receiver.setSystemId(systemId);
+                    result = receiver;
+                }
+                results.put(result, new OpenResult(target, chain, os, start));
+                return result;
+            } catch(URISyntaxException | IllegalArgumentException | SaxonApiException | IOException ex) {
+                throw new TransformerException("while opening "+href, ex);
+            }
+        }
+
+        @Override
+        public void close(Result result) throws TransformerException {
+            OpenResult open = results.remove(result);
+            if(open!=null) {
+                try {
+                    for(XsltTransformer tr: open.chain) tr.close();
+                    if(open.os!=null) open.os.close();
+                } catch(SaxonApiException | IOException ex) {
+                    throw new TransformerException(ex);
+                }
+                String targetUri = open.target.toURI().toString();
+                String configSystemId = configSystemIds.containsKey(targetUri) ? configSystemIds.get(targetUri) : targetUri;
+                report.addFile(BuildReport.CONFIG_COMPILE, configSystemId, System.nanoTime()-open.start, 
+                        BuildReport.sizeOf(configSystemId), BuildReport.sizeOf(open.target));
+            }
+        }
+    }
+    
+    private static class OpenResult {
+        private final File target;
+        private final List<XsltTransformer> chain;
+        private final OutputStream os;
+        private final long start;
+        
+        OpenResult(File target, List<XsltTransformer> chain, OutputStream os, long start) {
+            super();
+            this.target = target;
+            this.chain = chain;
+            this.os = os;
+            this.start = start;
+        }
+    }
+}
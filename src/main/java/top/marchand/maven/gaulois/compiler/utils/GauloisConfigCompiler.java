@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.xml.transform.Source;
+import javax.xml.transform.SourceLocator;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.MessageListener;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.Serializer;
+import net.sf.saxon.s9api.XdmAtomicValue;
+import net.sf.saxon.s9api.XdmMap;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XdmValue;
+import net.sf.saxon.s9api.XsltExecutable;
+import net.sf.saxon.s9api.XsltTransformer;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Compiles a gaulois config in its own run of <tt>gaulois-compiler.xsl</tt>. The 
+ * result is piped into the post-compilers chain, if any, which writes the target file.
+ * @see GauloisBatchCompiler
+ * @author cmarchand
+ */
+public class GauloisConfigCompiler {
+    private static final QName QN_PARAM_SCHEMAS = new QName("schemas");
+    private static final QName QN_PARAM_XSLMAP = new QName("xslMap");
+    private static final QName QN_TARGET_PATH = new QName("targetPath");
+    
+    private final XsltExecutable gauloisCompilerXsl;
+    private final List<XsltExecutable> postCompilerXsls;
+    private final URIResolver resolver;
+    private final BuildReport report;
+    private final Log log;
+    
+    /**
+     * @param gauloisCompilerXsl The gaulois compiler
+     * @param postCompilerXsls The post-compiler stages, in order ; may be empty
+     * @param resolver The URI resolver to use in transformations
+     * @param report The report to record compilations in
+     * @param log The log
+     */
+    public GauloisConfigCompiler(XsltExecutable gauloisCompilerXsl, List<XsltExecutable> postCompilerXsls, URIResolver resolver, BuildReport report, Log log) {
+        super();
+        this.gauloisCompilerXsl = gauloisCompilerXsl;
+        this.postCompilerXsls = postCompilerXsls;
+        this.resolver = resolver;
+        this.report = report;
+        this.log = log;
+    }
+    
+    /**
+     * Compiles a config, and records it in build report. Config tree is released.
+     * @param gs The config to compile
+     * @param xslMap The map <tt>xsl href -&gt; compiled XSL location</tt>
+     * @param targetPath The classes directory absolute path
+     * @throws SaxonApiException If config can not be compiled
+     */
+    public void compile(GauloisSet gs, XdmMap xslMap, String targetPath) throws SaxonApiException {
+        XdmNode configTree = gs.getConfigTree();
+        Source source = configTree!=null ? configTree.asSource() : new StreamSource(gs.getGauloisConfigSystemId());
+        long start = System.nanoTime();
+        try {
+            compile(source, gs.getTargetFile(), gs.getAllSchemas(), xslMap, targetPath);
+            report.addFile(BuildReport.CONFIG_COMPILE, gs.getGauloisConfigSystemId(), System.nanoTime()-start, 
+                    BuildReport.sizeOf(gs.getGauloisConfigSystemId()), BuildReport.sizeOf(gs.getTargetFile()));
+        } finally {
+            // config tree is not needed anymore
+            gs.setConfigTree(null);
+        }
+    }
+    
+    /**
+     * Compiles a config
+     * @param source The config
+     * @param target The file to write compiled config to
+     * @param schemas The schemas to declare in compiled config
+     * @param xslMap The map <tt>xsl href -&gt; compiled XSL location</tt>
+     * @param targetPath The classes directory absolute path
+     * @throws SaxonApiException If config can not be compiled
+     */
+    public void compile(Source source, File target, Set<String> schemas, XdmMap xslMap, String targetPath) throws SaxonApiException {
+        XsltTransformer tr = gauloisCompilerXsl.load();
+        tr.setURIResolver(resolver);
+        List<XdmAtomicValue> values = new ArrayList<>();
+        for(String schema: schemas) {
+            log.info("[gaulois-compiler]"+target.getName()+" has schema: "+schema);
+            values.add(new XdmAtomicValue(schema));
+        }
+        tr.setMessageListener(new MessageListener() {
+            @Override
+            public void message(XdmNode xn, boolean bln, SourceLocator sl) {
+                if(log.isDebugEnabled()) log.debug(xn.toString());
+            }
+        });
+        tr.setParameter(QN_PARAM_SCHEMAS, new XdmValue(values));
+        tr.setParameter(QN_PARAM_XSLMAP, xslMap);
+        tr.setParameter(QN_TARGET_PATH, XdmValue.makeValue(targetPath));
+        target.getParentFile().mkdirs();
+        // gaulois compiler may have been compiled by another execution, with another Configuration
+        Serializer ser = gauloisCompilerXsl.getProcessor().newSerializer(target);
+        List<XsltTransformer> postCompilers = GauloisBatchCompiler.loadPostCompilers(postCompilerXsls, resolver, ser);
+        tr.setDestination(postCompilers.isEmpty() ? ser : report.timed(BuildReport.POST_COMPILE, postCompilers.get(0)));
+        tr.setSource(source);
+        tr.transform();
+        tr.close();
+    }
+}
@@ -27,8 +27,6 @@
 package top.marchand.maven.gaulois.compiler.utils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -36,11 +34,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.URIResolver;
 import javax.xml.transform.sax.SAXSource;
-import org.apache.commons.io.FilenameUtils;
+import net.sf.saxon.s9api.Axis;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XdmSequenceIterator;
 import org.apache.maven.plugin.logging.Log;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
@@ -53,23 +55,19 @@ import org.xml.sax.ext.DefaultHandler2;
  */
 public class GauloisConfigScanner extends DefaultHandler2 {
     public static final String GAULOIS_NS = "http://efl.fr/chaine/saxon-pipe/config";
+    private static final QName QN_XSLT = new QName(GAULOIS_NS, "xslt");
+    private static final QName QN_HREF = new QName("href");
     boolean hasError = false;
-    private final List<File> xslDirectories;
-    private final File outputDirectory;
     private final Map<Source,FileInfo> xslToCompile;
     private final List<String> errors;
-    private final URIResolver resolver;
     private int uriErrorCount = 0;
     private final Log log;
-    private final List<String> classpathes;
+    private final XslLocator locator;
     
-    public GauloisConfigScanner(List<File> xslDirectories, File outputDirectory, URIResolver resolver, Log log, List<String> classpathes) {
+    public GauloisConfigScanner(XslLocator locator, Log log) {
         super();
-        this.xslDirectories=xslDirectories;
-        this.outputDirectory=outputDirectory;
-        this.resolver=resolver;
+        this.locator=locator;
         this.log=log;
-        this.classpathes = classpathes;
         xslToCompile = new HashMap<>();
         errors = new ArrayList<>();
     }
@@ -78,126 +76,68 @@ public class GauloisConfigScanner extends DefaultHandler2 {
     public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
         super.startElement(uri, localName, qName, attributes);
         if(GAULOIS_NS.equals(uri) && "xslt".equals(localName)) {
-            String href = attributes.getValue("href");
-            log.debug("found XSL: "+href);
-            if(!href.startsWith("cp:/")) {
-                try {
-                    Source source = resolver.resolve(href, "");
-                    log.debug("source is a "+source.getClass().getName());
-                    String systemId = source.getSystemId();
-                    String xslPath = systemId.contains("!") ? systemId.substring(systemId.indexOf("!")+1) : systemId;
-                    log.debug("xslPath="+xslPath);
-                    String shortPath = FilenameUtils.getPath(xslPath);
-                    log.debug("shortPath="+shortPath);
-                    String baseName = FilenameUtils.getBaseName(xslPath);
-                    log.debug("baseName="+baseName);
-                    String targetPath = shortPath.concat(baseName).concat(".sef");
-                    log.debug("targetPath="+targetPath);
-                    File targetXsl = new File(outputDirectory, targetPath);
-                    
-                    xslToCompile.put(source, new FileInfo(targetXsl, href));
-                } catch(TransformerException | NullPointerException ex) {
-                    hasError = true;
-                    if(uriErrorCount<10) {
-                        errors.add(href+" is an invalid URI. Only URI based on cp:/ protocol are supported, or the one that can be resolved via the catalog");
-                        uriErrorCount++;
-                    }
-                }
-            } else if(href.startsWith("cp:/")) {
-                String path = href.substring(4);
-                log.debug("searching for xsl "+path);
-                boolean found = false;
-                for(File dir:xslDirectories) {
-                    File xsl = new File(dir, path);
-                    if(xsl.exists() && xsl.isFile()) {
-                        log.debug("\tfound at "+xsl.getAbsolutePath());
-                        String shortPath = FilenameUtils.getPath(path);
-                        String baseName = FilenameUtils.getBaseName(path);
-                        String targetPath = shortPath.concat(baseName).concat(".sef");
-                        File targetXsl = new File(outputDirectory, targetPath);
-                        try {
-                            InputSource is = new InputSource(new FileInputStream(xsl));
-                            String systemID = xsl.toURI().toString();
-                            is.setPublicId(systemID);
-                            SAXSource ss = new SAXSource(is);
-                            ss.setSystemId(systemID);
-                            xslToCompile.put(ss, new FileInfo(targetXsl, href));
-                            found = true;
-                        } catch(FileNotFoundException ex) {
-                            // is it really possible ? We have checked xsl.exists()
-                            // so ignore it
-                        }
-                    }
-                    if(found) break;
-                }
-                if(!found) {
-                    // could it be referenced from catalog ?
-                    try {
-                        Source source = resolver.resolve(href, "");
-                        if(source!=null) {
-                            log.debug("source is a "+source.getClass().getName());
-                            String systemId = source.getSystemId();
-                            String xslPath = systemId.contains("!") ? systemId.substring(systemId.indexOf("!")+1) : systemId;
-                            log.debug("xslPath="+xslPath);
-                            String shortPath = FilenameUtils.getPath(xslPath);
-                            log.debug("shortPath="+shortPath);
-                            String baseName = FilenameUtils.getBaseName(xslPath);
-                            log.debug("baseName="+baseName);
-                            String targetPath = shortPath.concat(baseName).concat(".sef");
-                            log.debug("targetPath="+targetPath);
-                            File targetXsl = new File(outputDirectory, targetPath);
-                            xslToCompile.put(source, new FileInfo(targetXsl, href));
-                            found = true;
-                        }
-                    } catch(TransformerException | NullPointerException ex) {
-                        hasError = true;
-                        if(uriErrorCount<10) {
-                            errors.add(href+" is an invalid URI. Only URI based on cp:/ protocol are supported, or the one that can be resolved via the catalog");
-                            uriErrorCount++;
-                        }
-                    }
-                }
-                if(!found) {
-                    // search thru classpath
-                    log.debug("searching for "+href+" in classpath");
-                    for(String cp: classpathes) {
-                        try {
-                            String systemId = cp;
-                            if(systemId.endsWith(".jar")) systemId = "jar:"+systemId;
-                            systemId = systemId + "!"+href.substring(3);
-                            URL url = new URL(systemId);
-                            InputStream is = url.openStream();
-                            if(is!=null) {
-                                log.debug("systemId="+systemId);
-                                String xslPath = systemId.contains("!") ? systemId.substring(systemId.indexOf("!")+1) : systemId;
-                                log.debug("xslPath="+xslPath);
-                                String shortPath = FilenameUtils.getPath(xslPath);
-                                log.debug("shortPath="+shortPath);
-                                String baseName = FilenameUtils.getBaseName(xslPath);
-                                log.debug("baseName="+baseName);
-                                String targetPath = shortPath.concat(baseName).concat(".sef");
-                                log.debug("targetPath="+targetPath);
-                                File targetXsl = new File(outputDirectory, targetPath);
-                                Source source = new SAXSource(new InputSource(is));
-                                source.setSystemId(systemId);
-                                xslToCompile.put(source, new FileInfo(targetXsl, href));
-                                found = true;
-                            }
-                        } catch(FileNotFoundException ex) {
-                            // we do nothing, we want to ignore this exception
-                        } catch (IOException ex) {
-                            log.warn("while searching "+href+"in classpath:",ex);
-                        }
-                        
+            foundXslt(attributes.getValue("href"));
+        }
+    }
+    
+    /**
+     * Scans a gaulois config, only looking at <tt>gc:xslt</tt> elements. Other elements 
+     * are pulled and skipped, without any callback nor attributes copy.
+     * @param systemId The config systemId
+     * @throws IOException If config can not be read
+     * @throws XMLStreamException If config is not well-formed
+     */
+    public void scan(String systemId) throws IOException, XMLStreamException {
+        try (InputStream is = new URL(systemId).openStream()) {
+            XMLStreamReader reader = SaxParsers.newXMLStreamReader(systemId, is);
+            try {
+                while(reader.hasNext()) {
+                    if(reader.next()==XMLStreamConstants.START_ELEMENT 
+                            && "xslt".equals(reader.getLocalName()) 
+                            && GAULOIS_NS.equals(reader.getNamespaceURI())) {
+                        foundXslt(reader.getAttributeValue(null, "href"));
                     }
                 }
-                if(!found) {
-                    log.warn(href+" could not be found ! It won't be compiled");
-                }
+            } finally {
+                reader.close();
             }
         }
     }
     
+    /**
+     * Scans a gaulois config that has already been parsed
+     * @param config The config document
+     */
+    public void scan(XdmNode config) {
+        XdmSequenceIterator it = config.axisIterator(Axis.DESCENDANT, QN_XSLT);
+        while(it.hasNext()) {
+            foundXslt(((XdmNode)it.next()).getAttributeValue(QN_HREF));
+        }
+    }
+    
+    private void foundXslt(String href) {
+        if(log.isDebugEnabled()) log.debug("found XSL: "+href);
+        if(href==null) {
+            log.warn("gc:xslt without href is ignored");
+            return;
+        }
+        XslLocator.Location location = locator.locate(href);
+        if(location.isInvalid()) {
+            hasError = true;
+            if(uriErrorCount<10) {
+                errors.add(href+" is an invalid URI. Only URI based on cp:/ protocol are supported, or the one that can be resolved via the catalog");
+                uriErrorCount++;
+            }
+        }
+        if(location.getSystemId()!=null) {
+            // a XSL is identified by its canonical systemId, whatever the href used to reach it
+            String systemId = location.getCanonicalSystemId();
+            Source source = new SAXSource(new InputSource(systemId));
+            source.setSystemId(systemId);
+            xslToCompile.put(source, new FileInfo(location.getTargetFile(), href));
+        }
+    }
+    
     public boolean hasErrors() { return hasError; }
     public List<String> getErrorMessages() { return errors; }
     public Map<Source,FileInfo> getXslToCompile() { return xslToCompile; }
@@ -30,6 +30,7 @@ import java.io.File;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import net.sf.saxon.s9api.XdmNode;
 
 /**
  * A set, a gaulois-pipe config file, and all its XSL
@@ -39,6 +40,7 @@ public class GauloisSet implements Comparable<GauloisSet> {
     private final String gauloisConfigSystemId;
     private final Set<GauloisXsl> xsls;
     private final File targetFile;
+    private volatile XdmNode configTree;
     
     public GauloisSet(String systemId, final File targetFile) {
         this.gauloisConfigSystemId=systemId;
@@ -58,6 +60,18 @@ public class GauloisSet implements Comparable<GauloisSet> {
         return targetFile;
     }
     
+    /**
+     * The config, parsed while scanning, so that it is not parsed again when compiled.
+     * @return The config tree, or <tt>null</tt> if it has not been kept, or has been released
+     */
+    public XdmNode getConfigTree() {
+        return configTree;
+    }
+
+    public void setConfigTree(XdmNode configTree) {
+        this.configTree = configTree;
+    }
+    
     public Set<String> getAllSchemas() {
         Set<String> ret = new TreeSet<>();
         for(GauloisXsl gx: getXsls()) ret.addAll(gx.getSchemas());
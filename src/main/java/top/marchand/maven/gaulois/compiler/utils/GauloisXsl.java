@@ -30,6 +30,7 @@ import java.io.File;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * A Xsl, and all the imported schema declared in or in included XSL
@@ -40,12 +41,17 @@ public class GauloisXsl implements Comparable<GauloisXsl> {
     private final Set<String> schemas;
     private final File targetFile;
     private final String originalSystemId;
+    private final Set<String> originalSystemIds;
+    private String fingerprint;
+    private String cacheKey;
     
     public GauloisXsl(String xslSystemId, final File targetFile, final String originalSystemId) {
         super();
         this.xslSystemId=xslSystemId;
         this.targetFile = targetFile;
         this.originalSystemId=originalSystemId;
+        this.originalSystemIds = new ConcurrentSkipListSet<>();
+        this.originalSystemIds.add(originalSystemId);
         schemas = new TreeSet<>();
     }
 
@@ -64,6 +70,39 @@ public class GauloisXsl implements Comparable<GauloisXsl> {
     public String getOriginalSystemId() {
         return originalSystemId;
     }
+    
+    /**
+     * All hrefs that reference this XSL in gaulois configs. Thread-safe.
+     * @return The hrefs, including {@link #getOriginalSystemId() }
+     */
+    public Set<String> getOriginalSystemIds() {
+        return originalSystemIds;
+    }
+
+    /**
+     * The fingerprint of this XSL and all its includes, imports and imported schemas.
+     * @return The fingerprint, or <tt>null</tt> if it has not been computed
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+    
+    /**
+     * The key of this XSL compiled form in {@link SefCache} : unlike fingerprint, it does 
+     * not depend on target file.
+     * @return The cache key, or <tt>null</tt> if it has not been computed
+     */
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
 
     @Override
     public int compareTo(GauloisXsl o) {
@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import net.sf.saxon.Version;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Loads the plugin stylesheets that have been precompiled to SEF when the plugin 
+ * has been built (<tt>precompile-stylesheets</tt> profile).
+ * <p>A SEF is used only if it has been exported with the same Saxon major version 
+ * than the running one, and for an edition the running one is able to load : a SEF 
+ * exported for EE can not be loaded by HE or PE.</p>
+ * @author cmarchand
+ */
+public class PrecompiledStylesheets {
+    public static final String SEF_DIRECTORY = "/top/marchand/maven/gaulois/compiler/sef/";
+    private static final String SEF_PROPERTIES = SEF_DIRECTORY+"sef.properties";
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    private static final List<String> EDITIONS = Arrays.asList("HE", "PE", "EE");
+    
+    private PrecompiledStylesheets() {
+        super();
+    }
+    
+    /**
+     * Loads the precompiled version of a stylesheet
+     * @param compiler The compiler to load SEF with
+     * @param resource The stylesheet resource path, i.e. <tt>/top/marchand/maven/gaulois/compiler/gaulois-compiler.xsl</tt>
+     * @param log To explain why the SEF is not used
+     * @return The loaded stylesheet, or <tt>null</tt> if it has to be compiled from source
+     */
+    public static XsltExecutable load(XsltCompiler compiler, String resource, Log log) {
+        String name = resource.substring(resource.lastIndexOf('/')+1);
+        if(name.endsWith(".xsl")) name = name.substring(0, name.length()-4);
+        URL sef = PrecompiledStylesheets.class.getResource(SEF_DIRECTORY+name+".sef");
+        if(sef==null) return null;
+        Properties props = getSefProperties();
+        String sefVersion = props.getProperty("saxon.version");
+        String sefEdition = props.getProperty("saxon.target");
+        String runningEdition = compiler.getProcessor().getUnderlyingConfiguration().getEditionCode();
+        if(!isCompatible(sefVersion, sefEdition, Version.getProductVersion(), runningEdition)) {
+            log.info(LOG_PREFIX+" "+name+" is compiled from source : precompiled for Saxon "+sefEdition+" "+sefVersion+
+                    ", running is Saxon "+runningEdition+" "+Version.getProductVersion());
+            return null;
+        }
+        try {
+            return compiler.loadExecutablePackage(sef.toURI());
+        } catch(SaxonApiException | URISyntaxException | RuntimeException ex) {
+            log.info(LOG_PREFIX+" "+name+" is compiled from source : unable to load "+sef+": "+ex.getMessage());
+            return null;
+        }
+    }
+    
+    private static Properties getSefProperties() {
+        Properties props = new Properties();
+        try(InputStream is = PrecompiledStylesheets.class.getResourceAsStream(SEF_PROPERTIES)) {
+            if(is!=null) props.load(is);
+        } catch(IOException ex) {
+            // then version is unknown
+        }
+        return props;
+    }
+    
+    /**
+     * Checks SEF compatibility : same major version, and a running edition at least as 
+     * high as the one SEF has been exported for (HE &lt; PE &lt; EE)
+     * @param sefVersion Saxon version that has exported SEF
+     * @param sefEdition Edition SEF has been exported for : <tt>HE</tt>, <tt>PE</tt> or <tt>EE</tt>. 
+     * If <tt>null</tt>, SEF has been exported without target, for EE.
+     * @param runningVersion Running Saxon version
+     * @param runningEdition Running Saxon edition
+     * @return <tt>true</tt> if running Saxon can load SEF
+     */
+    static boolean isCompatible(String sefVersion, String sefEdition, String runningVersion, String runningEdition) {
+        int sef = EDITIONS.indexOf(sefEdition==null ? "EE" : sefEdition);
+        int running = EDITIONS.indexOf(runningEdition);
+        return sef>=0 && running>=sef && isCompatible(sefVersion, runningVersion);
+    }
+    
+    /**
+     * Checks SEF compatibility : SEF can be loaded by a Saxon with the same major version (9.8, 9.9, ...)
+     * @param sefVersion Saxon version that has exported SEF, as <tt>9.8.0-15</tt>, or <tt>9.8.0.15</tt>
+     * @param runningVersion Running Saxon version
+     * @return <tt>true</tt> if major versions are the same
+     */
+    static boolean isCompatible(String sefVersion, String runningVersion) {
+        if(sefVersion==null || runningVersion==null) return false;
+        String[] sef = sefVersion.split("[.-]");
+        String[] running = runningVersion.split("[.-]");
+        return sef.length>=2 && running.length>=2 && sef[0].equals(running[0]) && sef[1].equals(running[1]);
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.InputStream;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.ParserAdapter;
+
+/**
+ * Creates namespace-aware SAX and StAX readers. {@link SAXParserFactory} and 
+ * {@link XMLInputFactory} are not thread-safe, so each thread has its own factories.
+ * @author cmarchand
+ */
+public class SaxParsers {
+    private static final ThreadLocal<SAXParserFactory> FACTORIES = new ThreadLocal<SAXParserFactory>() {
+        @Override
+        protected SAXParserFactory initialValue() {
+            return SAXParserFactory.newInstance();
+        }
+    };
+    private static final ThreadLocal<XMLInputFactory> STAX_FACTORIES = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+            return factory;
+        }
+    };
+    
+    private SaxParsers() {
+        super();
+    }
+    
+    /**
+     * Returns a new SAX reader, for the current thread only
+     * @return A new reader
+     * @throws ParserConfigurationException If no parser is available
+     * @throws SAXException If parser can not be created
+     */
+    public static XMLReader newXMLReader() throws ParserConfigurationException, SAXException {
+        return new ParserAdapter(FACTORIES.get().newSAXParser().getParser());
+    }
+    
+    /**
+     * Returns a new StAX reader, for the current thread only. Closing the reader does 
+     * not close the stream.
+     * @param systemId The document systemId
+     * @param is The document content
+     * @return A new reader
+     * @throws XMLStreamException If reader can not be created
+     */
+    public static XMLStreamReader newXMLStreamReader(String systemId, InputStream is) throws XMLStreamException {
+        return STAX_FACTORIES.get().createXMLStreamReader(systemId, is);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A schema imported by a XSL, or included / imported by another schema.
+ * This is what the xut dependency tree describes in its <tt>file</tt> elements.
+ * @author cmarchand
+ */
+public class SchemaDependency {
+    private final String dependencyType;
+    private final String name;
+    private final String uri;
+    private final String absUri;
+    private final List<SchemaDependency> children;
+    
+    /**
+     * @param dependencyType The kind of reference : <tt>xsl:import-schema</tt>, <tt>xs:include</tt>, ...
+     * @param name The schema file name
+     * @param uri The URI, as written in the referencing document
+     * @param absUri The resolved URI, or <tt>null</tt> if document is not available
+     */
+    public SchemaDependency(String dependencyType, String name, String uri, String absUri) {
+        super();
+        this.dependencyType = dependencyType;
+        this.name = name;
+        this.uri = uri;
+        this.absUri = absUri;
+        children = new ArrayList<>();
+    }
+
+    public String getDependencyType() {
+        return dependencyType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getAbsUri() {
+        return absUri;
+    }
+
+    /**
+     * The schemas this schema includes or imports
+     * @return The sub-schemas
+     */
+    public List<SchemaDependency> getChildren() {
+        return children;
+    }
+    
+    /**
+     * Returns the file name of a URI, as xut does
+     * @param uri The URI
+     * @return The last path segment
+     */
+    public static String getFileName(String uri) {
+        String path = uri;
+        int query = path.indexOf('?');
+        if(query>=0) path = path.substring(0, query);
+        return path.substring(path.lastIndexOf('/')+1);
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * All schemas to copy to <tt>schemasDestination</tt> during an execution.
+ * 
+ * <p>Many XSL import the same schemas : each schema is registered once, with its 
+ * destination, and copied once when all configs have been scanned. If destination 
+ * has already the same content, it is not written, so its timestamp is kept.</p>
+ * 
+ * @author cmarchand
+ */
+public class SchemaRegistry {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    private static final long TRANSFER_SLICE = 1024*1024;
+    
+    private final BuildManifest manifest;
+    private final Log log;
+    // destination absolute path -> source URI
+    private final ConcurrentMap<String,String> copies;
+    private final AtomicInteger copied = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    
+    /**
+     * @param manifest The build manifest, where copies are recorded
+     * @param log The log
+     */
+    public SchemaRegistry(BuildManifest manifest, Log log) {
+        super();
+        this.manifest = manifest;
+        this.log = log;
+        this.copies = new ConcurrentSkipListMap<>();
+    }
+    
+    /**
+     * Registers a schema to copy. Thread-safe.
+     * @param sourceUri The schema URI
+     * @param dest The file to copy schema to
+     * @return <tt>true</tt> if this destination was not registered yet
+     */
+    public boolean register(String sourceUri, File dest) {
+        String previous = copies.putIfAbsent(dest.getAbsolutePath(), sourceUri);
+        if(previous!=null && !previous.equals(sourceUri)) {
+            log.warn(LOG_PREFIX+" "+dest.getAbsolutePath()+" is the destination of "+previous+" and "+sourceUri+" ; "+previous+" is kept");
+        }
+        return previous==null;
+    }
+    
+    /**
+     * Copies all registered schemas which destination differs from source.
+     * @param threads The number of threads to use
+     * @return <tt>true</tt> if all schemas have been successfully copied
+     * @throws InterruptedException If interrupted while waiting for copies
+     */
+    public boolean materialize(int threads) throws InterruptedException {
+        boolean ret = true;
+        if(threads<=1 || copies.size()<2) {
+            for(Map.Entry<String,String> entry: copies.entrySet()) {
+                try {
+                    materialize(entry.getValue(), new File(entry.getKey()));
+                } catch(IOException | URISyntaxException ex) {
+                    ret = false;
+                    log.error(LOG_PREFIX+" while copying "+entry.getValue(), ex);
+                }
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, copies.size()), new WorkerThreadFactory("gaulois-schema-copy"));
+            try {
+                List<Future<Void>> futures = new ArrayList<>(copies.size());
+                for(final Map.Entry<String,String> entry: copies.entrySet()) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            materialize(entry.getValue(), new File(entry.getKey()));
+                            return null;
+                        }
+                    }));
+                }
+                for(Future<Void> future: futures) {
+                    try {
+                        future.get();
+                    } catch(ExecutionException ex) {
+                        ret = false;
+                        log.error(LOG_PREFIX+" while copying schema", ex.getCause());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        log.debug(LOG_PREFIX+" schemas: "+copied.get()+" copied, "+unchanged.get()+" unchanged");
+        return ret;
+    }
+    
+    /**
+     * @return The number of schemas actually written
+     */
+    public int getCopiedCount() {
+        return copied.get();
+    }
+    
+    /**
+     * @return The number of schemas not written, because destination was identical
+     */
+    public int getUnchangedCount() {
+        return unchanged.get();
+    }
+    
+    private void materialize(String sourceUri, File dest) throws IOException, URISyntaxException {
+        String hash = manifest.hashInput(sourceUri);
+        if(isIdentical(sourceUri, dest, hash)) {
+            unchanged.incrementAndGet();
+        } else {
+            copy(sourceUri, dest);
+            copied.incrementAndGet();
+        }
+        // so that destination deletion is detected
+        manifest.putOutput(dest, hash);
+    }
+    
+    private static boolean isIdentical(String sourceUri, File dest, String sourceHash) throws IOException {
+        if(!dest.isFile()) return false;
+        File source = UriUtils.toFile(sourceUri);
+        if(source!=null && source.length()!=dest.length()) return false;
+        return sourceHash.equals(Fingerprint.of(new FileInputStream(dest)));
+    }
+    
+    /**
+     * Copies to a temporary file, then moves it to destination, so that a partial 
+     * copy is never visible.
+     */
+    private static void copy(String sourceUri, File dest) throws IOException, URISyntaxException {
+        Path target = dest.toPath();
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, dest.getName(), ".tmp");
+        try {
+            File source = UriUtils.toFile(sourceUri);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if(source!=null) {
+                    try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+                        long size = in.size();
+                        long offset = 0;
+                        long transferred = -1;
+                        while(offset<size && transferred!=0) {
+                            transferred = in.transferTo(offset, size-offset, out);
+                            offset += transferred;
+                        }
+                    }
+                } else {
+                    InputStream is = new URI(sourceUri).toURL().openStream();
+                    try (ReadableByteChannel in = Channels.newChannel(is)) {
+                        long offset = 0;
+                        long read;
+                        while((read=out.transferFrom(in, offset, TRANSFER_SLICE))>0) {
+                            offset += read;
+                        }
+                    }
+                }
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch(IOException ex) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
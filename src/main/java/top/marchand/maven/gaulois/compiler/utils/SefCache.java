@@ -0,0 +1,230 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A content-addressed cache of compiled <tt>.sef</tt>, shared by all builds of a machine.
+ * An entry is keyed by a hash of everything compilation depends on : XSL closure, Saxon 
+ * version and options.
+ * <p>Entries are immutable : they are written to a temporary file, then atomically moved, 
+ * so that a reader never sees a partial entry, and builds running in parallel need no lock 
+ * to read or store. Only eviction is serialized, with a file lock. Reading an entry touches 
+ * it, and eviction removes least recently used entries first.</p>
+ * @author cmarchand
+ */
+public class SefCache {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    private static final String EXTENSION = ".sef";
+    private static final String LOCK_FILE = ".lock";
+    private static final String TMP_EXTENSION = ".tmp";
+    // a copy takes far less : older temporary files have been left by a killed build
+    private static final long STALE_TMP_MILLIS = 60L*60L*1000L;
+    // one monitor per cache directory, as a JVM can not hold two locks on the same file
+    private static final ConcurrentMap<String,Object> MONITORS = new ConcurrentHashMap<>();
+    
+    private final File directory;
+    private final long maxBytes;
+    private final Log log;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    
+    /**
+     * @param directory The cache directory, created if needed
+     * @param maxBytes The cache size above which entries are evicted
+     * @param log The log
+     */
+    public SefCache(File directory, long maxBytes, Log log) {
+        super();
+        this.directory = directory.getAbsoluteFile();
+        this.maxBytes = maxBytes;
+        this.log = log;
+    }
+    
+    private File getEntry(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key+EXTENSION);
+    }
+    
+    /**
+     * Copies a cached <tt>.sef</tt> to <tt>target</tt>
+     * @param key The entry key
+     * @param target The file to write
+     * @return <tt>true</tt> if entry was found and copied
+     */
+    public boolean fetch(String key, File target) {
+        File entry = getEntry(key);
+        if(entry.isFile()) {
+            try {
+                copy(entry.toPath(), target.toPath());
+                // least recently used entries are evicted first
+                entry.setLastModified(System.currentTimeMillis());
+                hits.incrementAndGet();
+                return true;
+            } catch(IOException ex) {
+                // entry may have been evicted meanwhile
+                if(log.isDebugEnabled()) log.debug(LOG_PREFIX+" unable to read "+entry+": "+ex.getMessage());
+            }
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+    
+    /**
+     * Stores a compiled <tt>.sef</tt>. Does nothing if entry already exists.
+     * @param key The entry key
+     * @param sef The compiled file
+     */
+    public void store(String key, File sef) {
+        File entry = getEntry(key);
+        if(entry.isFile() || !sef.isFile()) return;
+        try {
+            copy(sef.toPath(), entry.toPath());
+        } catch(IOException ex) {
+            log.debug(LOG_PREFIX+" unable to store "+sef+" in SEF cache: "+ex.getMessage());
+        }
+    }
+    
+    /**
+     * Removes least recently used entries, until cache size is under its maximum size
+     * @return The number of removed entries
+     */
+    public int evict() {
+        if(!directory.isDirectory()) return 0;
+        Object monitor = new Object();
+        Object previous = MONITORS.putIfAbsent(directory.getPath(), monitor);
+        if(previous!=null) monitor = previous;
+        synchronized(monitor) {
+            try (RandomAccessFile raf = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+                    FileChannel channel = raf.getChannel()) {
+                FileLock lock = channel.lock();
+                try {
+                    return doEvict();
+                } finally {
+                    lock.release();
+                }
+            } catch(IOException ex) {
+                log.warn(LOG_PREFIX+" unable to evict SEF cache entries: "+ex.getMessage());
+                return 0;
+            }
+        }
+    }
+    
+    private int doEvict() {
+        List<File> entries = new ArrayList<>();
+        long size = 0;
+        int staleFiles = 0;
+        long staleBefore = System.currentTimeMillis()-STALE_TMP_MILLIS;
+        File[] dirs = directory.listFiles();
+        if(dirs==null) return 0;
+        for(File dir: dirs) {
+            File[] files = dir.isDirectory() ? dir.listFiles() : null;
+            if(files==null) continue;
+            for(File file: files) {
+                if(file.getName().endsWith(EXTENSION)) {
+                    entries.add(file);
+                    size += file.length();
+                } else if(file.getName().endsWith(TMP_EXTENSION)) {
+                    long length = file.length();
+                    if(file.lastModified()<staleBefore && file.delete()) {
+                        staleFiles++;
+                    } else {
+                        // a copy in progress also takes space
+                        size += length;
+                    }
+                }
+            }
+        }
+        if(staleFiles>0 && log.isDebugEnabled()) log.debug(LOG_PREFIX+" "+staleFiles+" stale temporary files removed from SEF cache");
+        if(size<=maxBytes) return 0;
+        // lastModified may change while sorting
+        final Map<File,Long> lastUsed = new HashMap<>();
+        for(File file: entries) lastUsed.put(file, file.lastModified());
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(lastUsed.get(o1), lastUsed.get(o2));
+            }
+        });
+        int removed = 0;
+        for(File file: entries) {
+            if(size<=maxBytes) break;
+            long length = file.length();
+            if(file.delete()) {
+                size -= length;
+                removed++;
+            }
+        }
+        if(log.isDebugEnabled()) log.debug(LOG_PREFIX+" "+removed+" entries evicted from SEF cache");
+        return removed;
+    }
+    
+    /**
+     * Copies to a temporary file, then moves it to destination, so that a partial 
+     * copy is never visible.
+     */
+    private static void copy(Path source, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, target.getFileName().toString(), TMP_EXTENSION);
+        try {
+            Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch(IOException ex) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+    
+    public int getHits() {
+        return hits.get();
+    }
+    
+    public int getMisses() {
+        return misses.get();
+    }
+}
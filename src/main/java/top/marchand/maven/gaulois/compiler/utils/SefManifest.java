@@ -0,0 +1,161 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The list of compiled XSL a library publishes with its classes, so that projects 
+ * depending on it reuse them instead of compiling them again.
+ * <p>For each XSL, identified by its classpath path, manifest gives the path of the 
+ * compiled SEF, and a hash of the XSL closure : paths and contents of the XSL and all 
+ * the modules and schemas it depends on. A SEF is reused only if Saxon key and closure 
+ * hash are the same.</p>
+ * @author cmarchand
+ */
+public class SefManifest {
+    /**
+     * Path of manifest in classes directory, and in jar
+     */
+    public static final String PATH = "META-INF/gaulois-compiler/sef-manifest.properties";
+    private static final String KEY_SAXON = "saxon";
+    private static final String PREFIX_SEF = "sef.";
+    private static final String PREFIX_CLOSURE = "closure.";
+    
+    private final Properties props;
+    
+    /**
+     * @param saxonKey The key of Saxon version and options XSL are compiled with
+     */
+    public SefManifest(String saxonKey) {
+        super();
+        this.props = new Properties();
+        props.setProperty(KEY_SAXON, saxonKey);
+    }
+    
+    private SefManifest(Properties props) {
+        super();
+        this.props = props;
+    }
+    
+    /**
+     * Loads the manifest of a jar
+     * @param jarUri The jar URI, i.e. <tt>file:/.../lib.jar</tt>
+     * @return The manifest, or <tt>null</tt> if jar has no manifest
+     */
+    public static SefManifest load(String jarUri) {
+        Properties props = new Properties();
+        try (InputStream is = new URL("jar:"+jarUri+"!/"+PATH).openStream()) {
+            props.load(is);
+        } catch(IOException ex) {
+            return null;
+        }
+        return props.getProperty(KEY_SAXON)==null ? null : new SefManifest(props);
+    }
+    
+    /**
+     * Computes the hash of a XSL closure
+     * @param hashes Content hash of each module, by path relative to classpath root
+     * @return The closure hash
+     */
+    public static String closureHash(Map<String,String> hashes) {
+        Fingerprint fp = new Fingerprint();
+        for(Map.Entry<String,String> entry: new TreeMap<>(hashes).entrySet()) {
+            fp.add(entry.getKey()).add(entry.getValue());
+        }
+        return fp.toString();
+    }
+    
+    public String getSaxonKey() {
+        return props.getProperty(KEY_SAXON);
+    }
+    
+    /**
+     * Adds a compiled XSL
+     * @param path The XSL path, relative to classpath root
+     * @param sefPath The SEF path, relative to classpath root
+     * @param closureHash The XSL closure hash
+     */
+    public void put(String path, String sefPath, String closureHash) {
+        props.setProperty(PREFIX_SEF+path, sefPath);
+        props.setProperty(PREFIX_CLOSURE+path, closureHash);
+    }
+    
+    /**
+     * @param path The XSL path, relative to classpath root
+     * @return The SEF path, or <tt>null</tt> if XSL has not been published
+     */
+    public String getSef(String path) {
+        return props.getProperty(PREFIX_SEF+path);
+    }
+    
+    /**
+     * @param path The XSL path, relative to classpath root
+     * @return The closure hash, or <tt>null</tt> if XSL has not been published
+     */
+    public String getClosureHash(String path) {
+        return props.getProperty(PREFIX_CLOSURE+path);
+    }
+    
+    /**
+     * Writes the manifest to {@link #PATH} in a classes directory. Manifest is written 
+     * only if its content has changed, so that jar content does not change at each build.
+     * @param classesDirectory The classes directory
+     * @return <tt>true</tt> if manifest has been written
+     * @throws IOException If manifest can not be written
+     */
+    public boolean write(File classesDirectory) throws IOException {
+        File file = new File(classesDirectory, PATH);
+        StringWriter sw = new StringWriter();
+        // sorted, and without the date comment Properties.store writes
+        for(String key: new TreeSet<>(props.stringPropertyNames())) {
+            Properties single = new Properties();
+            single.setProperty(key, props.getProperty(key));
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            single.store(line, null);
+            String content = new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+            sw.write(content.substring(content.indexOf('\n')+1));
+        }
+        byte[] bytes = sw.toString().getBytes(StandardCharsets.ISO_8859_1);
+        if(file.isFile() && Arrays.equals(bytes, Files.readAllBytes(file.toPath()))) return false;
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), bytes);
+        return true;
+    }
+}
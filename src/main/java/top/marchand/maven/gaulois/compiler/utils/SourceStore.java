@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A bounded store of source contents, so that a XSL is read once from disk, and then 
+ * hashed, parsed and compiled from memory.
+ * <p>Contents are keyed by canonical URI, and checked against the last modification 
+ * time and length of their file, or of the jar they come from ; URIs that are neither 
+ * files nor jar entries are read each time. When the store is full, least recently used 
+ * contents are removed.</p>
+ * @author cmarchand
+ */
+public class SourceStore {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    
+    private final Log log;
+    private final StampedLruCache<byte[]> contents;
+    
+    /**
+     * @param maxBytes The maximal size of stored contents
+     * @param log The log
+     */
+    public SourceStore(long maxBytes, Log log) {
+        super();
+        this.log = log;
+        this.contents = new StampedLruCache<>(maxBytes);
+    }
+    
+    /**
+     * Opens a source content, from the store if it has not changed since it has been read
+     * @param uri The source URI
+     * @return The content. Closing it is not required, but allowed.
+     * @throws IOException If source can not be read
+     */
+    public InputStream openStream(String uri) throws IOException {
+        String key = UriUtils.canonicalize(uri);
+        StampedLruCache.Stamp stamp = StampedLruCache.getStamp(key);
+        if(stamp==null) {
+            return new URL(uri).openStream();
+        }
+        byte[] content = contents.get(key, stamp);
+        if(content==null) {
+            content = StampedLruCache.read(key);
+            contents.put(key, stamp, content, content.length);
+        }
+        return new ByteArrayInputStream(content);
+    }
+    
+    /**
+     * Returns a source that reads the stored content. If source can not be read, a stream 
+     * source on <tt>uri</tt> is returned, so that errors are reported by the consumer.
+     * @param uri The source URI
+     * @return The source, whose systemId is <tt>uri</tt>
+     */
+    public Source getSource(String uri) {
+        try {
+            return new StreamSource(openStream(uri), uri);
+        } catch(IOException | RuntimeException ex) {
+            log.debug(LOG_PREFIX+" unable to read "+uri+": "+ex.getMessage());
+            return new StreamSource(uri);
+        }
+    }
+    
+    public long getHits() {
+        return contents.getHits();
+    }
+    
+    public long getMisses() {
+        return contents.getMisses();
+    }
+    
+    /**
+     * @return The size of stored contents, in bytes
+     */
+    public long getSize() {
+        return contents.getSize();
+    }
+}
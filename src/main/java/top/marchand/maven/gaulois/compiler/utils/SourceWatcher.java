@@ -0,0 +1,174 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Watches source directories, and returns changed files by bursts : an editor that saves 
+ * many files, or saves a file in many steps, leads to one recompilation.
+ * <p>Directory trees are watched recursively ; directories created later are watched too. 
+ * A single file, like the catalog, is watched through its parent directory.</p>
+ * <p>When events are lost, or a directory is created, the directory itself is returned.</p>
+ * @author cmarchand
+ */
+public class SourceWatcher implements Closeable {
+    private static final String LOG_PREFIX = "[gaulois-compiler]";
+    private final WatchService watchService;
+    private final Log log;
+    // watched directory of each key
+    private final Map<WatchKey,Path> directories;
+    // keys of directories watched recursively
+    private final Set<WatchKey> trees;
+    // files watched alone, by parent directory key
+    private final Map<WatchKey,Set<Path>> files;
+    
+    public SourceWatcher(Log log) throws IOException {
+        super();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.log = log;
+        this.directories = new HashMap<>();
+        this.trees = new HashSet<>();
+        this.files = new HashMap<>();
+    }
+    
+    /**
+     * Watches a directory and all its sub-directories. Does nothing if directory does not exist.
+     * @param dir The directory
+     * @throws IOException If directory can not be watched
+     */
+    public void watchTree(Path dir) throws IOException {
+        if(!Files.isDirectory(dir)) return;
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                trees.add(register(d));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    /**
+     * Watches a single file. Does nothing if file's directory does not exist.
+     * @param file The file
+     * @throws IOException If file's directory can not be watched
+     */
+    public void watchFile(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path dir = absolute.getParent();
+        if(dir==null || !Files.isDirectory(dir)) return;
+        WatchKey key = register(dir);
+        Set<Path> watched = files.get(key);
+        if(watched==null) {
+            watched = new HashSet<>();
+            files.put(key, watched);
+        }
+        watched.add(absolute);
+    }
+    
+    private WatchKey register(Path dir) throws IOException {
+        Path absolute = dir.toAbsolutePath().normalize();
+        WatchKey key = absolute.register(watchService, 
+                StandardWatchEventKinds.ENTRY_CREATE, 
+                StandardWatchEventKinds.ENTRY_MODIFY, 
+                StandardWatchEventKinds.ENTRY_DELETE);
+        directories.put(key, absolute);
+        if(log.isDebugEnabled()) log.debug(LOG_PREFIX+" watching "+absolute);
+        return key;
+    }
+    
+    /**
+     * Waits for changes, then for <tt>quietMillis</tt> without any change, and returns 
+     * all changed paths.
+     * @param quietMillis The time without change that ends a burst
+     * @return The changed files, never empty
+     * @throws InterruptedException If interrupted while waiting
+     * @throws IOException If a new directory can not be watched
+     */
+    public Set<Path> take(long quietMillis) throws InterruptedException, IOException {
+        Set<Path> changed = new LinkedHashSet<>();
+        WatchKey key = watchService.take();
+        while(key!=null) {
+            collect(key, changed);
+            key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+            if(key==null && changed.isEmpty()) {
+                // only events on files that are not watched : wait for next ones
+                key = watchService.take();
+            }
+        }
+        return changed;
+    }
+    
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path dir = directories.get(key);
+        for(WatchEvent<?> event: key.pollEvents()) {
+            if(dir==null) continue;
+            if(event.kind()==StandardWatchEventKinds.OVERFLOW) {
+                changed.add(dir);
+                continue;
+            }
+            Path path = dir.resolve((Path)event.context());
+            if(trees.contains(key)) {
+                if(event.kind()==StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                    watchTree(path);
+                }
+                changed.add(path);
+            } else if(files.containsKey(key) && files.get(key).contains(path)) {
+                changed.add(path);
+            }
+        }
+        if(!key.reset()) {
+            // directory has been deleted
+            directories.remove(key);
+            trees.remove(key);
+            files.remove(key);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
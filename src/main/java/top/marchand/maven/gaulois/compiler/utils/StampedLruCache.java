@@ -0,0 +1,204 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of values computed from sources, shared by {@link SourceStore} 
+ * and {@link DocumentPool}.
+ * <p>Values are keyed by canonical URI, and checked against the last modification 
+ * time and length of their file, or of the jar they come from. Cache size is counted 
+ * in source bytes ; when it is full, least recently used values are removed. Thread-safe.</p>
+ * @param <V> The type of cached values
+ * @author cmarchand
+ */
+class StampedLruCache<V> {
+    private final long maxBytes;
+    private final LinkedHashMap<String,Entry<V>> entries;
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    
+    /**
+     * @param maxBytes The maximal size of cached values, in source bytes
+     */
+    StampedLruCache(long maxBytes) {
+        super();
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true);
+    }
+    
+    /**
+     * Returns a cached value, if its source has not changed since it has been cached. 
+     * A miss is counted otherwise.
+     * @param key The canonical source URI
+     * @param stamp The source stamp, from {@link #getStamp(java.io.File) }
+     * @return The value, or <tt>null</tt>
+     */
+    V get(String key, Stamp stamp) {
+        synchronized(entries) {
+            Entry<V> entry = entries.get(key);
+            if(entry!=null && entry.stamp.equals(stamp)) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+    
+    /**
+     * Caches a value, if it is not larger than the cache
+     * @param key The canonical source URI
+     * @param stamp The source stamp, taken before source has been read
+     * @param value The value
+     * @param size The source size, in bytes
+     */
+    void put(String key, Stamp stamp, V value, long size) {
+        if(size>maxBytes) return;
+        synchronized(entries) {
+            Entry<V> previous = entries.put(key, new Entry<>(value, stamp, size));
+            if(previous!=null) bytes -= previous.size;
+            bytes += size;
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while(bytes>maxBytes && it.hasNext()) {
+                bytes -= it.next().size;
+                it.remove();
+            }
+        }
+    }
+    
+    long getHits() {
+        return hits.get();
+    }
+    
+    long getMisses() {
+        return misses.get();
+    }
+    
+    /**
+     * @return The size of cached values, in source bytes
+     */
+    long getSize() {
+        synchronized(entries) {
+            return bytes;
+        }
+    }
+    
+    /**
+     * Returns the stamp that tells if a source has changed
+     * @param uri The canonical source URI
+     * @return The stamp of the source file, or of the jar file, or <tt>null</tt> if source 
+     * is neither a file nor a jar entry
+     */
+    static Stamp getStamp(String uri) {
+        int sep = uri.indexOf("!");
+        File file = uri.startsWith("jar:") && sep>0 ? UriUtils.toFile(uri.substring(4, sep)) : UriUtils.toFile(uri);
+        return file==null ? null : new Stamp(file.lastModified(), file.length());
+    }
+    
+    /**
+     * Reads a source content
+     * @param uri The source URI
+     * @return The content
+     * @throws IOException If source can not be read
+     */
+    static byte[] read(String uri) throws IOException {
+        File file = UriUtils.toFile(uri);
+        if(file!=null) {
+            // one open, one read : the file length is known
+            return Files.readAllBytes(file.toPath());
+        }
+        try (InputStream is = new URL(uri).openStream()) {
+            return read(is);
+        }
+    }
+    
+    /**
+     * Reads a stream to its end
+     * @param is The stream to read ; it is not closed
+     * @return The content
+     * @throws IOException If stream can not be read
+     */
+    static byte[] read(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while((read=is.read(buffer))>0) {
+            os.write(buffer, 0, read);
+        }
+        return os.toByteArray();
+    }
+    
+    /**
+     * Last modification time and length of a source file
+     */
+    static final class Stamp {
+        private final long lastModified;
+        private final long length;
+        
+        private Stamp(long lastModified, long length) {
+            super();
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Stamp)) return false;
+            Stamp other = (Stamp)o;
+            return lastModified==other.lastModified && length==other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int)(lastModified ^ (lastModified >>> 32) ^ length);
+        }
+    }
+    
+    private static class Entry<V> {
+        private final V value;
+        private final Stamp stamp;
+        private final long size;
+        
+        private Entry(V value, Stamp stamp, long size) {
+            super();
+            this.value = value;
+            this.stamp = stamp;
+            this.size = size;
+        }
+    }
+}
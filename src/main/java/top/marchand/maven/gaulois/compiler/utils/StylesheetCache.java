@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltExecutable;
+
+/**
+ * A cache of the stylesheets the plugin uses internally (xut dependency scanner, 
+ * schema filter, gaulois compiler, post-compiler), shared by all modules and executions
+ * of a Maven session.
+ * <p>A {@link XsltExecutable} can only be used with the {@link net.sf.saxon.Configuration} 
+ * it has been compiled with. So, for each Saxon key (Saxon version, <tt>SaxonOptions</tt>, catalog), 
+ * the processor of the first execution is kept, and all stylesheets of this key are compiled 
+ * with a compiler of this processor. Only the processor is shared : each execution compiles 
+ * with its own URI resolver, as <tt>cp:/</tt> URIs resolve against its own classpath. 
+ * Callers must then give {@link javax.xml.transform.Source}s, and not nodes, to 
+ * transformers built from cached executables.</p>
+ * <p>The plugin classloader is kept by Maven between modules ; a new cache is created when a
+ * new session starts. Modules built in parallel (<tt>-T</tt>) share the cache without 
+ * locking it.</p>
+ * @author cmarchand
+ */
+public class StylesheetCache {
+    private static final AtomicReference<StylesheetCache> INSTANCE = new AtomicReference<>();
+    
+    private final ConcurrentMap<String,Processor> processors;
+    private final ConcurrentMap<String,FutureTask<XsltExecutable>> executables;
+    private final Object sessionId;
+    
+    private StylesheetCache(Object sessionId) {
+        super();
+        this.sessionId = sessionId;
+        processors = new ConcurrentHashMap<>();
+        executables = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Returns the cache of current Maven session
+     * @param sessionId An object that identifies the Maven session, as its start time
+     * @return The cache
+     */
+    public static StylesheetCache getInstance(Object sessionId) {
+        while(true) {
+            StylesheetCache current = INSTANCE.get();
+            if(current!=null && current.sessionId!=null && current.sessionId.equals(sessionId)) return current;
+            StylesheetCache created = new StylesheetCache(sessionId);
+            // executions of a previous session keep the cache they already got
+            if(INSTANCE.compareAndSet(current, created)) return created;
+        }
+    }
+    
+    /**
+     * Returns the processor to use for this Saxon key. If none is registered yet, 
+     * <tt>processor</tt> is registered.
+     * @param saxonKey The Saxon key
+     * @param processor The processor of current execution
+     * @return The processor shared by all executions with the same Saxon key
+     */
+    public Processor getProcessor(String saxonKey, Processor processor) {
+        Processor previous = processors.putIfAbsent(saxonKey, processor);
+        return previous==null ? processor : previous;
+    }
+    
+    /**
+     * Returns the compiled stylesheet. If it is not in cache, it is compiled ; if another 
+     * thread is already compiling it, waits for this compilation.
+     * @param saxonKey The Saxon key
+     * @param resourceKey The stylesheet identity : its URI, and its content hash if it may change
+     * @param compilation The compilation to run on cache miss. It should use the 
+     * processor returned by {@link #getProcessor(java.lang.String, net.sf.saxon.s9api.Processor) }
+     * @return The compiled stylesheet
+     * @throws SaxonApiException If compilation fails. A failed compilation is not cached.
+     */
+    public XsltExecutable get(String saxonKey, String resourceKey, Callable<XsltExecutable> compilation) throws SaxonApiException {
+        String key = saxonKey+"|"+resourceKey;
+        FutureTask<XsltExecutable> task = new FutureTask<>(compilation);
+        FutureTask<XsltExecutable> previous = executables.putIfAbsent(key, task);
+        if(previous==null) {
+            task.run();
+        } else {
+            task = previous;
+        }
+        try {
+            return task.get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SaxonApiException(ex);
+        } catch(ExecutionException ex) {
+            executables.remove(key, task);
+            Throwable cause = ex.getCause();
+            if(cause instanceof SaxonApiException) throw (SaxonApiException)cause;
+            throw new SaxonApiException(cause);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A table of interned URIs. Each URI is stored once, and identified by an <tt>int</tt>, 
+ * so that a dependency model references URIs with ids, and not with repeated strings.
+ * <p>Ids are given in interning order, starting from 0. A table is thread-safe.</p>
+ * @author cmarchand
+ */
+public class UriTable {
+    /**
+     * Id of <tt>null</tt>
+     */
+    public static final int NONE = -1;
+    
+    private final ConcurrentMap<String,Integer> ids;
+    private volatile String[] uris;
+    private int size;
+    
+    public UriTable() {
+        super();
+        this.ids = new ConcurrentHashMap<>();
+        this.uris = new String[256];
+    }
+    
+    /**
+     * Returns the id of a URI, adding it to the table if needed
+     * @param uri The URI. May be <tt>null</tt>
+     * @return The URI id, or {@link #NONE} if <tt>uri</tt> is <tt>null</tt>
+     */
+    public int intern(String uri) {
+        if(uri==null) return NONE;
+        Integer id = ids.get(uri);
+        if(id!=null) return id;
+        synchronized(this) {
+            id = ids.get(uri);
+            if(id!=null) return id;
+            if(size==uris.length) uris = Arrays.copyOf(uris, size*2);
+            uris[size] = uri;
+            ids.put(uri, size);
+            return size++;
+        }
+    }
+    
+    /**
+     * Returns the shared instance of a URI, so that equal URIs held by different 
+     * objects are stored once.
+     * @param uri The URI. May be <tt>null</tt>
+     * @return The shared instance
+     */
+    public String canonical(String uri) {
+        return get(intern(uri));
+    }
+    
+    /**
+     * @param id An id returned by {@link #intern(java.lang.String) }
+     * @return The URI, or <tt>null</tt> if <tt>id</tt> is {@link #NONE}
+     */
+    public String get(int id) {
+        if(id==NONE) return null;
+        String[] current = uris;
+        if(id<current.length && current[id]!=null) return current[id];
+        // array may have been grown after id was given
+        synchronized(this) {
+            return uris[id];
+        }
+    }
+    
+    /**
+     * @return The number of URIs in table
+     */
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Static methods to work with URIs, including <tt>jar:</tt> ones, which can not
+ * be resolved by {@link java.net.URI#resolve(java.lang.String)}.
+ * @author cmarchand
+ */
+public class UriUtils {
+    
+    private UriUtils() {
+        super();
+    }
+    
+    /**
+     * Resolves <tt>href</tt> against <tt>base</tt>.
+     * @param base The base URI, may be a <tt>jar:file:/...!/entry</tt> URI
+     * @param href The relative or absolute URI to resolve
+     * @return The absolute URI
+     * @throws URISyntaxException If one of the URI is not valid
+     */
+    public static String resolve(String base, String href) throws URISyntaxException {
+        URI hrefUri = new URI(href.replaceAll("\\\\", "/"));
+        if(hrefUri.isAbsolute() || base==null) return hrefUri.toString();
+        int sep = base.indexOf("!");
+        if(base.startsWith("jar:") && sep>0) {
+            String entry = base.substring(sep+1);
+            URI resolved = new URI(entry).resolve(hrefUri);
+            return base.substring(0, sep+1).concat(resolved.toString());
+        }
+        return new URI(base).resolve(hrefUri).toString();
+    }
+    
+    /**
+     * Returns the file denoted by <tt>uri</tt>, if it is a <tt>file:</tt> URI
+     * @param uri The URI
+     * @return The file, or <tt>null</tt> if <tt>uri</tt> is not a file URI
+     */
+    public static File toFile(String uri) {
+        if(uri==null || !uri.startsWith("file:")) return null;
+        try {
+            return new File(new URI(uri));
+        } catch(URISyntaxException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Returns the jar file a <tt>jar:file:/...!/entry</tt> URI points into
+     * @param uri The URI
+     * @return The jar file, or <tt>null</tt> if <tt>uri</tt> is not an entry of a local jar
+     */
+    public static File toJarFile(String uri) {
+        int sep = uri==null ? -1 : uri.indexOf("!");
+        if(sep<0 || !uri.startsWith("jar:")) return null;
+        return toFile(uri.substring(4, sep));
+    }
+    
+    /**
+     * Returns the entry name a <tt>jar:</tt> URI points to, as in {@link java.util.zip.ZipFile#getEntry(java.lang.String) }
+     * @param uri The URI
+     * @return The entry name, without leading <tt>/</tt>, or <tt>null</tt> if <tt>uri</tt> is not a <tt>jar:</tt> URI
+     */
+    public static String toJarEntry(String uri) {
+        int sep = uri==null ? -1 : uri.indexOf("!");
+        if(sep<0 || !uri.startsWith("jar:")) return null;
+        String entry;
+        try {
+            entry = new URI(uri.substring(sep+1)).getPath();
+        } catch(URISyntaxException ex) {
+            entry = uri.substring(sep+1);
+        }
+        return entry.startsWith("/") ? entry.substring(1) : entry;
+    }
+    
+    /**
+     * Returns a canonical form of <tt>uri</tt>, so that a same resource reached thru 
+     * different URIs has a single identity : files are replaced by their canonical path, 
+     * <tt>jar:</tt> URIs by the canonical jar file and the normalized entry path.
+     * @param uri The URI
+     * @return The canonical URI, or <tt>uri</tt> itself if it can not be canonicalized
+     */
+    public static String canonicalize(String uri) {
+        if(uri==null) return null;
+        int sep = uri.indexOf("!");
+        if(uri.startsWith("jar:") && sep>0) {
+            try {
+                String entry = new URI(uri.substring(sep+1)).normalize().toString();
+                return "jar:".concat(canonicalize(uri.substring(4, sep))).concat("!").concat(entry);
+            } catch(URISyntaxException ex) {
+                return uri;
+            }
+        }
+        File file = toFile(uri);
+        if(file!=null) {
+            try {
+                return file.getCanonicalFile().toURI().toString();
+            } catch(IOException ex) {
+                return file.getAbsoluteFile().toURI().toString();
+            }
+        }
+        try {
+            return new URI(uri).normalize().toString();
+        } catch(URISyntaxException ex) {
+            return uri;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+
+/**
+ * Compiles XSL to SEF files on a bounded pool of worker threads.
+ * <p>All workers share the same {@link net.sf.saxon.s9api.Processor}, but each one has 
+ * its own {@link XsltCompiler}, configured as the model compiler. Errors and warnings are
+ * collected per XSL, and returned in the order XSL have been submitted, so that they can 
+ * be logged in a deterministic order.</p>
+ * @author cmarchand
+ */
+public class XslCompilerPool {
+    private final XsltCompiler model;
+    private final int threads;
+    private final DocumentPool documents;
+    
+    /**
+     * @param model The compiler whose configuration is copied to each worker
+     * @param threads The number of worker threads. If lower than 1, the number of available processors is used
+     */
+    public XslCompilerPool(XsltCompiler model, int threads) {
+        this(model, threads, null);
+    }
+    
+    /**
+     * @param model The compiler whose configuration is copied to each worker
+     * @param threads The number of worker threads. If lower than 1, the number of available processors is used
+     * @param documents The pool XSL and included modules are read from. May be <tt>null</tt>. 
+     * It must have been built with the <tt>model</tt> processor.
+     */
+    public XslCompilerPool(XsltCompiler model, int threads, DocumentPool documents) {
+        super();
+        this.model = model;
+        this.threads = threads<1 ? Runtime.getRuntime().availableProcessors() : threads;
+        this.documents = documents;
+    }
+    
+    public int getThreads() {
+        return threads;
+    }
+    
+    /**
+     * Compiles all XSL to their target file.
+     * @param xsls The XSL to compile
+     * @return The compilation results, in the same order than <tt>xsls</tt>
+     * @throws InterruptedException If compilation has been interrupted
+     */
+    public List<CompileResult> compile(List<GauloisXsl> xsls) throws InterruptedException {
+        return compile(xsls, null);
+    }
+    
+    /**
+     * Compiles all XSL to their target file. XSL are started in list order, so that longest 
+     * ones should come first.
+     * @param xsls The XSL to compile
+     * @param listener Notified, from worker threads, as soon as each XSL is compiled. May be <tt>null</tt>
+     * @return The compilation results, in the same order than <tt>xsls</tt>
+     * @throws InterruptedException If compilation has been interrupted
+     */
+    public List<CompileResult> compile(List<GauloisXsl> xsls, final CompileListener listener) throws InterruptedException {
+        if(xsls.isEmpty()) return Collections.emptyList();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, xsls.size()), new WorkerThreadFactory("gaulois-compiler"));
+        final ThreadLocal<XsltCompiler> compilers = new ThreadLocal<XsltCompiler>() {
+            @Override
+            protected XsltCompiler initialValue() {
+                XsltCompiler compiler = newCompiler(model);
+                if(documents!=null) compiler.setURIResolver(documents.asResolver(model.getURIResolver()));
+                return compiler;
+            }
+        };
+        try {
+            List<Future<CompileResult>> futures = new ArrayList<>(xsls.size());
+            for(final GauloisXsl xsl: xsls) {
+                futures.add(executor.submit(new Callable<CompileResult>() {
+                    @Override
+                    public CompileResult call() {
+                        CompileResult result = compile(compilers.get(), xsl, documents);
+                        if(listener!=null) listener.compiled(result);
+                        return result;
+                    }
+                }));
+            }
+            List<CompileResult> ret = new ArrayList<>(xsls.size());
+            for(Future<CompileResult> future: futures) {
+                try {
+                    ret.add(future.get());
+                } catch(ExecutionException ex) {
+                    // compile(...) catches everything, it can only be an Error
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+            return ret;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Compiles a XSL to its target file, with the given compiler
+     * @param compiler The compiler to use. Its error listener is replaced.
+     * @param xsl The XSL to compile
+     * @return The compilation result
+     */
+    public static CompileResult compile(XsltCompiler compiler, GauloisXsl xsl) {
+        return compile(compiler, xsl, null);
+    }
+    
+    /**
+     * Compiles a XSL to its target file, with the given compiler
+     * @param compiler The compiler to use. Its error listener is replaced.
+     * @param xsl The XSL to compile
+     * @param documents The pool XSL is read from. May be <tt>null</tt>
+     * @return The compilation result
+     */
+    public static CompileResult compile(XsltCompiler compiler, GauloisXsl xsl, DocumentPool documents) {
+        CompileResult result = new CompileResult(xsl);
+        compiler.setErrorListener(result);
+        long start = System.nanoTime();
+        try {
+            XsltExecutable exec = compiler.compile(documents==null ? 
+                    new StreamSource(xsl.getXslSystemId()) : 
+                    documents.getSource(xsl.getXslSystemId()));
+            File targetFile = xsl.getTargetFile();
+            targetFile.getParentFile().mkdirs();
+            try(OutputStream os = new FileOutputStream(targetFile)) {
+                exec.export(os);
+            }
+        } catch(SaxonApiException | IOException | RuntimeException ex) {
+            result.exception = ex;
+        }
+        result.durationNanos = System.nanoTime()-start;
+        return result;
+    }
+    
+    /**
+     * Creates a new compiler, with the same configuration than <tt>model</tt>
+     * @param model The compiler to copy
+     * @return A new compiler, from the same processor
+     */
+    public static XsltCompiler newCompiler(XsltCompiler model) {
+        return newCompiler(model.getProcessor(), model);
+    }
+    
+    /**
+     * Creates a new compiler of <tt>processor</tt>, with the same configuration than <tt>model</tt>
+     * @param processor The processor to create compiler from
+     * @param model The compiler to copy, URI resolver included
+     * @return A new compiler
+     */
+    public static XsltCompiler newCompiler(Processor processor, XsltCompiler model) {
+        XsltCompiler compiler = processor.newXsltCompiler();
+        compiler.setURIResolver(model.getURIResolver());
+        compiler.setSchemaAware(model.isSchemaAware());
+        compiler.setAssertionsEnabled(model.isAssertionsEnabled());
+        compiler.setCompileWithTracing(model.isCompileWithTracing());
+        compiler.setGenerateByteCode(model.isGenerateByteCode());
+        compiler.setRelocatable(model.isRelocatable());
+        compiler.setJustInTimeCompilation(model.isJustInTimeCompilation());
+        if(model.getTargetEdition()!=null) compiler.setTargetEdition(model.getTargetEdition());
+        if(model.getDefaultCollation()!=null) compiler.declareDefaultCollation(model.getDefaultCollation());
+        return compiler;
+    }
+    
+    /**
+     * Notified when a XSL has been compiled
+     */
+    public interface CompileListener {
+        /**
+         * Called when a XSL has been compiled, successfully or not. May be called 
+         * concurrently, from many threads.
+         * @param result The compilation result
+         */
+        void compiled(CompileResult result);
+    }
+    
+    /**
+     * The result of a XSL compilation, with all messages Saxon has emitted
+     */
+    public static class CompileResult implements ErrorListener {
+        private final GauloisXsl xsl;
+        private final List<String> warnings;
+        private final List<String> errors;
+        private Exception exception;
+        private long durationNanos;
+        
+        CompileResult(GauloisXsl xsl) {
+            super();
+            this.xsl = xsl;
+            warnings = new ArrayList<>();
+            errors = new ArrayList<>();
+        }
+
+        public GauloisXsl getXsl() {
+            return xsl;
+        }
+
+        public List<String> getWarnings() {
+            return warnings;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * The exception that made compilation fail
+         * @return The exception, or <tt>null</tt> if compilation succeeded
+         */
+        public Exception getException() {
+            return exception;
+        }
+        
+        public boolean isSuccess() {
+            return exception==null;
+        }
+        
+        void setException(Exception exception) {
+            this.exception = exception;
+        }
+        
+        void setDurationNanos(long durationNanos) {
+            this.durationNanos = durationNanos;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        @Override
+        public void warning(TransformerException exception) {
+            warnings.add(exception.getMessageAndLocation());
+        }
+
+        @Override
+        public void error(TransformerException exception) {
+            errors.add(exception.getMessageAndLocation());
+        }
+
+        @Override
+        public void fatalError(TransformerException exception) {
+            errors.add(exception.getMessageAndLocation());
+        }
+    }
+}
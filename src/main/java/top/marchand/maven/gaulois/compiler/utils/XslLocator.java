@@ -0,0 +1,189 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Locates the XSL referenced by <tt>gc:xslt/@href</tt>, and computes the file it 
+ * must be compiled to. An href is located only once per execution, whatever the number
+ * of configs that reference it.
+ * 
+ * <p><tt>cp:/</tt> hrefs are searched in XSL source directories, then thru the catalog, 
+ * then in classpath. Other hrefs are resolved thru the catalog.</p>
+ * 
+ * @author cmarchand
+ */
+public class XslLocator {
+    private final List<File> xslDirectories;
+    private final File outputDirectory;
+    private final URIResolver resolver;
+    private final ClasspathIndex classpathIndex;
+    private final Log log;
+    private final ConcurrentMap<String,Location> locations;
+    
+    public XslLocator(List<File> xslDirectories, File outputDirectory, URIResolver resolver, ClasspathIndex classpathIndex, Log log) {
+        super();
+        this.xslDirectories = xslDirectories;
+        this.outputDirectory = outputDirectory;
+        this.resolver = resolver;
+        this.classpathIndex = classpathIndex;
+        this.log = log;
+        this.locations = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Locates a XSL. Thread-safe.
+     * @param href The href, as written in gaulois config
+     * @return The location, never <tt>null</tt>
+     */
+    public Location locate(String href) {
+        Location location = locations.get(href);
+        if(location==null) {
+            location = doLocate(href);
+            Location previous = locations.putIfAbsent(href, location);
+            if(previous!=null) location = previous;
+        }
+        return location;
+    }
+    
+    private Location doLocate(String href) {
+        if(!href.startsWith("cp:/")) {
+            try {
+                Source source = resolver.resolve(href, "");
+                log.debug("source is a "+source.getClass().getName());
+                return new Location(href, source.getSystemId(), getTargetFile(source.getSystemId()), false);
+            } catch(TransformerException | NullPointerException ex) {
+                return new Location(href, null, null, true);
+            }
+        }
+        String path = href.substring(4);
+        log.debug("searching for xsl "+path);
+        for(File dir:xslDirectories) {
+            File xsl = new File(dir, path);
+            if(xsl.exists() && xsl.isFile()) {
+                log.debug("\tfound at "+xsl.getAbsolutePath());
+                String shortPath = FilenameUtils.getPath(path);
+                String baseName = FilenameUtils.getBaseName(path);
+                String targetPath = shortPath.concat(baseName).concat(".sef");
+                return new Location(href, xsl.toURI().toString(), new File(outputDirectory, targetPath), false);
+            }
+        }
+        boolean invalid = false;
+        // could it be referenced from catalog ?
+        try {
+            Source source = resolver.resolve(href, "");
+            if(source!=null) {
+                log.debug("source is a "+source.getClass().getName());
+                return new Location(href, source.getSystemId(), getTargetFile(source.getSystemId()), false);
+            }
+        } catch(TransformerException | NullPointerException ex) {
+            invalid = true;
+        }
+        // search thru classpath
+        log.debug("searching for "+href+" in classpath");
+        String systemId = classpathIndex.lookup(href.substring(3));
+        if(systemId!=null) {
+            log.debug("systemId="+systemId);
+            return new Location(href, systemId, getTargetFile(systemId), invalid);
+        }
+        log.warn(href+" could not be found ! It won't be compiled");
+        return new Location(href, null, null, invalid);
+    }
+    
+    private File getTargetFile(String systemId) {
+        String xslPath = systemId.contains("!") ? systemId.substring(systemId.indexOf("!")+1) : systemId;
+        String shortPath = FilenameUtils.getPath(xslPath);
+        String baseName = FilenameUtils.getBaseName(xslPath);
+        String targetPath = shortPath.concat(baseName).concat(".sef");
+        if(log.isDebugEnabled()) {
+            log.debug("xslPath="+xslPath);
+            log.debug("shortPath="+shortPath);
+            log.debug("baseName="+baseName);
+            log.debug("targetPath="+targetPath);
+        }
+        return new File(outputDirectory, targetPath);
+    }
+    
+    /**
+     * Where a XSL has been found
+     */
+    public static class Location {
+        private final String href;
+        private final String systemId;
+        private final String canonicalSystemId;
+        private final File targetFile;
+        private final boolean invalid;
+        
+        Location(String href, String systemId, File targetFile, boolean invalid) {
+            super();
+            this.href = href;
+            this.systemId = systemId;
+            this.canonicalSystemId = UriUtils.canonicalize(systemId);
+            this.targetFile = targetFile;
+            this.invalid = invalid;
+        }
+
+        public String getHref() {
+            return href;
+        }
+
+        /**
+         * @return The XSL systemId, or <tt>null</tt> if it has not been found
+         */
+        public String getSystemId() {
+            return systemId;
+        }
+
+        /**
+         * @return The XSL identity : the same for all hrefs that lead to the same file 
+         * or jar entry
+         */
+        public String getCanonicalSystemId() {
+            return canonicalSystemId;
+        }
+
+        public File getTargetFile() {
+            return targetFile;
+        }
+        
+        /**
+         * @return <tt>true</tt> if href could not be resolved thru the catalog
+         */
+        public boolean isInvalid() {
+            return invalid;
+        }
+    }
+}
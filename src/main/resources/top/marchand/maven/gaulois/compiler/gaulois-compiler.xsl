@@ -18,12 +18,34 @@
     </xd:desc>
   </xd:doc>
   
-  <xsl:output saxon:indent-spaces="2" indent="yes"/>
+  <!-- saxon:indent-spaces is not available in Saxon-HE -->
+  <xsl:output saxon:indent-spaces="2" indent="yes" use-when="not(starts-with(system-property('xsl:product-version'), 'HE'))"/>
+  <xsl:output indent="yes" use-when="starts-with(system-property('xsl:product-version'), 'HE')"/>
   
   
   <xsl:param name="schemas" as="xs:string*"/>
   <xsl:param name="xslMap" as="map(xs:string,xs:string)" required="true"/>
   <xsl:param name="targetPath" as="xs:string" required="true"/>
+  <xsl:param name="batchConfigs" as="map(xs:string, document-node())" select="map{}"/>
+  <xsl:param name="batchSchemas" as="map(xs:string, xs:string*)" select="map{}"/>
+  
+  <xd:doc>
+    <xd:desc>
+      <xd:p>Batch mode : compiles all configs of <xd:i>batchConfigs</xd:i>, each one to 
+        the URI it is associated with, with the schemas associated with the same URI in 
+        <xd:i>batchSchemas</xd:i>.</xd:p>
+    </xd:desc>
+  </xd:doc>
+  <xsl:template name="local:compile-batch">
+    <xsl:for-each select="map:keys($batchConfigs)">
+      <xsl:variable name="targetUri" select="." as="xs:string"/>
+      <xsl:result-document href="{$targetUri}">
+        <xsl:apply-templates select="$batchConfigs($targetUri)">
+          <xsl:with-param name="configSchemas" select="$batchSchemas($targetUri)" tunnel="yes"/>
+        </xsl:apply-templates>
+      </xsl:result-document>
+    </xsl:for-each>
+  </xsl:template>
   
   <xd:doc>
     <xd:desc>Une simple recopie</xd:desc>
@@ -38,16 +60,17 @@
     <xd:desc>Overwrited to put schemas declaration in</xd:desc>
   </xd:doc>
   <xsl:template match="gc:config">
-    <xsl:message>schemas: {$schemas}</xsl:message>
+    <xsl:param name="configSchemas" as="xs:string*" select="$schemas" tunnel="yes"/>
+    <xsl:message>schemas: {$configSchemas}</xsl:message>
     <xsl:message>xslMap: 
 {for $key in map:keys($xslMap) return concat(' ',$key, ' -> ', map:get($xslMap, $key), '
 ')}</xsl:message>
     <xsl:message>targetPath: {$targetPath}</xsl:message>
     <xsl:copy>
       <xsl:apply-templates select="gc:namespaces"/>
-      <xsl:if test="not(empty($schemas))">
+      <xsl:if test="not(empty($configSchemas))">
         <grammars xmlns="http://efl.fr/chaine/saxon-pipe/config">
-          <xsl:for-each select="$schemas">
+          <xsl:for-each select="$configSchemas">
             <schema xmlns="http://efl.fr/chaine/saxon-pipe/config" href="{.}"/>
           </xsl:for-each>
         </grammars>
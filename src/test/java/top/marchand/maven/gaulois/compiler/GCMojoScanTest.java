@@ -0,0 +1,163 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.saxon.s9api.SaxonApiException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import top.marchand.maven.gaulois.compiler.utils.GauloisConfigScanner;
+import top.marchand.maven.gaulois.compiler.utils.GauloisSet;
+import top.marchand.maven.gaulois.compiler.utils.GauloisXsl;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class GCMojoScanTest {
+    private static final int CONFIGS = 24;
+    private static final String[] XSLS = { "a.xsl", "b.xsl", "c.xsl" };
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testConcurrentScan() throws Exception {
+        File xslDir = folder.newFolder("xsl");
+        for(String xsl: XSLS) {
+            write(new File(xslDir, xsl), "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='2.0'/>");
+        }
+        File configDir = folder.newFolder("configs");
+        File classes = folder.newFolder("classes");
+        final List<GCMojo.GauloisConfigEntry> entries = new ArrayList<>();
+        for(int i=0; i<CONFIGS; i++) {
+            // all configs share the same XSL, in different orders
+            StringBuilder pipe = new StringBuilder();
+            for(int j=0; j<XSLS.length; j++) {
+                pipe.append("<xslt href='cp:/").append(XSLS[(i+j)%XSLS.length]).append("'/>");
+            }
+            File config = new File(configDir, "config"+i+".xml");
+            write(config, "<config xmlns='"+GauloisConfigScanner.GAULOIS_NS+"'><pipe>"+pipe+"</pipe></config>");
+            entries.add(new GCMojo.GauloisConfigEntry(config, new File(classes, config.getName())));
+        }
+        
+        ConcurrentMap<String,AtomicInteger> schemaScans = new ConcurrentHashMap<>();
+        GCMojo first = newMojo(entries, xslDir, classes, schemaScans);
+        Assert.assertFalse(first.scanSources());
+        Assert.assertEquals(XSLS.length, schemaScans.size());
+        for(AtomicInteger count: schemaScans.values()) {
+            // each XSL is scanned by the first config that finds it, whatever the others do
+            Assert.assertEquals(1, count.get());
+        }
+        Assert.assertEquals(CONFIGS, first.getGauloisSets().size());
+        
+        // configs are ordered by systemId, XSL by systemId, whatever thread has scanned them
+        String listing = describe(first);
+        List<String> expected = new ArrayList<>();
+        for(GauloisSet gs: first.getGauloisSets()) expected.add(gs.getGauloisConfigSystemId());
+        List<String> sorted = new ArrayList<>(expected);
+        Collections.sort(sorted);
+        Assert.assertEquals(sorted, expected);
+        for(int i=0; i<3; i++) {
+            Collections.reverse(entries);
+            GCMojo other = newMojo(entries, xslDir, classes, new ConcurrentHashMap<String,AtomicInteger>());
+            Assert.assertFalse(other.scanSources());
+            Assert.assertEquals(listing, describe(other));
+        }
+    }
+    
+    private GCMojo newMojo(final List<GCMojo.GauloisConfigEntry> entries, File xslDir, File classes, final ConcurrentMap<String,AtomicInteger> schemaScans) throws ReflectiveOperationException {
+        GCMojo mojo = new GCMojo() {
+            @Override
+            List<GauloisConfigEntry> listGauloisConfigs() {
+                return entries;
+            }
+            @Override
+            protected void scanForSchemas(GauloisXsl xsl) throws SaxonApiException, URISyntaxException, IOException {
+                AtomicInteger count = schemaScans.putIfAbsent(xsl.getXslSystemId(), new AtomicInteger(1));
+                if(count!=null) count.incrementAndGet();
+                try {
+                    // let other configs reach the same XSL meanwhile
+                    Thread.sleep(20);
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                super.scanForSchemas(xsl);
+            }
+        };
+        mojo.gauloisPipeFilesets = Collections.emptyList();
+        mojo.xslSourceDirs = new ArrayList<>(Arrays.asList(xslDir));
+        set(mojo, "project", new MavenProject() {
+            @Override
+            public List<String> getCompileClasspathElements() {
+                return Collections.emptyList();
+            }
+        });
+        set(mojo, "classesDirectory", classes);
+        set(mojo, "schemasDestination", new File(classes, "gc/schemas"));
+        set(mojo, "projectBaseDir", folder.getRoot());
+        set(mojo, "scanThreads", 4);
+        // scan does not need catalog resolution
+        set(mojo, "saxonInitialized", true);
+        return mojo;
+    }
+    
+    private static String describe(GCMojo mojo) {
+        StringBuilder sb = new StringBuilder();
+        for(GauloisSet gs: mojo.getGauloisSets()) {
+            sb.append(gs.getGauloisConfigSystemId()).append(':');
+            for(GauloisXsl gx: gs.getXsls()) sb.append(' ').append(gx.getXslSystemId());
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+    
+    private static void set(Object o, String name, Object value) throws ReflectiveOperationException {
+        Field field = GCMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(o, value);
+    }
+    
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class BuildManifestTest {
+    private static final Log LOG = new SystemStreamLog();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testUpToDate() throws IOException {
+        File input = TestFiles.write(folder, "input.xsl", "<xsl:stylesheet/>");
+        File output = TestFiles.write(folder, "output.sef", "compiled");
+        File manifestFile = new File(folder.getRoot(), "fingerprints.properties");
+        List<String> configs = Arrays.asList("file:/config.xml");
+        
+        BuildManifest manifest = new BuildManifest("key", BuildManifest.empty());
+        manifest.putConfig("file:/config.xml");
+        String hash = manifest.hashInput(input.toURI().toString());
+        manifest.putOutput(output, hash);
+        manifest.setComplete(true);
+        manifest.save(manifestFile);
+        
+        BuildManifest previous = BuildManifest.load(manifestFile);
+        Assert.assertTrue(previous.isUpToDate("key", configs, LOG));
+        Assert.assertTrue(previous.isFresh(output, hash));
+        Assert.assertFalse(previous.isUpToDate("otherKey", configs, LOG));
+        Assert.assertFalse(previous.isUpToDate("key", Arrays.asList("file:/other.xml"), LOG));
+    }
+    
+    @Test
+    public void testInputChanged() throws IOException {
+        File input = TestFiles.write(folder, "input.xsl", "<xsl:stylesheet/>");
+        File output = TestFiles.write(folder, "output.sef", "compiled");
+        File manifestFile = new File(folder.getRoot(), "fingerprints.properties");
+        
+        BuildManifest manifest = new BuildManifest("key", BuildManifest.empty());
+        manifest.putOutput(output, manifest.hashInput(input.toURI().toString()));
+        manifest.setComplete(true);
+        manifest.save(manifestFile);
+        
+        TestFiles.write(folder, "input.xsl", "<xsl:stylesheet version='3.0'/>");
+        BuildManifest previous = BuildManifest.load(manifestFile);
+        Assert.assertFalse(previous.isUpToDate("key", Arrays.<String>asList(), LOG));
+        String newHash = new BuildManifest("key", previous).hashInput(input.toURI().toString());
+        Assert.assertFalse(previous.isFresh(output, newHash));
+    }
+    
+    @Test
+    public void testJarInput() throws IOException {
+        File jar = new File(folder.getRoot(), "lib.jar");
+        writeJar(jar, "<xsl:stylesheet/>");
+        String uri = "jar:"+jar.toURI().toString()+"!/top/a.xsl";
+        File output = TestFiles.write(folder, "output.sef", "compiled");
+        File manifestFile = new File(folder.getRoot(), "fingerprints.properties");
+        
+        BuildManifest manifest = new BuildManifest("key", BuildManifest.empty());
+        String hash = manifest.hashInput(uri);
+        Assert.assertEquals(Fingerprint.of(new ByteArrayInputStream("<xsl:stylesheet/>".getBytes(StandardCharsets.UTF_8))), hash);
+        manifest.putOutput(output, hash);
+        manifest.setComplete(true);
+        manifest.save(manifestFile);
+        Assert.assertTrue(BuildManifest.load(manifestFile).isUpToDate("key", Arrays.<String>asList(), LOG));
+        
+        // same jar size and date : the jar is not read at all
+        long lastModified = jar.lastModified();
+        Files.write(jar.toPath(), new byte[(int)jar.length()]);
+        Assert.assertTrue(jar.setLastModified(lastModified));
+        Assert.assertTrue(BuildManifest.load(manifestFile).isUpToDate("key", Arrays.<String>asList(), LOG));
+        
+        // jar rebuilt with the same entry content
+        writeJar(jar, "<xsl:stylesheet/>");
+        Assert.assertTrue(jar.setLastModified(jar.lastModified()-10000L));
+        Assert.assertTrue(BuildManifest.load(manifestFile).isUpToDate("key", Arrays.<String>asList(), LOG));
+        
+        writeJar(jar, "<xsl:stylesheet version='3.0'/>");
+        Assert.assertTrue(jar.setLastModified(jar.lastModified()-20000L));
+        BuildManifest previous = BuildManifest.load(manifestFile);
+        Assert.assertFalse(previous.isUpToDate("key", Arrays.<String>asList(), LOG));
+        Assert.assertNotEquals(hash, new BuildManifest("key", previous).hashInput(uri));
+    }
+    
+    @Test
+    public void testOutputDeleted() throws IOException {
+        File output = TestFiles.write(folder, "output.sef", "compiled");
+        File manifestFile = new File(folder.getRoot(), "fingerprints.properties");
+        
+        BuildManifest manifest = new BuildManifest("key", BuildManifest.empty());
+        manifest.putOutput(output, "fingerprint");
+        manifest.setComplete(true);
+        manifest.save(manifestFile);
+        
+        Assert.assertTrue(output.delete());
+        BuildManifest previous = BuildManifest.load(manifestFile);
+        Assert.assertFalse(previous.isUpToDate("key", Arrays.<String>asList(), LOG));
+        Assert.assertFalse(previous.isFresh(output, "fingerprint"));
+    }
+    
+    @Test
+    public void testDurations() throws IOException {
+        File manifestFile = new File(folder.getRoot(), "fingerprints.properties");
+        BuildManifest manifest = new BuildManifest("key", BuildManifest.empty());
+        manifest.putDuration("file:/a.xsl", 1000L);
+        manifest.putDuration("file:/b.xsl", 2000L);
+        Assert.assertEquals(-1L, manifest.getDuration("file:/c.xsl"));
+        manifest.save(manifestFile);
+        
+        BuildManifest next = new BuildManifest("key", BuildManifest.load(manifestFile));
+        next.putDuration("file:/a.xsl", 3000L);
+        Assert.assertEquals(3000L, next.getDuration("file:/a.xsl"));
+        Assert.assertEquals(2000L, next.getDuration("file:/b.xsl"));
+        next.keepDuration("file:/a.xsl");
+        next.keepDuration("file:/b.xsl");
+        next.keepDuration("file:/c.xsl");
+        next.save(manifestFile);
+        
+        BuildManifest loaded = BuildManifest.load(manifestFile);
+        Assert.assertEquals(3000L, loaded.getDuration("file:/a.xsl"));
+        Assert.assertEquals(2000L, loaded.getDuration("file:/b.xsl"));
+        Assert.assertEquals(-1L, loaded.getDuration("file:/c.xsl"));
+    }
+    
+    private static void writeJar(File jar, String content) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+            zos.putNextEntry(new ZipEntry("top/a.xsl"));
+            zos.write(content.getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+    }
+}
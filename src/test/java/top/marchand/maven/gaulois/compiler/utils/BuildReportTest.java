@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class BuildReportTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testSlowest() {
+        BuildReport report = new BuildReport();
+        report.addFile(BuildReport.XSL_COMPILE, "file:/a.xsl", 10L, 1L, 2L);
+        report.addFile(BuildReport.XSL_COMPILE, "file:/b.xsl", 30L, 1L, 2L);
+        report.addFile(BuildReport.XSL_COMPILE, "file:/c.xsl", 20L, 1L, 2L);
+        report.addFile(BuildReport.CONFIG_COMPILE, "file:/config.xml", 100L, 1L, 2L);
+        List<BuildReport.FileEntry> slowest = report.getSlowest(BuildReport.XSL_COMPILE, 2);
+        Assert.assertEquals(2, slowest.size());
+        Assert.assertEquals("file:/b.xsl", slowest.get(0).getSystemId());
+        Assert.assertEquals("file:/c.xsl", slowest.get(1).getSystemId());
+    }
+    
+    @Test
+    public void testWrite() throws IOException {
+        BuildReport report = new BuildReport();
+        report.addPhase(BuildReport.XSL_COMPILE, 3000000L);
+        report.addPhase(BuildReport.XSL_COMPILE, 2000000L);
+        report.addFile(BuildReport.XSL_COMPILE, "file:/a \"quoted\".xsl", 5000000L, 12L, 34L);
+        File target = new File(folder.getRoot(), "report/report.json");
+        report.write(target);
+        String json = new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(json.contains("\"xsl-compile\": 5"));
+        Assert.assertTrue(json.contains("\"systemId\": \"file:/a \\\"quoted\\\".xsl\""));
+        Assert.assertTrue(json.contains("\"inputBytes\": 12, \"outputBytes\": 34"));
+        Assert.assertFalse(json.contains("\"saxon-init\""));
+    }
+    
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class ClasspathIndexTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testLookup() throws IOException {
+        File classes = folder.newFolder("classes");
+        File inDir = new File(classes, "top/marchand/a.xsl");
+        inDir.getParentFile().mkdirs();
+        Files.write(inDir.toPath(), "<a/>".getBytes(StandardCharsets.UTF_8));
+        File jar = folder.newFile("lib.jar");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+            zos.putNextEntry(new ZipEntry("top/marchand/a.xsl"));
+            zos.write("<jar/>".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("top/marchand/b.xsl"));
+            zos.write("<b/>".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        String jarUri = jar.toURI().toString();
+        ClasspathIndex index = new ClasspathIndex(Arrays.asList(classes.toURI().toString(), jarUri), new SystemStreamLog());
+        
+        Assert.assertEquals(inDir.toURI().toString(), index.lookup("/top/marchand/a.xsl"));
+        Assert.assertEquals("jar:"+jarUri+"!/top/marchand/b.xsl", index.lookup("top/marchand/b.xsl"));
+        Assert.assertNull(index.lookup("/top/marchand/c.xsl"));
+    }
+    
+    @Test
+    public void testChangedJarIsIndexedAgain() throws IOException {
+        File jar = folder.newFile("lib.jar");
+        writeJar(jar, "a.xsl");
+        String jarUri = jar.toURI().toString();
+        ClasspathIndex first = new ClasspathIndex(Arrays.asList(jarUri), new SystemStreamLog());
+        Assert.assertNotNull(first.lookup("/a.xsl"));
+        writeJar(jar, "a.xsl", "other/b.xsl");
+        ClasspathIndex second = new ClasspathIndex(Arrays.asList(jarUri), new SystemStreamLog());
+        Assert.assertEquals("jar:"+jarUri+"!/other/b.xsl", second.lookup("/other/b.xsl"));
+        Assert.assertEquals(2, second.size());
+    }
+    
+    @Test
+    public void testJarEntriesPerSession() throws IOException {
+        File jar = folder.newFile("lib.jar");
+        writeJar(jar, "a.xsl");
+        String jarUri = jar.toURI().toString();
+        Object session = new Object();
+        new ClasspathIndex(Arrays.asList(jarUri), session, new SystemStreamLog()).size();
+        Assert.assertSame(ClasspathIndex.getSessionJarEntries(session), ClasspathIndex.getSessionJarEntries(session));
+        Assert.assertTrue(ClasspathIndex.getSessionJarEntries(session).containsKey(jar.getAbsolutePath()));
+        // a new session does not keep previous listings
+        Assert.assertTrue(ClasspathIndex.getSessionJarEntries(new Object()).isEmpty());
+        ClasspathIndex index = new ClasspathIndex(Arrays.asList(jarUri), new Object(), new SystemStreamLog());
+        Assert.assertEquals("jar:"+jarUri+"!/a.xsl", index.lookup("/a.xsl"));
+    }
+    
+    private void writeJar(File jar, String... names) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+            for(String name: names) {
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write("<a/>".getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class CompileSchedulerTest {
+    
+    @Test
+    public void testLongestFirst() {
+        GauloisXsl fast = xsl("file:/fast.xsl");
+        GauloisXsl slow = xsl("file:/slow.xsl");
+        GauloisXsl unknown = xsl("file:/unknown.xsl");
+        BuildManifest manifest = new BuildManifest("key", BuildManifest.empty());
+        manifest.putDuration(fast.getXslSystemId(), 10L);
+        manifest.putDuration(slow.getXslSystemId(), 1000L);
+        List<GauloisXsl> ordered = CompileScheduler.longestFirst(Arrays.asList(fast, slow, unknown), manifest);
+        Assert.assertEquals(Arrays.asList(unknown, slow, fast), ordered);
+    }
+    
+    @Test
+    public void testConfigReadyWhenItsXslAreCompiled() throws InterruptedException {
+        GauloisXsl a = xsl("file:/a.xsl");
+        GauloisXsl b = xsl("file:/b.xsl");
+        GauloisXsl upToDate = xsl("file:/upToDate.xsl");
+        GauloisSet first = set("file:/first.xml", a, b);
+        GauloisSet second = set("file:/second.xml", b);
+        GauloisSet third = set("file:/third.xml", upToDate);
+        CompileScheduler scheduler = new CompileScheduler(Arrays.asList(first, second, third), Arrays.asList(a, b));
+        // third has nothing to wait for
+        Assert.assertEquals(Collections.singletonList(third), scheduler.takeReady());
+        scheduler.compiled(b);
+        Assert.assertEquals(Collections.singletonList(second), scheduler.takeReady());
+        scheduler.compiled(a);
+        Assert.assertEquals(Collections.singletonList(first), scheduler.takeReady());
+        Assert.assertTrue(scheduler.takeReady().isEmpty());
+    }
+    
+    @Test
+    public void testReleaseAll() throws InterruptedException {
+        GauloisXsl a = xsl("file:/a.xsl");
+        GauloisSet first = set("file:/first.xml", a);
+        GauloisSet second = set("file:/second.xml", a);
+        CompileScheduler scheduler = new CompileScheduler(Arrays.asList(second, first), Arrays.asList(a));
+        scheduler.releaseAll();
+        Assert.assertEquals(Arrays.asList(first, second), scheduler.takeReady());
+        Assert.assertTrue(scheduler.takeReady().isEmpty());
+    }
+    
+    private static GauloisXsl xsl(String systemId) {
+        return new GauloisXsl(systemId, new File(systemId.substring(6)+".sef"), systemId);
+    }
+    
+    private static GauloisSet set(String systemId, GauloisXsl... xsls) {
+        GauloisSet ret = new GauloisSet(systemId, new File(systemId.substring(6)));
+        ret.getXsls().addAll(Arrays.asList(xsls));
+        return ret;
+    }
+}
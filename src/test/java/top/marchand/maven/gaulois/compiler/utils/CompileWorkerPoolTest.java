@@ -0,0 +1,123 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.transform.Source;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.Processor;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class CompileWorkerPoolTest {
+    private static final String XSL_START = "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"2.0\">";
+    private static final String XSL_END = "</xsl:stylesheet>";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testEncodeDecode() {
+        String line = CompileWorker.encode("E", "a\tb\nc\\d", "");
+        Assert.assertEquals(1, line.split("\n").length);
+        Assert.assertArrayEquals(new String[] { "E", "a\tb\nc\\d", "" }, CompileWorker.decode(line.substring(0, line.length()-1)));
+    }
+    
+    @Test
+    public void testCompileInWorkers() throws Exception {
+        final File common = TestFiles.write(folder, "lib/common.xsl", XSL_START+"<xsl:template name=\"common\"/>"+XSL_END);
+        // lib:common.xsl can only be resolved by Maven execution resolver
+        File valid = TestFiles.write(folder, "valid.xsl", XSL_START+"<xsl:include href=\"lib:common.xsl\"/><xsl:template match=\"/\"><xsl:call-template name=\"common\"/></xsl:template>"+XSL_END);
+        File invalid = TestFiles.write(folder, "invalid.xsl", XSL_START+"\n<xsl:template match=\"/\"><xsl:value-of select=\"(\"/></xsl:template>"+XSL_END);
+        URIResolver resolver = new URIResolver() {
+            @Override
+            public Source resolve(String href, String base) {
+                return "lib:common.xsl".equals(href) ? new StreamSource(common.toURI().toString()) : null;
+            }
+        };
+        DependencyScanner scanner = new DependencyScanner(resolver, new SystemStreamLog());
+        Processor processor = new Processor(false);
+        try (CompileWorkerPool pool = new CompileWorkerPool(processor.newXsltCompiler(), 2, "-Xmx64m", new SystemStreamLog())) {
+            List<XslCompilerPool.CompileResult> results = pool.compile(Arrays.asList(xsl(valid), xsl(invalid), xsl(valid)), scanner);
+            Assert.assertEquals(3, results.size());
+            for(int i: new int[] { 0, 2 }) {
+                XslCompilerPool.CompileResult result = results.get(i);
+                Assert.assertTrue(result.getErrors().toString(), result.getErrors().isEmpty());
+                // stylesheet compiles ; SEF export requires Saxon-EE
+                if(!result.isSuccess()) {
+                    Assert.assertTrue(result.getException().getMessage(), result.getException().getMessage().contains("Saxon-EE"));
+                }
+            }
+            XslCompilerPool.CompileResult result = results.get(1);
+            Assert.assertFalse(result.isSuccess());
+            Assert.assertFalse(result.getErrors().isEmpty());
+            Assert.assertTrue(result.getErrors().toString(), result.getErrors().get(0).contains("Line#: 2"));
+        }
+    }
+    
+    @Test
+    public void testInvalidatedModuleIsResolvedAgain() throws Exception {
+        final File common = TestFiles.write(folder, "lib/common.xsl", XSL_START+"<xsl:template name=\"common\"/>"+XSL_END);
+        File main = TestFiles.write(folder, "main.xsl", XSL_START+"<xsl:template match=\"/\"/>"+XSL_END);
+        URIResolver resolver = new URIResolver() {
+            @Override
+            public Source resolve(String href, String base) {
+                return "lib:common.xsl".equals(href) ? new StreamSource(common.toURI().toString()) : null;
+            }
+        };
+        DependencyScanner scanner = new DependencyScanner(resolver, new SystemStreamLog());
+        Processor processor = new Processor(false);
+        try (CompileWorkerPool pool = new CompileWorkerPool(processor.newXsltCompiler(), 1, "-Xmx64m", new SystemStreamLog())) {
+            XslCompilerPool.CompileResult result = pool.compile(Arrays.asList(xsl(main)), scanner).get(0);
+            Assert.assertTrue(result.getErrors().toString(), result.getErrors().isEmpty());
+            // same worker, main.xsl now includes a module only Maven execution can resolve
+            TestFiles.write(folder, "main.xsl", XSL_START+"<xsl:include href=\"lib:common.xsl\"/><xsl:template match=\"/\"><xsl:call-template name=\"common\"/></xsl:template>"+XSL_END);
+            scanner.invalidate(main.toURI().toString());
+            pool.invalidate(main.toURI().toString());
+            result = pool.compile(Arrays.asList(xsl(main)), scanner).get(0);
+            Assert.assertTrue(result.getErrors().toString(), result.getErrors().isEmpty());
+            if(!result.isSuccess()) {
+                Assert.assertTrue(result.getException().getMessage(), result.getException().getMessage().contains("Saxon-EE"));
+            }
+        }
+    }
+    
+    private GauloisXsl xsl(File file) {
+        String uri = file.toURI().toString();
+        return new GauloisXsl(uri, new File(file.getParentFile(), file.getName().replace(".xsl", ".sef")), uri);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class DependencyGraphTest {
+    private static final String XSL = "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"3.0\"";
+    private static final String XSD = "xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File a, b, common, schema, sub;
+    private DependencyGraph graph;
+    
+    @Before
+    public void before() throws IOException {
+        a = TestFiles.write(folder, "a.xsl", "<xsl:stylesheet "+XSL+"><xsl:include href=\"common.xsl\"/></xsl:stylesheet>");
+        b = TestFiles.write(folder, "b.xsl", "<xsl:stylesheet "+XSL+"><xsl:import-schema schema-location=\"s.xsd\"/></xsl:stylesheet>");
+        common = TestFiles.write(folder, "common.xsl", "<xsl:stylesheet "+XSL+"/>");
+        schema = TestFiles.write(folder, "s.xsd", "<xs:schema "+XSD+"><xs:include schemaLocation=\"sub.xsd\"/></xs:schema>");
+        sub = TestFiles.write(folder, "sub.xsd", "<xs:schema "+XSD+"/>");
+        GauloisSet first = newSet("first.xml", a);
+        GauloisSet second = newSet("second.xml", a, b);
+        graph = DependencyGraph.build(Arrays.asList(first, second), new DependencyScanner(null, new SystemStreamLog()));
+    }
+    
+    @Test
+    public void testImpacted() {
+        Set<String> impacted = graph.getImpacted(Collections.singletonList(uri(common)));
+        Assert.assertTrue(impacted.contains(uri(a)));
+        Assert.assertTrue(impacted.contains(uri(new File(folder.getRoot(), "first.xml"))));
+        Assert.assertTrue(impacted.contains(uri(new File(folder.getRoot(), "second.xml"))));
+        Assert.assertFalse(impacted.contains(uri(b)));
+        
+        impacted = graph.getImpacted(Collections.singletonList(uri(sub)));
+        Assert.assertTrue(impacted.contains(uri(b)));
+        Assert.assertFalse(impacted.contains(uri(a)));
+        Assert.assertFalse(impacted.contains(uri(new File(folder.getRoot(), "first.xml"))));
+        
+        Assert.assertEquals(DependencyGraph.XSL, graph.getKind(uri(a)));
+        Assert.assertEquals(DependencyGraph.MODULE, graph.getKind(uri(common)));
+        Assert.assertEquals(DependencyGraph.SCHEMA, graph.getKind(uri(sub)));
+        Assert.assertTrue(graph.getImpacted(Collections.singletonList("file:/not/in/graph.xsl")).isEmpty());
+    }
+    
+    @Test
+    public void testWrite() throws IOException {
+        graph.addEdge(uri(common), graph.addNode("jar:file:/repo/lib.jar!/lib/x.xsl", DependencyGraph.MODULE), DependencyScanner.XSL_IMPORT);
+        File json = new File(folder.getRoot(), "out/graph.json");
+        File dot = new File(folder.getRoot(), "out/graph.dot");
+        graph.writeJson(json);
+        graph.writeDot(dot);
+        String jsonContent = read(json);
+        Assert.assertTrue(jsonContent, jsonContent.contains("\"type\": \"xs:include\""));
+        Assert.assertTrue(jsonContent, jsonContent.contains("\"origin\": \"file:/repo/lib.jar\""));
+        String dotContent = read(dot);
+        Assert.assertTrue(dotContent, dotContent.startsWith("digraph gaulois {"));
+        Assert.assertTrue(dotContent, dotContent.contains("label=\"lib.jar\""));
+        Assert.assertTrue(dotContent, dotContent.contains("[label=\"gc:xslt\"]"));
+    }
+    
+    private GauloisSet newSet(String name, File... xsls) throws IOException {
+        File config = TestFiles.write(folder, name, "<config/>");
+        GauloisSet set = new GauloisSet(uri(config), new File(folder.getRoot(), "classes/"+name));
+        for(File xsl: xsls) {
+            set.getXsls().add(new GauloisXsl(uri(xsl), new File(folder.getRoot(), "classes/"+xsl.getName()), "cp:/"+xsl.getName()));
+        }
+        return set;
+    }
+    
+    private static String uri(File file) {
+        return UriUtils.canonicalize(file.toURI().toString());
+    }
+    
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import net.sf.saxon.s9api.Processor;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class DependencyScannerTest {
+    private static final String XSL = "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"3.0\"";
+    private static final String XSD = "xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testImportedSchemas() throws IOException {
+        File main = TestFiles.write(folder, "main.xsl", "<xsl:stylesheet "+XSL+"><xsl:include href=\"inc.xsl\"/><xsl:import-schema schema-location=\"a.xsd\"/></xsl:stylesheet>");
+        TestFiles.write(folder, "inc.xsl", "<xsl:stylesheet "+XSL+"><xsl:import-schema schema-location=\"a.xsd\"/><xsl:include href=\"main.xsl\"/></xsl:stylesheet>");
+        TestFiles.write(folder, "a.xsd", "<xs:schema "+XSD+"><xs:include schemaLocation=\"b.xsd\"/></xs:schema>");
+        TestFiles.write(folder, "b.xsd", "<xs:schema "+XSD+"/>");
+        
+        DependencyScanner scanner = new DependencyScanner(null, new SystemStreamLog());
+        List<SchemaDependency> schemas = scanner.getImportedSchemas(main.toURI().toString());
+        Assert.assertEquals(1, schemas.size());
+        SchemaDependency a = schemas.get(0);
+        Assert.assertEquals(DependencyScanner.XSL_IMPORT_SCHEMA, a.getDependencyType());
+        Assert.assertEquals("a.xsd", a.getName());
+        Assert.assertNotNull(a.getAbsUri());
+        Assert.assertEquals(1, a.getChildren().size());
+        Assert.assertEquals(DependencyScanner.XS_INCLUDE, a.getChildren().get(0).getDependencyType());
+        
+        Set<String> closure = scanner.getClosure(main.toURI().toString());
+        Assert.assertEquals(4, closure.size());
+    }
+    
+    @Test
+    public void testMissingSchema() throws IOException {
+        File main = TestFiles.write(folder, "main.xsl", "<xsl:stylesheet "+XSL+"><xsl:import-schema schema-location=\"missing.xsd\"/></xsl:stylesheet>");
+        DependencyScanner scanner = new DependencyScanner(null, new SystemStreamLog());
+        List<SchemaDependency> schemas = scanner.getImportedSchemas(main.toURI().toString());
+        Assert.assertEquals(1, schemas.size());
+        Assert.assertNull(schemas.get(0).getAbsUri());
+    }
+    
+    @Test
+    public void testInvalidate() throws IOException {
+        File main = TestFiles.write(folder, "main.xsl", "<xsl:stylesheet "+XSL+"/>");
+        TestFiles.write(folder, "inc.xsl", "<xsl:stylesheet "+XSL+"/>");
+        DependencyScanner scanner = new DependencyScanner(null, new SystemStreamLog());
+        Assert.assertEquals(1, scanner.getClosure(main.toURI().toString()).size());
+        TestFiles.write(folder, "main.xsl", "<xsl:stylesheet "+XSL+"><xsl:include href=\"inc.xsl\"/></xsl:stylesheet>");
+        Assert.assertEquals(1, scanner.getClosure(main.toURI().toString()).size());
+        scanner.invalidate(main.toURI().toString());
+        Assert.assertEquals(2, scanner.getClosure(main.toURI().toString()).size());
+    }
+    
+    @Test
+    public void testPooledDocuments() throws IOException {
+        File main = TestFiles.write(folder, "main.xsl", "<xsl:stylesheet "+XSL+"><xsl:include href=\"inc.xsl\"/><xsl:import-schema schema-location=\"a.xsd\"/></xsl:stylesheet>");
+        TestFiles.write(folder, "inc.xsl", "<xsl:stylesheet "+XSL+"/>");
+        TestFiles.write(folder, "a.xsd", "<xs:schema "+XSD+"><xs:import schemaLocation=\"b.xsd\"/></xs:schema>");
+        TestFiles.write(folder, "b.xsd", "<xs:schema "+XSD+"/>");
+        DocumentPool pool = new DocumentPool(new Processor(false), 1024L*1024L, new SystemStreamLog());
+        DependencyScanner scanner = new DependencyScanner(null, new UriTable(), pool, new SystemStreamLog());
+        Assert.assertEquals(4, scanner.getClosure(main.toURI().toString()).size());
+        List<SchemaDependency> schemas = scanner.getImportedSchemas(main.toURI().toString());
+        Assert.assertEquals(1, schemas.size());
+        Assert.assertEquals(DependencyScanner.XS_IMPORT, schemas.get(0).getChildren().get(0).getDependencyType());
+        Assert.assertEquals(4, pool.getMisses());
+        // compilation finds modules already parsed
+        Assert.assertNotNull(pool.getSource(main.toURI().toString()));
+        Assert.assertEquals(1, pool.getHits());
+    }
+}
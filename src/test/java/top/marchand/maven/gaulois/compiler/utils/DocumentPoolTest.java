@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class DocumentPoolTest {
+    private static final String XSL_START = "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"2.0\">";
+    private static final String XSL_END = "</xsl:stylesheet>";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testHitAndChange() throws IOException, SaxonApiException {
+        File file = TestFiles.write(folder, "a.xml", "<a/>");
+        DocumentPool pool = new DocumentPool(new Processor(false), 1024L, new SystemStreamLog());
+        XdmNode first = pool.get(file.toURI().toString());
+        Assert.assertSame(first, pool.get(file.toURI().toString()));
+        Assert.assertEquals(1, pool.getHits());
+        Assert.assertEquals(1, pool.getMisses());
+        TestFiles.write(folder, "a.xml", "<changed/>");
+        Assert.assertNotSame(first, pool.get(file.toURI().toString()));
+        Assert.assertEquals(2, pool.getMisses());
+        Assert.assertEquals("<changed/>".length(), pool.getSize());
+    }
+    
+    @Test
+    public void testEvictLeastRecentlyUsed() throws IOException, SaxonApiException {
+        // each document is 10 bytes, pool keeps 2 of them
+        String a = TestFiles.write(folder, "a.xml", "<a>12</a>\n").toURI().toString();
+        String b = TestFiles.write(folder, "b.xml", "<b>12</b>\n").toURI().toString();
+        String c = TestFiles.write(folder, "c.xml", "<c>12</c>\n").toURI().toString();
+        DocumentPool pool = new DocumentPool(new Processor(false), 25L, new SystemStreamLog());
+        pool.get(a);
+        pool.get(b);
+        pool.get(a);
+        pool.get(c);
+        Assert.assertEquals(20L, pool.getSize());
+        pool.get(a);
+        pool.get(c);
+        Assert.assertEquals(3, pool.getHits());
+        pool.get(b);
+        Assert.assertEquals(4, pool.getMisses());
+    }
+    
+    @Test
+    public void testNotPooled() throws IOException, SaxonApiException {
+        DocumentPool pool = new DocumentPool(new Processor(false), 1024L, new SystemStreamLog());
+        Assert.assertNull(pool.get("http://localhost/a.xsl"));
+        Assert.assertEquals(0, pool.getMisses());
+    }
+    
+    @Test
+    public void testCompileWithIncludedModules() throws IOException, SaxonApiException {
+        TestFiles.write(folder, "lib/common.xsl", XSL_START+"<xsl:template name=\"common\"/>"+XSL_END);
+        File first = TestFiles.write(folder, "first.xsl", XSL_START+"<xsl:include href=\"lib/common.xsl\"/>"+XSL_END);
+        File second = TestFiles.write(folder, "second.xsl", XSL_START+"<xsl:include href=\"lib/common.xsl\"/>"+XSL_END);
+        Processor processor = new Processor(false);
+        DocumentPool pool = new DocumentPool(processor, 1024L*1024L, new SystemStreamLog());
+        XsltCompiler compiler = processor.newXsltCompiler();
+        compiler.setURIResolver(pool.asResolver(null));
+        // SEF export requires Saxon-EE, only compilation is checked
+        XsltExecutable exec = compiler.compile(pool.getSource(first.toURI().toString()));
+        Assert.assertNotNull(exec.getUnderlyingCompiledStylesheet().getNamedTemplate(
+                new QName("common").getStructuredQName()));
+        compiler.compile(pool.getSource(second.toURI().toString()));
+        Assert.assertEquals(3, pool.getMisses());
+        Assert.assertEquals(1, pool.getHits());
+    }
+    
+    @Test
+    public void testCompileErrorInPooledModule() throws IOException {
+        TestFiles.write(folder, "lib/broken.xsl", XSL_START+"\n\n<xsl:template name=\"broken\"><xsl:value-of select=\"(\"/></xsl:template>"+XSL_END);
+        File main = TestFiles.write(folder, "main.xsl", XSL_START+"<xsl:include href=\"lib/broken.xsl\"/>"+XSL_END);
+        Processor processor = new Processor(false);
+        DocumentPool pool = new DocumentPool(processor, 1024L*1024L, new SystemStreamLog());
+        XsltCompiler compiler = processor.newXsltCompiler();
+        compiler.setURIResolver(pool.asResolver(null));
+        XslCompilerPool.CompileResult result = XslCompilerPool.compile(compiler, xsl(main), pool);
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertEquals(2, pool.getMisses());
+        String errors = result.getErrors().toString();
+        Assert.assertTrue(errors, errors.contains("broken.xsl"));
+        Assert.assertTrue(errors, errors.contains("Line#: 3"));
+    }
+    
+    private GauloisXsl xsl(File file) {
+        String uri = file.toURI().toString();
+        return new GauloisXsl(uri, new File(file.getParentFile(), file.getName().replace(".xsl", ".sef")), uri);
+    }
+}
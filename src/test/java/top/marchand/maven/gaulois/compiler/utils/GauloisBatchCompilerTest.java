@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmAtomicValue;
+import net.sf.saxon.s9api.XdmMap;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class GauloisBatchCompilerTest {
+    private static final String GC_NS = "http://efl.fr/chaine/saxon-pipe/config";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private XsltCompiler compiler;
+    private XsltExecutable gauloisCompiler;
+    private File classes;
+    private BuildReport report;
+    
+    @Before
+    public void before() throws SaxonApiException, IOException {
+        compiler = new Processor(false).newXsltCompiler();
+        URL url = getClass().getResource("/top/marchand/maven/gaulois/compiler/gaulois-compiler.xsl");
+        gauloisCompiler = compiler.compile(new StreamSource(url.toExternalForm()));
+        classes = folder.newFolder("classes");
+        report = new BuildReport();
+    }
+    
+    @Test
+    public void testBatch() throws SaxonApiException, IOException {
+        GauloisSet first = newSet("first", "cp:/a.xsl", "cp:/a.xsd");
+        GauloisSet second = newSet("second", "cp:/b.xsl", null);
+        new GauloisBatchCompiler(gauloisCompiler, Collections.<XsltExecutable>emptyList(), null, report, new SystemStreamLog())
+                .compile(Arrays.asList(first, second), xslMap(), classes.getAbsolutePath());
+        String firstContent = read(first.getTargetFile());
+        Assert.assertTrue(firstContent, firstContent.contains("href=\"cp:/xsl/a.sef\""));
+        Assert.assertTrue(firstContent, firstContent.contains("href=\"cp:/a.xsd\""));
+        String secondContent = read(second.getTargetFile());
+        Assert.assertTrue(secondContent, secondContent.contains("href=\"cp:/xsl/b.sef\""));
+        Assert.assertFalse(secondContent, secondContent.contains("grammars"));
+        Assert.assertNull(first.getConfigTree());
+        Assert.assertEquals(2, report.getSlowest(BuildReport.CONFIG_COMPILE, 5).size());
+    }
+    
+    @Test
+    public void testBatchWithPostCompilers() throws SaxonApiException, IOException {
+        XsltExecutable postCompiler = compiler.compile(new StreamSource(new StringReader(
+                "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='3.0'>"
+                + "<xsl:template match='/'><post-compiled><xsl:copy-of select='.'/></post-compiled></xsl:template>"
+                + "</xsl:stylesheet>")));
+        XsltExecutable secondStage = compiler.compile(new StreamSource(new StringReader(
+                "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='3.0'>"
+                + "<xsl:template match='/'><second-stage><xsl:copy-of select='.'/></second-stage></xsl:template>"
+                + "</xsl:stylesheet>")));
+        GauloisSet first = newSet("first", "cp:/a.xsl", null);
+        GauloisSet second = newSet("second", "cp:/b.xsl", null);
+        new GauloisBatchCompiler(gauloisCompiler, Arrays.asList(postCompiler, secondStage), null, report, new SystemStreamLog())
+                .compile(Arrays.asList(first, second), xslMap(), classes.getAbsolutePath());
+        String firstContent = read(first.getTargetFile());
+        Assert.assertTrue(firstContent, firstContent.contains("<second-stage><post-compiled"));
+        Assert.assertTrue(firstContent, firstContent.contains("href=\"cp:/xsl/a.sef\""));
+        Assert.assertTrue(read(second.getTargetFile()).contains("<second-stage><post-compiled"));
+        Assert.assertTrue(report.getPhaseNanos(BuildReport.POST_COMPILE)>0);
+    }
+    
+    private GauloisSet newSet(String name, String xslHref, String schema) throws IOException {
+        File config = folder.newFile(name+".xml");
+        Files.write(config.toPath(), ("<config xmlns='"+GC_NS+"'><pipe><xslt href='"+xslHref+"'/></pipe></config>").getBytes(StandardCharsets.UTF_8));
+        GauloisSet set = new GauloisSet(config.toURI().toString(), new File(classes, "configs/"+name+".xml"));
+        if(schema!=null) {
+            GauloisXsl gx = new GauloisXsl(xslHref, new File(classes, "xsl/x.sef"), xslHref);
+            gx.getSchemas().add(schema);
+            set.getXsls().add(gx);
+        }
+        return set;
+    }
+    
+    private XdmMap xslMap() {
+        return XdmMap.makeMap(Collections.singletonMap("cp:/a.xsl", new File(classes, "xsl/a.sef").getAbsolutePath()))
+                .put(new XdmAtomicValue("cp:/b.xsl"), new XdmAtomicValue(new File(classes, "xsl/b.sef").getAbsolutePath()));
+    }
+    
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
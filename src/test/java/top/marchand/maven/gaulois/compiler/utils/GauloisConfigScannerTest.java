@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmNode;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class GauloisConfigScannerTest {
+    private static final Log LOG = new SystemStreamLog();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testLeanScan() throws IOException, XMLStreamException {
+        GauloisConfigScanner scanner = new GauloisConfigScanner(newLocator(), LOG);
+        scanner.scan(writeConfig().toURI().toString());
+        assertScanned(scanner);
+    }
+    
+    @Test
+    public void testTreeScan() throws IOException, SaxonApiException {
+        GauloisConfigScanner scanner = new GauloisConfigScanner(newLocator(), LOG);
+        XdmNode config = new Processor(false).newDocumentBuilder().build(writeConfig());
+        scanner.scan(config);
+        assertScanned(scanner);
+    }
+    
+    private File writeConfig() throws IOException {
+        File config = folder.newFile("config.xml");
+        String content = 
+                "<config xmlns='"+GauloisConfigScanner.GAULOIS_NS+"'>"
+                + "<pipe><xslt href='cp:/a.xsl'><param name='p' value='v'/></xslt>"
+                + "<other:xslt xmlns:other='urn:other' href='cp:/other.xsl'/>"
+                + "<xslt href='cp:/missing.xsl'/></pipe>"
+                + "</config>";
+        Files.write(config.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return config;
+    }
+    
+    private XslLocator newLocator() throws IOException {
+        File xslDir = folder.newFolder("xsl");
+        Files.write(new File(xslDir, "a.xsl").toPath(), "<xsl:stylesheet/>".getBytes(StandardCharsets.UTF_8));
+        URIResolver noCatalog = new URIResolver() {
+            @Override
+            public Source resolve(String href, String base) throws TransformerException {
+                return null;
+            }
+        };
+        return new XslLocator(
+                Arrays.asList(xslDir), 
+                folder.newFolder("classes"), 
+                noCatalog, 
+                new ClasspathIndex(Collections.<String>emptyList(), LOG), 
+                LOG);
+    }
+    
+    private void assertScanned(GauloisConfigScanner scanner) {
+        Assert.assertFalse(scanner.hasErrors());
+        Assert.assertEquals(1, scanner.getXslToCompile().size());
+        GauloisConfigScanner.FileInfo info = scanner.getXslToCompile().values().iterator().next();
+        Assert.assertEquals("cp:/a.xsl", info.getOriginalSystemId());
+        Assert.assertEquals("a.sef", info.getFile().getName());
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class PrecompiledStylesheetsTest {
+    
+    @Test
+    public void testSameMajorVersion() {
+        Assert.assertTrue(PrecompiledStylesheets.isCompatible("9.8.0-15", "9.8.0.5"));
+    }
+    
+    @Test
+    public void testOtherMajorVersion() {
+        Assert.assertFalse(PrecompiledStylesheets.isCompatible("9.8.0-15", "9.9.1.5"));
+        Assert.assertFalse(PrecompiledStylesheets.isCompatible(null, "9.8.0.5"));
+        Assert.assertFalse(PrecompiledStylesheets.isCompatible("${saxon-ee.version}", "9.8.0.5"));
+    }
+    
+    @Test
+    public void testEdition() {
+        Assert.assertTrue(PrecompiledStylesheets.isCompatible("9.8.0-15", "HE", "9.8.0.5", "HE"));
+        Assert.assertTrue(PrecompiledStylesheets.isCompatible("9.8.0-15", "HE", "9.8.0.5", "EE"));
+        Assert.assertTrue(PrecompiledStylesheets.isCompatible("9.8.0-15", "PE", "9.8.0.5", "PE"));
+        Assert.assertFalse(PrecompiledStylesheets.isCompatible("9.8.0-15", "EE", "9.8.0.5", "HE"));
+        Assert.assertFalse(PrecompiledStylesheets.isCompatible("9.8.0-15", "EE", "9.8.0.5", "PE"));
+        // SEF exported without a target edition only targets EE
+        Assert.assertTrue(PrecompiledStylesheets.isCompatible("9.8.0-15", null, "9.8.0.5", "EE"));
+        Assert.assertFalse(PrecompiledStylesheets.isCompatible("9.8.0-15", null, "9.8.0.5", "HE"));
+        Assert.assertFalse(PrecompiledStylesheets.isCompatible("9.8.0-15", "HE", "9.9.1.5", "EE"));
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class SchemaRegistryTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testCopyOnce() throws IOException, InterruptedException {
+        File a = TestFiles.write(folder, "src/a.xsd", "<xs:schema/>");
+        File b = TestFiles.write(folder, "src/b.xsd", "<xs:schema><!-- b --></xs:schema>");
+        File destA = new File(folder.getRoot(), "dest/a.xsd");
+        File destB = new File(folder.getRoot(), "dest/sub/b.xsd");
+        
+        SchemaRegistry registry = new SchemaRegistry(new BuildManifest("key", BuildManifest.empty()), new SystemStreamLog());
+        Assert.assertTrue(registry.register(a.toURI().toString(), destA));
+        Assert.assertFalse(registry.register(a.toURI().toString(), destA));
+        Assert.assertTrue(registry.register(b.toURI().toString(), destB));
+        Assert.assertTrue(registry.materialize(2));
+        Assert.assertEquals(2, registry.getCopiedCount());
+        Assert.assertEquals("<xs:schema><!-- b --></xs:schema>", new String(Files.readAllBytes(destB.toPath()), StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    public void testUnchangedNotWritten() throws IOException, InterruptedException {
+        File a = TestFiles.write(folder, "src/a.xsd", "<xs:schema/>");
+        File destA = TestFiles.write(folder, "dest/a.xsd", "<xs:schema/>");
+        Assert.assertTrue(destA.setLastModified(1000L));
+        
+        SchemaRegistry registry = new SchemaRegistry(new BuildManifest("key", BuildManifest.empty()), new SystemStreamLog());
+        registry.register(a.toURI().toString(), destA);
+        Assert.assertTrue(registry.materialize(1));
+        Assert.assertEquals(0, registry.getCopiedCount());
+        Assert.assertEquals(1, registry.getUnchangedCount());
+        Assert.assertEquals(1000L, destA.lastModified());
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class SefCacheTest {
+    private static final String KEY_A = "aa0123456789";
+    private static final String KEY_B = "bb0123456789";
+    private static final String KEY_C = "cc0123456789";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testFetchAndStore() throws IOException {
+        SefCache cache = new SefCache(folder.newFolder("cache"), 1024L*1024L, new SystemStreamLog());
+        File target = new File(folder.getRoot(), "classes/a.sef");
+        Assert.assertFalse(cache.fetch(KEY_A, target));
+        Assert.assertFalse(target.exists());
+        cache.store(KEY_A, TestFiles.write(folder, "compiled/a.sef", "<package/>"));
+        Assert.assertTrue(cache.fetch(KEY_A, target));
+        Assert.assertEquals("<package/>", new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+    
+    @Test
+    public void testEvictLeastRecentlyUsed() throws IOException {
+        File dir = folder.newFolder("cache");
+        // each entry is 10 bytes, cache keeps 2 of them
+        SefCache cache = new SefCache(dir, 25L, new SystemStreamLog());
+        cache.store(KEY_A, TestFiles.write(folder, "a.sef", "0123456789"));
+        cache.store(KEY_B, TestFiles.write(folder, "b.sef", "0123456789"));
+        cache.store(KEY_C, TestFiles.write(folder, "c.sef", "0123456789"));
+        Assert.assertTrue(new File(dir, "aa/"+KEY_A+".sef").setLastModified(3000000L));
+        Assert.assertTrue(new File(dir, "bb/"+KEY_B+".sef").setLastModified(1000000L));
+        Assert.assertTrue(new File(dir, "cc/"+KEY_C+".sef").setLastModified(2000000L));
+        Assert.assertEquals(1, cache.evict());
+        File target = new File(folder.getRoot(), "target.sef");
+        Assert.assertFalse(cache.fetch(KEY_B, target));
+        Assert.assertTrue(cache.fetch(KEY_A, target));
+        Assert.assertTrue(cache.fetch(KEY_C, target));
+        Assert.assertEquals(0, cache.evict());
+    }
+    
+    @Test
+    public void testStaleTemporaryFiles() throws IOException {
+        File dir = folder.newFolder("cache");
+        SefCache cache = new SefCache(dir, 25L, new SystemStreamLog());
+        cache.store(KEY_A, TestFiles.write(folder, "a.sef", "0123456789"));
+        // left by a build killed while storing
+        File stale = TestFiles.write(folder, "cache/bb/"+KEY_B+".sef123.tmp", "0123456789");
+        Assert.assertTrue(stale.setLastModified(System.currentTimeMillis()-24L*3600L*1000L));
+        // being stored by another build
+        File inProgress = TestFiles.write(folder, "cache/cc/"+KEY_C+".sef456.tmp", "0123456789");
+        Assert.assertEquals(0, cache.evict());
+        Assert.assertFalse(stale.exists());
+        Assert.assertTrue(inProgress.exists());
+        // copies in progress count in cache size
+        cache.store(KEY_B, TestFiles.write(folder, "b.sef", "0123456789"));
+        Assert.assertTrue(new File(dir, "aa/"+KEY_A+".sef").setLastModified(1000000L));
+        Assert.assertEquals(1, cache.evict());
+        Assert.assertFalse(cache.fetch(KEY_A, new File(folder.getRoot(), "target.sef")));
+    }
+}
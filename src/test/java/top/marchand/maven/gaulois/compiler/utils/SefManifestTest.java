@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class SefManifestTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        File classes = folder.newFolder("classes");
+        SefManifest manifest = new SefManifest("saxon-key");
+        manifest.put("lib/a é.xsl", "lib/a é.sef", "hash-a");
+        Assert.assertTrue(manifest.write(classes));
+        File jar = new File(folder.getRoot(), "lib.jar");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+            zos.putNextEntry(new ZipEntry(SefManifest.PATH));
+            zos.write(Files.readAllBytes(new File(classes, SefManifest.PATH).toPath()));
+            zos.closeEntry();
+        }
+        SefManifest loaded = SefManifest.load(jar.toURI().toString());
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals("saxon-key", loaded.getSaxonKey());
+        Assert.assertEquals("lib/a é.sef", loaded.getSef("lib/a é.xsl"));
+        Assert.assertEquals("hash-a", loaded.getClosureHash("lib/a é.xsl"));
+        Assert.assertNull(loaded.getSef("lib/b.xsl"));
+    }
+    
+    @Test
+    public void testLoadWithoutManifest() throws IOException {
+        File jar = new File(folder.getRoot(), "empty.jar");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+            zos.putNextEntry(new ZipEntry("a.xsl"));
+            zos.closeEntry();
+        }
+        Assert.assertNull(SefManifest.load(jar.toURI().toString()));
+    }
+    
+    @Test
+    public void testWriteOnlyIfChanged() throws IOException {
+        File classes = folder.newFolder("classes");
+        SefManifest manifest = new SefManifest("saxon-key");
+        manifest.put("a.xsl", "a.sef", "hash-a");
+        Assert.assertTrue(manifest.write(classes));
+        Assert.assertFalse(manifest.write(classes));
+        manifest.put("b.xsl", "b.sef", "hash-b");
+        Assert.assertTrue(manifest.write(classes));
+    }
+    
+    @Test
+    public void testClosureHashIgnoresOrder() {
+        Map<String,String> first = new LinkedHashMap<>();
+        first.put("a.xsl", "1");
+        first.put("inc/b.xsl", "2");
+        Map<String,String> second = new HashMap<>();
+        second.put("inc/b.xsl", "2");
+        second.put("a.xsl", "1");
+        Assert.assertEquals(SefManifest.closureHash(first), SefManifest.closureHash(second));
+        second.put("inc/b.xsl", "3");
+        Assert.assertNotEquals(SefManifest.closureHash(first), SefManifest.closureHash(second));
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class SourceStoreTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testReadOnce() throws IOException {
+        String uri = TestFiles.write(folder, "a.xsl", "<a/>").toURI().toString();
+        SourceStore store = new SourceStore(1024L, new SystemStreamLog());
+        Assert.assertEquals("<a/>", read(store, uri));
+        Assert.assertEquals("<a/>", read(store, uri));
+        Assert.assertEquals(1, store.getMisses());
+        Assert.assertEquals(1, store.getHits());
+        TestFiles.write(folder, "a.xsl", "<changed/>");
+        Assert.assertEquals("<changed/>", read(store, uri));
+        Assert.assertEquals(2, store.getMisses());
+        Assert.assertEquals("<changed/>".length(), store.getSize());
+    }
+    
+    @Test
+    public void testJarEntry() throws IOException {
+        File jar = folder.newFile("lib.jar");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+            zos.putNextEntry(new ZipEntry("lib/a.xsl"));
+            zos.write("<jar/>".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        String uri = "jar:"+jar.toURI().toString()+"!/lib/a.xsl";
+        SourceStore store = new SourceStore(1024L, new SystemStreamLog());
+        Assert.assertEquals("<jar/>", read(store, uri));
+        Assert.assertEquals("<jar/>", read(store, uri));
+        Assert.assertEquals(1, store.getHits());
+    }
+    
+    @Test
+    public void testTooLargeIsNotStored() throws IOException {
+        String uri = TestFiles.write(folder, "a.xsl", "<too-large/>").toURI().toString();
+        SourceStore store = new SourceStore(4L, new SystemStreamLog());
+        Assert.assertEquals("<too-large/>", read(store, uri));
+        Assert.assertEquals("<too-large/>", read(store, uri));
+        Assert.assertEquals(2, store.getMisses());
+        Assert.assertEquals(0, store.getSize());
+    }
+    
+    @Test
+    public void testHashedInputIsNotReadAgain() throws IOException {
+        String uri = TestFiles.write(folder, "a.xsl", "<a/>").toURI().toString();
+        SourceStore store = new SourceStore(1024L, new SystemStreamLog());
+        BuildManifest manifest = new BuildManifest("key", BuildManifest.empty());
+        manifest.setSourceStore(store);
+        Assert.assertEquals(Fingerprint.of(Files.newInputStream(new File(folder.getRoot(), "a.xsl").toPath())), manifest.hashInput(uri));
+        store.getSource(uri);
+        Assert.assertEquals(1, store.getMisses());
+        Assert.assertEquals(1, store.getHits());
+    }
+    
+    private String read(SourceStore store, String uri) throws IOException {
+        try (InputStream is = store.openStream(uri)) {
+            byte[] buffer = new byte[1024];
+            int length = 0;
+            int read;
+            while((read=is.read(buffer, length, buffer.length-length))>0) {
+                length += read;
+            }
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class SourceWatcherTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test(timeout = 30000)
+    public void testTreeAndFile() throws IOException, InterruptedException {
+        File xsl = folder.newFolder("xsl");
+        File sub = new File(xsl, "sub");
+        sub.mkdirs();
+        File conf = folder.newFolder("conf");
+        File catalog = new File(conf, "catalog.xml");
+        write(catalog, "<catalog/>");
+        try (SourceWatcher watcher = new SourceWatcher(new SystemStreamLog())) {
+            watcher.watchTree(xsl.toPath());
+            watcher.watchFile(catalog.toPath());
+            
+            File a = new File(sub, "a.xsl");
+            write(a, "<xsl:stylesheet/>");
+            Set<Path> changed = watcher.take(200);
+            Assert.assertTrue(changed.toString(), changed.contains(a.toPath().toAbsolutePath()));
+            
+            // not watched
+            write(new File(conf, "other.xml"), "<other/>");
+            write(catalog, "<catalog><!-- changed --></catalog>");
+            changed = watcher.take(200);
+            Assert.assertTrue(changed.toString(), changed.contains(catalog.toPath().toAbsolutePath()));
+            Assert.assertFalse(changed.toString(), changed.contains(new File(conf, "other.xml").toPath().toAbsolutePath()));
+        }
+    }
+    
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class StylesheetCacheTest {
+    private static final String XSL = "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='2.0'/>";
+    
+    @Test
+    public void testSingleCompilation() throws Exception {
+        final StylesheetCache cache = StylesheetCache.getInstance(new Object());
+        final AtomicInteger compilations = new AtomicInteger();
+        final Callable<XsltExecutable> compilation = newCompilation(compilations);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<XsltExecutable>> futures = new ArrayList<>();
+            for(int i=0; i<8; i++) {
+                futures.add(executor.submit(new Callable<XsltExecutable>() {
+                    @Override
+                    public XsltExecutable call() throws Exception {
+                        start.await();
+                        return cache.get("saxon", "resource", compilation);
+                    }
+                }));
+            }
+            start.countDown();
+            XsltExecutable first = futures.get(0).get();
+            for(Future<XsltExecutable> future: futures) {
+                Assert.assertSame(first, future.get());
+            }
+            Assert.assertEquals(1, compilations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testSession() {
+        Object session = new Object();
+        StylesheetCache cache = StylesheetCache.getInstance(session);
+        Assert.assertSame(cache, StylesheetCache.getInstance(session));
+        StylesheetCache next = StylesheetCache.getInstance(new Object());
+        Assert.assertNotSame(cache, next);
+        // without session, executions never share a cache
+        Assert.assertNotSame(StylesheetCache.getInstance(null), StylesheetCache.getInstance(null));
+    }
+    
+    @Test
+    public void testSaxonKeys() throws SaxonApiException {
+        StylesheetCache cache = StylesheetCache.getInstance(new Object());
+        AtomicInteger compilations = new AtomicInteger();
+        XsltExecutable first = cache.get("saxon1", "resource", newCompilation(compilations));
+        XsltExecutable second = cache.get("saxon2", "resource", newCompilation(compilations));
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first, cache.get("saxon1", "resource", newCompilation(compilations)));
+        Assert.assertEquals(2, compilations.get());
+        
+        Processor processor1 = new Processor(false);
+        Processor processor2 = new Processor(false);
+        Assert.assertSame(processor1, cache.getProcessor("saxon1", processor1));
+        Assert.assertSame(processor1, cache.getProcessor("saxon1", processor2));
+        Assert.assertSame(processor2, cache.getProcessor("saxon2", processor2));
+    }
+    
+    @Test
+    public void testFailureIsNotCached() throws SaxonApiException {
+        StylesheetCache cache = StylesheetCache.getInstance(new Object());
+        try {
+            cache.get("saxon", "resource", new Callable<XsltExecutable>() {
+                @Override
+                public XsltExecutable call() throws SaxonApiException {
+                    throw new SaxonApiException("failed");
+                }
+            });
+            Assert.fail("compilation error is expected");
+        } catch(SaxonApiException ex) {
+            Assert.assertEquals("failed", ex.getMessage());
+        }
+        AtomicInteger compilations = new AtomicInteger();
+        Assert.assertNotNull(cache.get("saxon", "resource", newCompilation(compilations)));
+        Assert.assertEquals(1, compilations.get());
+    }
+    
+    private static Callable<XsltExecutable> newCompilation(final AtomicInteger compilations) {
+        return new Callable<XsltExecutable>() {
+            @Override
+            public XsltExecutable call() throws SaxonApiException, InterruptedException {
+                compilations.incrementAndGet();
+                // other threads ask for the stylesheet meanwhile
+                Thread.sleep(50);
+                return new Processor(false).newXsltCompiler().compile(new StreamSource(new StringReader(XSL)));
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class UriTableTest {
+    
+    @Test
+    public void testIntern() {
+        UriTable table = new UriTable();
+        Assert.assertEquals(UriTable.NONE, table.intern(null));
+        Assert.assertNull(table.get(UriTable.NONE));
+        int a = table.intern("file:/a.xsl");
+        int b = table.intern("file:/b.xsl");
+        Assert.assertNotEquals(a, b);
+        Assert.assertEquals(a, table.intern(new String("file:/a.xsl")));
+        Assert.assertEquals("file:/b.xsl", table.get(b));
+        Assert.assertEquals(2, table.size());
+    }
+    
+    @Test
+    public void testCanonical() {
+        UriTable table = new UriTable();
+        String first = table.canonical(new String("file:/a.xsd"));
+        Assert.assertSame(first, table.canonical(new String("file:/a.xsd")));
+    }
+    
+    @Test
+    public void testGrow() {
+        UriTable table = new UriTable();
+        for(int i=0; i<1000; i++) {
+            Assert.assertEquals(i, table.intern("file:/"+i+".xsl"));
+        }
+        Assert.assertEquals("file:/999.xsl", table.get(999));
+        Assert.assertEquals("file:/0.xsl", table.get(0));
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.xml.transform.Source;
+import javax.xml.transform.URIResolver;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.XsltCompiler;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class XslCompilerPoolTest {
+    private static final String XSL_START = "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"2.0\">";
+    private static final String XSL_END = "</xsl:stylesheet>";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testNewCompiler() {
+        XsltCompiler model = new Processor(false).newXsltCompiler();
+        model.setAssertionsEnabled(true);
+        model.setCompileWithTracing(true);
+        XsltCompiler compiler = XslCompilerPool.newCompiler(model);
+        Assert.assertNotSame(model, compiler);
+        Assert.assertSame(model.getProcessor(), compiler.getProcessor());
+        Assert.assertTrue(compiler.isAssertionsEnabled());
+        Assert.assertTrue(compiler.isCompileWithTracing());
+    }
+    
+    @Test
+    public void testNewCompilerOfProcessor() {
+        XsltCompiler model = new Processor(false).newXsltCompiler();
+        URIResolver resolver = new URIResolver() {
+            @Override
+            public Source resolve(String href, String base) {
+                return null;
+            }
+        };
+        model.setURIResolver(resolver);
+        model.setAssertionsEnabled(true);
+        Processor shared = new Processor(false);
+        XsltCompiler compiler = XslCompilerPool.newCompiler(shared, model);
+        Assert.assertSame(shared, compiler.getProcessor());
+        Assert.assertSame(resolver, compiler.getURIResolver());
+        Assert.assertTrue(compiler.isAssertionsEnabled());
+    }
+    
+    @Test
+    public void testResultsInSubmissionOrder() throws Exception {
+        List<GauloisXsl> xsls = new ArrayList<>();
+        for(int i=0; i<8; i++) {
+            if(i==3) {
+                xsls.add(xsl(TestFiles.write(folder, "invalid.xsl", XSL_START+"\n<xsl:template match=\"/\"><xsl:value-of select=\"(\"/></xsl:template>"+XSL_END)));
+            } else {
+                xsls.add(xsl(TestFiles.write(folder, "valid"+i+".xsl", XSL_START+"<xsl:template match=\"/\"><result"+i+"/></xsl:template>"+XSL_END)));
+            }
+        }
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        final List<GauloisXsl> notified = Collections.synchronizedList(new ArrayList<GauloisXsl>());
+        XslCompilerPool pool = new XslCompilerPool(new Processor(false).newXsltCompiler(), 3);
+        List<XslCompilerPool.CompileResult> results = pool.compile(xsls, new XslCompilerPool.CompileListener() {
+            @Override
+            public void compiled(XslCompilerPool.CompileResult result) {
+                threads.add(Thread.currentThread().getName());
+                notified.add(result.getXsl());
+            }
+        });
+        Assert.assertEquals(xsls.size(), results.size());
+        Assert.assertEquals(new HashSet<>(xsls), new HashSet<>(notified));
+        Assert.assertTrue(threads.toString(), threads.size()<=3);
+        for(String thread: threads) Assert.assertTrue(thread, thread.startsWith("gaulois-compiler-"));
+        for(int i=0; i<xsls.size(); i++) {
+            XslCompilerPool.CompileResult result = results.get(i);
+            Assert.assertSame(xsls.get(i), result.getXsl());
+            if(i==3) {
+                // errors are kept with the XSL they belong to
+                Assert.assertFalse(result.isSuccess());
+                Assert.assertNotNull(result.getException());
+                Assert.assertFalse(result.getErrors().isEmpty());
+                Assert.assertTrue(result.getErrors().toString(), result.getErrors().get(0).contains("Line#: 2"));
+            } else {
+                Assert.assertTrue(result.getErrors().toString(), result.getErrors().isEmpty());
+                // stylesheet compiles ; SEF export requires Saxon-EE
+                if(!result.isSuccess()) {
+                    Assert.assertTrue(result.getException().getMessage(), result.getException().getMessage().contains("Saxon-EE"));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testWarningsPerXsl() throws Exception {
+        GauloisXsl quiet = xsl(TestFiles.write(folder, "quiet.xsl", XSL_START+"<xsl:template match=\"/\"/>"+XSL_END));
+        // the child axis starting at an attribute never selects anything
+        GauloisXsl warning = xsl(TestFiles.write(folder, "warning.xsl", XSL_START+"<xsl:template match=\"@a/b\"/>"+XSL_END));
+        List<XslCompilerPool.CompileResult> results = new XslCompilerPool(new Processor(false).newXsltCompiler(), 2)
+                .compile(Arrays.asList(quiet, warning));
+        Assert.assertTrue(results.get(0).getWarnings().toString(), results.get(0).getWarnings().isEmpty());
+        Assert.assertFalse(results.get(1).getWarnings().isEmpty());
+    }
+    
+    private GauloisXsl xsl(File file) {
+        String uri = file.toURI().toString();
+        return new GauloisXsl(uri, new File(file.getParentFile(), file.getName().replace(".xsl", ".sef")), uri);
+    }
+}
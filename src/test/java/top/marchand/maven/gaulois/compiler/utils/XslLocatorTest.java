@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2018, Christophe Marchand
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package top.marchand.maven.gaulois.compiler.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author cmarchand
+ */
+public class XslLocatorTest {
+    private static final Log LOG = new SystemStreamLog();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testCanonicalIdentity() throws IOException {
+        final File xslDir = folder.newFolder("xsl");
+        File xsl = new File(xslDir, "a.xsl");
+        Files.write(xsl.toPath(), "<xsl:stylesheet/>".getBytes(StandardCharsets.UTF_8));
+        URIResolver catalog = new URIResolver() {
+            @Override
+            public Source resolve(String href, String base) throws TransformerException {
+                // as a catalog could do, a non-normalized URI
+                return "urn:a".equals(href) ? new StreamSource(new File(xslDir, "../xsl/./a.xsl").toURI().toString()) : null;
+            }
+        };
+        XslLocator locator = new XslLocator(
+                Arrays.asList(xslDir), 
+                folder.newFolder("classes"), 
+                catalog, 
+                new ClasspathIndex(Collections.<String>emptyList(), LOG), 
+                LOG);
+        XslLocator.Location fromCp = locator.locate("cp:/a.xsl");
+        XslLocator.Location fromCatalog = locator.locate("urn:a");
+        Assert.assertNotNull(fromCp.getSystemId());
+        Assert.assertNotEquals(fromCp.getSystemId(), fromCatalog.getSystemId());
+        Assert.assertEquals(fromCp.getCanonicalSystemId(), fromCatalog.getCanonicalSystemId());
+        Assert.assertSame(fromCp, locator.locate("cp:/a.xsl"));
+        
+        XslLocator.Location missing = locator.locate("cp:/missing.xsl");
+        Assert.assertNull(missing.getSystemId());
+        Assert.assertFalse(missing.isInvalid());
+    }
+    
+    @Test
+    public void testCanonicalizeJar() {
+        String canonical = UriUtils.canonicalize("jar:file:/lib.jar!/a/c/../b.xsl");
+        Assert.assertTrue(canonical, canonical.startsWith("jar:file:/"));
+        Assert.assertTrue(canonical, canonical.endsWith("lib.jar!/a/b.xsl"));
+    }
+}